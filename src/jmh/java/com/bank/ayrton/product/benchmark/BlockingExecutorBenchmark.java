@@ -0,0 +1,92 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.service.blocking.BlockingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// llamadas bloqueantes simuladas (latencia fija, como el SDK del core bancario o el HSM) lanzadas en rafagas
+// de CALLS solicitudes concurrentes; compara el executor en cada modo con Schedulers.boundedElastic() sin limite propio
+// en java 17 VIRTUAL_THREADS cae a BOUNDED_ELASTIC (se indica en el log); ejecutar con java 21 para compararlos
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingExecutorBenchmark {
+
+    private static final int CALLS = 1000;
+
+    @Param({"VIRTUAL_THREADS", "BOUNDED_ELASTIC"})
+    private ProductProperties.Blocking.Mode mode;
+
+    @Param({"256"})
+    private int maxConcurrency;
+
+    @Param({"2"})
+    private long latencyMillis;
+
+    private BlockingExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.quietLogs();
+        ProductProperties properties = new ProductProperties();
+        properties.getBlocking().setMode(mode);
+        properties.getBlocking().setDefaultMaxConcurrency(maxConcurrency);
+        properties.getBlocking().setQueueCapacity(CALLS);
+        properties.getBlocking().setMaxWait(Duration.ofMinutes(1));
+        executor = new BlockingExecutor(properties, new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public void executor(Blackhole blackhole) {
+        Flux.range(0, CALLS)
+                .flatMap(i -> executor.call("core-banking", this::legacyCall), CALLS)
+                .doOnNext(blackhole::consume)
+                .blockLast();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public void boundedElastic(Blackhole blackhole) {
+        Flux.range(0, CALLS)
+                .flatMap(i -> Mono.fromCallable(this::legacyCall)
+                        .subscribeOn(Schedulers.boundedElastic()), CALLS)
+                .doOnNext(blackhole::consume)
+                .blockLast();
+    }
+
+    private Integer legacyCall() {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        return 1;
+    }
+}
@@ -0,0 +1,68 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder.responseDefinition;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+// client-service simulado para las pruebas de carga: latencia log-normal y una fraccion de respuestas 503
+// que se pueden cambiar en medio de la prueba (p. ej. para abrir el circuit breaker clientService)
+final class ClientServiceStub {
+
+    private final FaultInjector faults = new FaultInjector();
+    private final WireMockServer server;
+
+    ClientServiceStub() {
+        server = new WireMockServer(options().dynamicPort().containerThreads(200).extensions(faults));
+        server.start();
+        behave(10, 0);
+    }
+
+    String baseUrl() {
+        return server.baseUrl();
+    }
+
+    // medianMs: mediana de la latencia (log-normal, cola larga como un servicio real); failureRate: 0..1
+    void behave(int medianMs, double failureRate) {
+        faults.failureRate = failureRate;
+        server.resetMappings();
+        server.stubFor(get(urlPathMatching("/api/v1/client/.*"))
+                .willReturn(okJson("{\"id\":\"load-client\",\"type\":\"personal\",\"subtype\":\"STANDARD\"}")
+                        .withLogNormalRandomDelay(Math.max(medianMs, 1), 0.25)));
+    }
+
+    void stop() {
+        server.stop();
+    }
+
+    // responde 503 (sin la latencia) a una fraccion de las llamadas
+    private static final class FaultInjector implements ResponseDefinitionTransformerV2 {
+
+        private volatile double failureRate;
+
+        @Override
+        public ResponseDefinition transform(ServeEvent serveEvent) {
+            return ThreadLocalRandom.current().nextDouble() < failureRate
+                    ? responseDefinition().withStatus(503).build()
+                    : serveEvent.getResponseDefinition();
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "fault-injector";
+        }
+    }
+}
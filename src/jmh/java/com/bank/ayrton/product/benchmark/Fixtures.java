@@ -0,0 +1,68 @@
+package com.bank.ayrton.product.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+// datos de prueba compartidos por los benchmarks
+final class Fixtures {
+
+    private static final Set<ProductSubtype> ACTIVE = Set.of(
+            ProductSubtype.PERSONAL_CREDIT, ProductSubtype.BUSINESS_CREDIT, ProductSubtype.CREDIT_CARD);
+
+    private Fixtures() {
+    }
+
+    // sin logs del servicio durante la medicion: escribir en consola domina el tiempo de las cadenas simuladas
+    static void quietLogs() {
+        ((Logger) LoggerFactory.getLogger("com.bank.ayrton")).setLevel(Level.ERROR);
+    }
+
+    static Product product(String clientId, ProductSubtype subtype) {
+        Product product = new Product();
+        product.setClientId(clientId);
+        product.setSubtype(subtype);
+        product.setType(ACTIVE.contains(subtype) ? "activo" : "pasivo");
+        product.setBalance(Money.valueOf("1500"));
+        product.setMaintenanceFee(Money.valueOf("10"));
+        product.setMonthlyMovementLimit(20);
+        product.setCreditLimit(Money.valueOf("5000"));
+        product.setHolders(List.of("holder-1", "holder-2"));
+        product.setAuthorizedSignatories(List.of("signatory-1"));
+        product.setFreeTransactionLimit(10);
+        product.setTransactionFee(Money.valueOf("1.5"));
+        product.setStatus("activo");
+        product.setDueDate(LocalDate.of(2026, 1, 15));
+        return product;
+    }
+
+    static ClientDto client(String id, String type, ClientSubtype subtype) {
+        ClientDto client = new ClientDto();
+        client.setId(id);
+        client.setName("Cliente " + id);
+        client.setDni("12345678");
+        client.setType(type);
+        client.setSubtype(subtype);
+        return client;
+    }
+
+    static DebitCard debitCard() {
+        DebitCard card = new DebitCard();
+        card.setId("665f1c2e9b1d8c3a4f0e1a2b");
+        card.setClientId("bench-client");
+        card.setMainAccountId("665f1c2e9b1d8c3a4f0e1a2c");
+        card.setLinkedAccountIds(List.of("665f1c2e9b1d8c3a4f0e1a2d", "665f1c2e9b1d8c3a4f0e1a2e"));
+        return card;
+    }
+}
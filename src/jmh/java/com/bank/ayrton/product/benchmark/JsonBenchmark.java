@@ -0,0 +1,88 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// (de)serializacion con la misma configuracion de jackson que usa spring boot (JavaTimeModule, etc.)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectWriter productWriter;
+    private ObjectReader productReader;
+    private ObjectWriter cardWriter;
+    private ObjectReader cardReader;
+    private ObjectReader clientReader;
+
+    private Product product;
+    private DebitCard card;
+    private byte[] productJson;
+    private byte[] cardJson;
+    private byte[] clientJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        productWriter = mapper.writerFor(Product.class);
+        productReader = mapper.readerFor(Product.class);
+        cardWriter = mapper.writerFor(DebitCard.class);
+        cardReader = mapper.readerFor(DebitCard.class);
+        clientReader = mapper.readerFor(ClientDto.class);
+
+        product = Fixtures.product("bench-client", ProductSubtype.SAVINGS);
+        product.setId("665f1c2e9b1d8c3a4f0e1a2c");
+        product.setVersion(3L);
+        card = Fixtures.debitCard();
+        productJson = productWriter.writeValueAsBytes(product);
+        cardJson = cardWriter.writeValueAsBytes(card);
+        clientJson = mapper.writeValueAsBytes(Fixtures.client("bench-client", "personal", ClientSubtype.VIP));
+    }
+
+    @Benchmark
+    public byte[] writeProduct() throws Exception {
+        return productWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public Product readProduct() throws Exception {
+        return productReader.readValue(productJson);
+    }
+
+    @Benchmark
+    public byte[] writeDebitCard() throws Exception {
+        return cardWriter.writeValueAsBytes(card);
+    }
+
+    @Benchmark
+    public DebitCard readDebitCard() throws Exception {
+        return cardReader.readValue(cardJson);
+    }
+
+    @Benchmark
+    public ClientDto readClient() throws Exception {
+        return clientReader.readValue(clientJson);
+    }
+}
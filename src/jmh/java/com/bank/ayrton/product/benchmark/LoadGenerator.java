@@ -0,0 +1,107 @@
+package com.bank.ayrton.product.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// carga de modelo abierto: cada solicitud sale en su instante programado aunque el servicio se atrase,
+// y la latencia se mide desde ese instante (sin omision coordinada)
+final class LoadGenerator {
+
+    enum Shape {
+        STEADY, // tasa constante
+        BURST   // rafagas: toda la carga de cada 2 s llega en el primer segundo (al doble de la tasa media)
+    }
+
+    // un escalon de carga; latencias en ms sobre todas las respuestas (correctas, descartadas y errores)
+    record Step(double offeredRate, double throughput, long ok, long shed, long errors,
+                double p50Ms, double p99Ms, double maxMs) {
+
+        double errorRate() {
+            long total = ok + shed + errors;
+            return total == 0 ? 0 : (double) errors / total;
+        }
+    }
+
+    private final int maxInFlight;
+    private final Duration timeout;
+
+    LoadGenerator(int maxInFlight, Duration timeout) {
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+    }
+
+    // request devuelve el status http; shedStatuses son rechazos esperados en el escenario (p. ej. 503 del fallback)
+    Step run(Supplier<Mono<Integer>> request, Set<Integer> shedStatuses, Shape shape, double rate, Duration duration) {
+        Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        AtomicLong ok = new AtomicLong();
+        AtomicLong shed = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long sent = 0;
+        while (true) {
+            long elapsed = System.nanoTime() - start;
+            long scheduled;
+            while ((scheduled = scheduledAt(shape, rate, sent)) <= elapsed && start + scheduled < end) {
+                sent++;
+                if (inFlight.get() >= maxInFlight) {
+                    errors.incrementAndGet(); // el generador no da abasto: cuenta como error del escalon
+                    continue;
+                }
+                long intended = start + scheduled;
+                inFlight.incrementAndGet();
+                Mono.defer(request)
+                        .timeout(timeout)
+                        .doFinally(signal -> {
+                            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended),
+                                    latencies.getHighestTrackableValue()));
+                            inFlight.decrementAndGet();
+                        })
+                        .subscribe(status -> {
+                            if (status >= 200 && status < 300) {
+                                ok.incrementAndGet();
+                            } else if (shedStatuses.contains(status)) {
+                                shed.incrementAndGet();
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                        }, error -> errors.incrementAndGet());
+            }
+            if (System.nanoTime() >= end) {
+                break;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+
+        // las que siguen en curso tras el timeout ya contaron como error
+        long drainUntil = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            LockSupport.parkNanos(1_000_000);
+        }
+        double seconds = duration.toNanos() / 1e9;
+        return new Step(rate, ok.get() / seconds, ok.get(), shed.get(), errors.get(),
+                latencies.getValueAtPercentile(50) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getMaxValue() / 1000.0);
+    }
+
+    // nanosegundos desde el inicio del escalon en que sale la solicitud numero i
+    static long scheduledAt(Shape shape, double rate, long i) {
+        if (shape == Shape.STEADY) {
+            return (long) (i * 1e9 / rate);
+        }
+        long perBurst = Math.max(1, Math.round(2 * rate));
+        return (i / perBurst) * 2_000_000_000L + (long) ((i % perBurst) * 1e9 / perBurst);
+    }
+}
@@ -0,0 +1,357 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.ProductApplication;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.bson.types.ObjectId;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// pruebas de carga de ProductController y DebitCardController con dobles locales:
+// mongod embebido, kafka embebido (kraft) y client-service simulado con latencia y fallos inyectables
+//   mvn -Pbenchmark -DskipTests test-compile exec:exec@load-test [-Dloadtest.scenarios=client-reads,mixed]
+// cada escenario sube la tasa por escalones desde su tasa de referencia hasta que deja de ser sostenible
+// (p99 o errores sobre el slo, o throughput por debajo de lo ofrecido); informa p50/p99 y el throughput maximo
+// sostenible, y termina con codigo 1 si no se cumplen los umbrales de src/jmh/load-test.properties
+// el servicio y el generador comparten la maquina: los valores sirven para comparar versiones, no para dimensionar
+public final class LoadTestHarness {
+
+    private static final String OUTAGE = "client-service-outage";
+    private static final List<String> SCENARIOS = List.of("create-burst", "client-reads", "card-balances", "mixed", OUTAGE);
+    private static final int SEED_CLIENTS = 5_000;
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    // 429: rechazo de la admision de escrituras; 503: fallback de client-service. Son respuestas de sobrecarga
+    // esperadas, no errores, pero tampoco cuentan como throughput
+    private static final Set<Integer> SHED = Set.of(429);
+    private static final Set<Integer> OUTAGE_SHED = Set.of(429, 503);
+
+    private final Properties config;
+    private final int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 2000);
+    private final LoadGenerator generator;
+    private final Duration stepDuration = Duration.parse("PT" + System.getProperty("loadtest.step-duration", "10s"));
+    private final Duration warmup = Duration.parse("PT" + System.getProperty("loadtest.warmup", "5s"));
+    private final double stepFactor = Double.parseDouble(System.getProperty("loadtest.step-factor", "1.5"));
+    private final double maxRate = Double.parseDouble(System.getProperty("loadtest.max-rate", "5000"));
+
+    private WebClient http;
+    private ClientServiceStub clientService;
+    private KafkaProducer<String, String> movements;
+    private final List<String> clientIds = new ArrayList<>();
+    private final List<String> accountIds = new ArrayList<>();
+    private final List<String> cardIds = new ArrayList<>();
+
+    private LoadTestHarness(Properties config) {
+        this.config = config;
+        this.generator = new LoadGenerator(maxInFlight, Duration.parse("PT" + System.getProperty("loadtest.timeout", "5s")));
+    }
+
+    record ScenarioResult(String scenario, LoadGenerator.Step reference, LoadGenerator.Step sustainable,
+                          List<LoadGenerator.Step> steps, Map<String, Object> details) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        try (InputStream in = Files.newInputStream(Path.of(System.getProperty("loadtest.config", "src/jmh/load-test.properties")))) {
+            config.load(in);
+        }
+        List<String> scenarios = Arrays.stream(System.getProperty("loadtest.scenarios", String.join(",", SCENARIOS))
+                .split(",")).map(String::trim).toList();
+        Path result = Path.of(System.getProperty("loadtest.result", "target/load-test-result.json"));
+
+        LoadTestHarness harness = new LoadTestHarness(config);
+        List<ScenarioResult> results = harness.runAll(scenarios);
+
+        report(results);
+        Files.createDirectories(result.toAbsolutePath().getParent());
+        JSON.writeValue(result.toFile(), results);
+        List<String> violations = harness.violations(results);
+        if (!violations.isEmpty()) {
+            System.out.println("Regresiones respecto de los umbrales:");
+            violations.forEach(violation -> System.out.println("  - " + violation));
+            System.exit(1);
+        }
+        System.out.println("Umbrales cumplidos. Resultado en " + result);
+    }
+
+    private List<ScenarioResult> runAll(List<String> scenarios) throws Exception {
+        Fixtures.quietLogs();
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.Main.V7_0);
+        EmbeddedKafkaKraftBroker kafka = new EmbeddedKafkaKraftBroker(1, 1, "movements", "products", "product-overdue", "client-updated");
+        kafka.afterPropertiesSet();
+        clientService = new ClientServiceStub();
+        ConfigurableApplicationContext app = null;
+        try {
+            ServerAddress mongo = mongod.current().getServerAddress();
+            app = new SpringApplicationBuilder(ProductApplication.class).run(
+                    "--server.port=0",
+                    "--spring.data.mongodb.uri=mongodb://" + mongo.getHost() + ":" + mongo.getPort() + "/product-load",
+                    "--spring.kafka.bootstrap-servers=" + kafka.getBrokersAsString(),
+                    "--client-service.base-url=" + clientService.baseUrl(),
+                    "--client-service.load-balanced=false",
+                    "--spring.cloud.config.enabled=false",
+                    "--eureka.client.enabled=false",
+                    "--logging.level.root=WARN");
+            movements = new KafkaProducer<>(Map.of(
+                    ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBrokersAsString(),
+                    ProducerConfig.LINGER_MS_CONFIG, 5),
+                    new StringSerializer(), new StringSerializer());
+            String port = app.getEnvironment().getProperty("local.server.port");
+            ConnectionProvider connections = ConnectionProvider.builder("load-test")
+                    .maxConnections(maxInFlight)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            http = WebClient.builder()
+                    .baseUrl("http://localhost:" + port)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                    .build();
+            seed(app.getBean(ReactiveMongoTemplate.class));
+
+            List<ScenarioResult> results = new ArrayList<>();
+            for (String scenario : scenarios) {
+                System.out.println("Escenario " + scenario);
+                results.add(scenario.equals(OUTAGE) ? outage() : search(scenario));
+            }
+            return results;
+        } finally {
+            if (movements != null) {
+                movements.close();
+            }
+            if (app != null) {
+                app.close();
+            }
+            clientService.stop();
+            kafka.destroy();
+            mongod.close();
+        }
+    }
+
+    // clientes con cuenta de ahorro, cuenta corriente y tarjeta de credito, y una tarjeta de debito por cliente
+    private void seed(ReactiveMongoTemplate template) {
+        List<Product> products = new ArrayList<>();
+        List<DebitCard> cards = new ArrayList<>();
+        for (int i = 0; i < SEED_CLIENTS; i++) {
+            String clientId = "seed-client-" + i;
+            Product savings = seeded(clientId, ProductSubtype.SAVINGS);
+            Product current = seeded(clientId, ProductSubtype.CURRENT_ACCOUNT);
+            products.addAll(List.of(savings, current, seeded(clientId, ProductSubtype.CREDIT_CARD)));
+            DebitCard card = new DebitCard();
+            card.setId(new ObjectId().toHexString());
+            card.setClientId(clientId);
+            card.setMainAccountId(savings.getId());
+            card.setLinkedAccountIds(List.of(current.getId()));
+            cards.add(card);
+            clientIds.add(clientId);
+            accountIds.add(savings.getId());
+            cardIds.add(card.getId());
+        }
+        template.insertAll(products).then(template.insertAll(cards).then()).block();
+    }
+
+    private static Product seeded(String clientId, ProductSubtype subtype) {
+        Product product = Fixtures.product(clientId, subtype);
+        product.setId(new ObjectId().toHexString());
+        product.setPartition(Product.partitionOf(clientId));
+        return product;
+    }
+
+    // escalones crecientes desde la tasa de referencia hasta el primero que no es sostenible
+    private ScenarioResult search(String scenario) {
+        Supplier<Mono<Integer>> request = request(scenario);
+        LoadGenerator.Shape shape = scenario.equals("create-burst") ? LoadGenerator.Shape.BURST : LoadGenerator.Shape.STEADY;
+        double rate = number(scenario, "reference-rate", 50);
+        generator.run(request, SHED, shape, rate, warmup); // jit, pools y caches calientes; no se informa
+
+        List<LoadGenerator.Step> steps = new ArrayList<>();
+        LoadGenerator.Step sustainable = null;
+        while (rate <= maxRate) {
+            LoadGenerator.Step step = generator.run(request, SHED, shape, rate, stepDuration);
+            steps.add(step);
+            print(step);
+            if (!sustainable(scenario, step)) {
+                break;
+            }
+            sustainable = step;
+            rate *= stepFactor;
+        }
+        return new ScenarioResult(scenario, steps.get(0), sustainable, steps, Map.of());
+    }
+
+    private boolean sustainable(String scenario, LoadGenerator.Step step) {
+        return step.p99Ms() <= number(scenario, "slo-p99-ms", 500)
+                && step.errorRate() <= number(scenario, "slo-error-rate", 0.01)
+                && step.throughput() >= 0.95 * step.offeredRate();
+    }
+
+    // altas mientras client-service falla y responde lento: el circuit breaker debe abrirse y responder 503 al instante
+    private ScenarioResult outage() {
+        double notPermittedBefore = circuitBreakerNotPermitted();
+        clientService.behave(Integer.getInteger("loadtest.outage-latency-ms", 300),
+                Double.parseDouble(System.getProperty("loadtest.outage-failure-rate", "0.5")));
+        LoadGenerator.Step step;
+        try {
+            step = generator.run(() -> create("outage-client-"), OUTAGE_SHED, LoadGenerator.Shape.STEADY,
+                    number(OUTAGE, "reference-rate", 50), stepDuration);
+        } finally {
+            clientService.behave(10, 0);
+        }
+        print(step);
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("circuitOpened", circuitBreakerNotPermitted() > notPermittedBefore);
+        return new ScenarioResult(OUTAGE, step, null, List.of(step), details);
+    }
+
+    private Supplier<Mono<Integer>> request(String scenario) {
+        return switch (scenario) {
+            case "create-burst" -> () -> create("load-client-");
+            case "client-reads" -> this::clientProducts;
+            case "card-balances" -> this::cardBalance;
+            // 10% altas, 60% productos por cliente, 30% saldos de tarjeta; 1 de cada 10 lleva un movimiento por kafka
+            case "mixed" -> () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if (random.nextInt(10) == 0) {
+                    publishMovement();
+                }
+                int pick = random.nextInt(100);
+                return pick < 10 ? create("load-client-") : pick < 70 ? clientProducts() : cardBalance();
+            };
+            default -> throw new IllegalArgumentException("Escenario desconocido: " + scenario);
+        };
+    }
+
+    // tarjeta de credito de un cliente personal nuevo: ninguna regla la rechaza y se consulta client-service
+    private Mono<Integer> create(String clientPrefix) {
+        String clientId = clientPrefix + ThreadLocalRandom.current().nextInt(100_000);
+        return status(http.post().uri("/api/v1/product").bodyValue(Fixtures.product(clientId, ProductSubtype.CREDIT_CARD)));
+    }
+
+    // 80% de las lecturas sobre el 20% de los clientes
+    private Mono<Integer> clientProducts() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hot = clientIds.size() / 5;
+        String clientId = clientIds.get(random.nextInt(100) < 80 ? random.nextInt(hot) : random.nextInt(clientIds.size()));
+        return status(http.get().uri("/api/v1/product/client/{clientId}", clientId));
+    }
+
+    private Mono<Integer> cardBalance() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String cardId = cardIds.get(random.nextInt(cardIds.size()));
+        return random.nextBoolean()
+                ? status(http.get().uri("/api/v1/debit-card/{id}/balances", cardId))
+                : status(http.get().uri("/api/v1/debit-card/{id}/funding-account?amount=50.00", cardId));
+    }
+
+    private void publishMovement() {
+        String accountId = accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+        String movement = "{\"id\":\"" + UUID.randomUUID() + "\",\"productId\":\"" + accountId
+                + "\",\"type\":\"DEPOSIT\",\"amount\":10.00}";
+        movements.send(new ProducerRecord<>("movements", accountId, movement));
+    }
+
+    private static Mono<Integer> status(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().value()));
+    }
+
+    // llamadas rechazadas por el circuit breaker clientService desde el arranque (NaN si no hay metrica)
+    private double circuitBreakerNotPermitted() {
+        try {
+            JsonNode metric = http.get()
+                    .uri("/actuator/metrics/resilience4j.circuitbreaker.not.permitted.calls?tag=name:clientService")
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block(Duration.ofSeconds(5));
+            return metric == null ? Double.NaN : metric.path("measurements").path(0).path("value").asDouble(Double.NaN);
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    private double number(String scenario, String key, double defaultValue) {
+        String value = config.getProperty(scenario + "." + key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    private List<String> violations(List<ScenarioResult> results) {
+        List<String> violations = new ArrayList<>();
+        for (ScenarioResult result : results) {
+            String scenario = result.scenario();
+            String maxP99 = config.getProperty(scenario + ".max-p99-ms");
+            if (maxP99 != null && result.reference().p99Ms() > Double.parseDouble(maxP99)) {
+                violations.add(String.format("%s: p99 %.1f ms a %.0f/s (maximo %s ms)",
+                        scenario, result.reference().p99Ms(), result.reference().offeredRate(), maxP99));
+            }
+            String maxErrorRate = config.getProperty(scenario + ".max-error-rate");
+            if (maxErrorRate != null && result.reference().errorRate() > Double.parseDouble(maxErrorRate)) {
+                violations.add(String.format("%s: %.2f%% de errores (maximo %s)",
+                        scenario, result.reference().errorRate() * 100, maxErrorRate));
+            }
+            String minThroughput = config.getProperty(scenario + ".min-throughput");
+            if (minThroughput != null) {
+                double throughput = result.sustainable() == null ? 0 : result.sustainable().throughput();
+                if (throughput < Double.parseDouble(minThroughput)) {
+                    violations.add(String.format("%s: throughput sostenible %.0f/s (minimo %s/s)",
+                            scenario, throughput, minThroughput));
+                }
+            }
+            if (Boolean.parseBoolean(config.getProperty(scenario + ".require-circuit-open"))
+                    && !Boolean.TRUE.equals(result.details().get("circuitOpened"))) {
+                violations.add(scenario + ": el circuit breaker clientService no se abrio");
+            }
+        }
+        return violations;
+    }
+
+    private static void print(LoadGenerator.Step step) {
+        System.out.printf("  %7.0f/s ofrecidas %7.0f/s ok  p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms  errores %5.2f%%  descartadas %d%n",
+                step.offeredRate(), step.throughput(), step.p50Ms(), step.p99Ms(), step.maxMs(),
+                step.errorRate() * 100, step.shed());
+    }
+
+    private static void report(List<ScenarioResult> results) {
+        System.out.printf("%n%-22s %14s %14s %18s %14s%n", "escenario", "p50 ref (ms)", "p99 ref (ms)",
+                "max sostenible/s", "p99 max (ms)");
+        for (ScenarioResult result : results) {
+            LoadGenerator.Step best = result.sustainable();
+            System.out.printf("%-22s %14.1f %14.1f %18s %14s %s%n", result.scenario(),
+                    result.reference().p50Ms(), result.reference().p99Ms(),
+                    best == null ? "-" : String.format("%.0f", best.throughput()),
+                    best == null ? "-" : String.format("%.1f", best.p99Ms()),
+                    result.details().isEmpty() ? "" : result.details());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.entity.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// montos con Double (modelo anterior), BigDecimal y Money (long de centimos) en las tres rutas calientes:
+// - netDelta: neto de un lote de movimientos de un producto (MovementBalanceUpdater)
+// - feeRun: comision porcentual y por transacciones de cada producto en el cierre de mes
+// - balanceCheck: saldo no negativo al dar de alta (ProductRuleEngine)
+// con -prof gc se ven los bytes por operacion: Money no crea objetos, Double y BigDecimal si
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final int FEE_BASIS_POINTS = 125; // 1.25%
+    private static final BigDecimal FEE_RATE = new BigDecimal("0.0125");
+    private static final int FREE_TRANSACTIONS = 20;
+
+    @Param({"1000"})
+    private int size;
+
+    private Double[] doubles;
+    private BigDecimal[] decimals;
+    private Money[] money;
+    private int[] transactions;
+
+    private Double transactionFeeDouble;
+    private BigDecimal transactionFeeDecimal;
+    private Money transactionFee;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        doubles = new Double[size];
+        decimals = new BigDecimal[size];
+        money = new Money[size];
+        transactions = new int[size];
+        for (int i = 0; i < size; i++) {
+            long cents = random.nextLong(-50_000, 500_000);
+            money[i] = Money.ofMinor(cents);
+            decimals[i] = money[i].toBigDecimal();
+            doubles[i] = decimals[i].doubleValue();
+            transactions[i] = random.nextInt(40);
+        }
+        transactionFee = Money.valueOf("1.50");
+        transactionFeeDecimal = transactionFee.toBigDecimal();
+        transactionFeeDouble = transactionFeeDecimal.doubleValue();
+    }
+
+    @Benchmark
+    public Double netDeltaDouble() {
+        Double total = 0.0;
+        for (Double amount : doubles) {
+            total += amount;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal netDeltaBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : decimals) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long netDeltaMoney() {
+        long total = 0;
+        for (Money amount : money) {
+            total = Money.add(total, amount.minorUnits());
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Double feeRunDouble() {
+        Double total = 0.0;
+        for (int i = 0; i < size; i++) {
+            Double fee = Math.round(doubles[i] * FEE_BASIS_POINTS / 100.0) / 100.0
+                    + Math.max(0, transactions[i] - FREE_TRANSACTIONS) * transactionFeeDouble;
+            total += fee;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal feeRunBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < size; i++) {
+            BigDecimal fee = decimals[i].multiply(FEE_RATE).setScale(2, RoundingMode.HALF_EVEN)
+                    .add(transactionFeeDecimal.multiply(BigDecimal.valueOf(Math.max(0, transactions[i] - FREE_TRANSACTIONS))));
+            total = total.add(fee);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long feeRunMoney() {
+        long total = 0;
+        long feeMinor = transactionFee.minorUnits();
+        for (int i = 0; i < size; i++) {
+            long fee = Money.add(Money.percentOf(money[i].minorUnits(), FEE_BASIS_POINTS),
+                    Money.transactionFees(transactions[i], FREE_TRANSACTIONS, feeMinor));
+            total = Money.add(total, fee);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int balanceCheckDouble() {
+        int negative = 0;
+        for (Double balance : doubles) {
+            if (balance != null && balance < 0) {
+                negative++;
+            }
+        }
+        return negative;
+    }
+
+    @Benchmark
+    public int balanceCheckBigDecimal() {
+        int negative = 0;
+        for (BigDecimal balance : decimals) {
+            if (balance != null && balance.signum() < 0) {
+                negative++;
+            }
+        }
+        return negative;
+    }
+
+    @Benchmark
+    public int balanceCheckMoney() {
+        int negative = 0;
+        for (Money balance : money) {
+            if (balance != null && balance.isNegative()) {
+                negative++;
+            }
+        }
+        return negative;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.ProductApplication;
+import com.bank.ayrton.product.dto.CursorPage;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+// throughput de extremo a extremo: servicio completo sobre netty, mongod embebido y client-service simulado
+// con wiremock (latencia configurable); kafka, eureka y config-server quedan desactivados
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class ProductApiBenchmark {
+
+    private static final ParameterizedTypeReference<CursorPage<Product>> PAGE =
+            new ParameterizedTypeReference<>() {
+            };
+
+    @Param({"0", "20"})
+    private int clientServiceLatencyMs;
+
+    private TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private WireMockServer clientService;
+    private ConfigurableApplicationContext app;
+    private WebClient webClient;
+    private String productId;
+
+    @Setup
+    public void start() {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress mongo = mongod.current().getServerAddress();
+
+        clientService = new WireMockServer(options().dynamicPort());
+        clientService.start();
+        clientService.stubFor(get(urlPathMatching("/api/v1/client/.*"))
+                .willReturn(okJson("{\"id\":\"bench-client\",\"type\":\"personal\",\"subtype\":\"STANDARD\"}")
+                        .withFixedDelay(clientServiceLatencyMs)));
+
+        app = new SpringApplicationBuilder(ProductApplication.class).run(
+                "--server.port=0",
+                "--spring.data.mongodb.uri=mongodb://" + mongo.getHost() + ":" + mongo.getPort() + "/product-benchmark",
+                "--client-service.base-url=" + clientService.baseUrl(),
+                "--client-service.load-balanced=false",
+                "--spring.cloud.config.enabled=false",
+                "--eureka.client.enabled=false",
+                "--spring.kafka.listener.auto-startup=false",
+                "--logging.level.root=WARN");
+
+        String port = app.getEnvironment().getProperty("local.server.port");
+        webClient = WebClient.create("http://localhost:" + port + "/api/v1/product");
+        productId = create().getId();
+    }
+
+    @TearDown
+    public void stop() {
+        app.close();
+        clientService.stop();
+        mongod.close();
+    }
+
+    // tarjeta de credito para un cliente personal: ninguna regla la limita, todas las altas se aceptan
+    @Benchmark
+    public Product create() {
+        String clientId = "client-" + ThreadLocalRandom.current().nextInt(1000);
+        return webClient.post()
+                .bodyValue(Fixtures.product(clientId, ProductSubtype.CREDIT_CARD))
+                .retrieve()
+                .bodyToMono(Product.class)
+                .block();
+    }
+
+    @Benchmark
+    public Product findById() {
+        return webClient.get().uri("/{id}", productId)
+                .retrieve()
+                .bodyToMono(Product.class)
+                .block();
+    }
+
+    @Benchmark
+    public CursorPage<Product> page() {
+        return webClient.get().uri("/page?size=50")
+                .retrieve()
+                .bodyToMono(PAGE)
+                .block();
+    }
+}
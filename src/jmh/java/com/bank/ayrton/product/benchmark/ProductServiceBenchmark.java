@@ -0,0 +1,119 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.api.product.ProductRepository;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.dto.ProductBatchResult;
+import com.bank.ayrton.product.dto.ProductSubtypeSummary;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.client.ClientCache;
+import com.bank.ayrton.product.service.listing.KeysetPager;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.bank.ayrton.product.service.product.ProductRuleEngine;
+import com.bank.ayrton.product.service.product.ProductServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+// cadenas de operadores reactor de save / saveAll con repositorios simulados (sin I/O):
+// mide el costo propio del servicio (reglas, agrupacion por cliente, armado de resultados)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int BATCH_CLIENTS = 50;
+
+    private ProductServiceImpl service;
+    private Product product;
+    private List<Product> batch;
+
+    @Setup
+    public void setUp() {
+        Fixtures.quietLogs();
+        // stubOnly: los mocks no registran invocaciones, asi no crece la memoria durante la medicion
+        ProductRepository repository = mock(ProductRepository.class, withSettings().stubOnly());
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class, withSettings().stubOnly());
+        ReactiveBulkOperations bulkOperations = mock(ReactiveBulkOperations.class, withSettings().stubOnly());
+        ClientCache clientCache = mock(ClientCache.class, withSettings().stubOnly());
+
+        ClientDto client = Fixtures.client("bench-client", "personal", ClientSubtype.STANDARD);
+        when(clientCache.get(anyString())).thenReturn(Mono.just(client));
+        when(repository.summarizeByClientId(anyString())).thenReturn(Flux.just(
+                new ProductSubtypeSummary(ProductSubtype.CREDIT_CARD, 1, false)));
+        when(repository.save(any(Product.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(Product.class)))
+                .thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.unacknowledged()));
+
+        // el outbox deja pasar la escritura (sin transaccion ni evento): se mide solo la cadena del servicio
+        ProductOutbox outbox = mock(ProductOutbox.class, withSettings().stubOnly());
+        when(outbox.record(any(), any())).thenAnswer(call -> call.getArgument(1));
+        when(outbox.recordAll(any(), anyList(), any())).thenAnswer(call -> call.getArgument(2));
+
+        ClientPortfolioViewService portfolioViews = mock(ClientPortfolioViewService.class, withSettings().stubOnly());
+        when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+
+        ProductProperties properties = new ProductProperties();
+        service = new ProductServiceImpl(repository, mongoTemplate, clientCache, properties,
+                mock(KeysetPager.class), new ObjectMapper(),
+                new ProductRuleEngine(properties, new SimpleMeterRegistry()), outbox, portfolioViews,
+                new NearCaches(mongoTemplate, properties, new SimpleMeterRegistry()));
+
+        product = Fixtures.product("bench-client", ProductSubtype.SAVINGS);
+        ProductSubtype[] subtypes = ProductSubtype.values();
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(Fixtures.product("client-" + (i % BATCH_CLIENTS), subtypes[i % subtypes.length]));
+        }
+    }
+
+    @Benchmark
+    public Product save() {
+        return service.save(product).block();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @BenchmarkMode(Mode.AverageTime)
+    public List<ProductBatchResult> saveAllChunk() {
+        return service.saveAll(Flux.fromIterable(batch)).collectList().block();
+    }
+}
@@ -0,0 +1,75 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientPortfolio;
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.dto.ProductSubtypeSummary;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.product.ProductRuleEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// evaluacion de las reglas de elegibilidad para cada combinacion cliente / producto
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleEngineBenchmark {
+
+    @Param({"personal:STANDARD", "personal:VIP", "empresarial:STANDARD", "empresarial:PYME"})
+    private String client;
+
+    @Param({"SAVINGS", "CURRENT_ACCOUNT", "FIXED_TERM", "PERSONAL_CREDIT", "BUSINESS_CREDIT", "CREDIT_CARD"})
+    private ProductSubtype subtype;
+
+    private ProductRuleEngine engine;
+    private ClientDto clientDto;
+    private Product product;
+    private ClientPortfolio portfolio;
+
+    @Setup
+    public void setUp() {
+        Fixtures.quietLogs();
+        engine = new ProductRuleEngine(new ProductProperties(), new SimpleMeterRegistry());
+
+        String[] parts = client.split(":");
+        clientDto = new ClientDto();
+        clientDto.setId("bench-client");
+        clientDto.setType(parts[0]);
+        clientDto.setSubtype(ClientSubtype.valueOf(parts[1]));
+
+        product = Fixtures.product("bench-client", subtype);
+        // portafolio tipico: una cuenta corriente y una tarjeta, sin deudas vencidas
+        portfolio = ClientPortfolio.of(List.of(
+                new ProductSubtypeSummary(ProductSubtype.CURRENT_ACCOUNT, 1, false),
+                new ProductSubtypeSummary(ProductSubtype.CREDIT_CARD, 1, false)));
+    }
+
+    @Benchmark
+    public Optional<ProductProperties.Rule> check() {
+        return engine.check(product, clientDto, portfolio);
+    }
+
+    @Benchmark
+    public Optional<ProductProperties.Rule> checkStatic() {
+        return engine.checkStatic(product, clientDto);
+    }
+}
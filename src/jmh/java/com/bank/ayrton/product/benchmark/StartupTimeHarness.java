@@ -0,0 +1,213 @@
+package com.bank.ayrton.product.benchmark;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.noContent;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+// tiempo de arranque del servicio empaquetado en cada modo, en procesos nuevos y con dobles locales:
+// mongod embebido, kafka embebido (kraft) y wiremock como config-server, eureka y client-service
+//   mvn -Paot -DskipTests package                       (jar, target/cds y application.jsa)
+//   mvn -Pbenchmark -DskipTests test-compile exec:exec@startup-time [-Dstartup.runs=5 -Dstartup.modes=jar,cds]
+// por cada modo se informa "process running for" (log de spring boot) y el tiempo hasta /actuator/health = 200
+public final class StartupTimeHarness {
+
+    private static final Pattern STARTED = Pattern.compile("Started ProductApplication in [\\d.]+ seconds "
+            + "\\(process running for ([\\d.]+)\\)");
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    private StartupTimeHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path target = Path.of(System.getProperty("startup.target", "target"));
+        int runs = Integer.getInteger("startup.runs", 5);
+        List<String> modes = Arrays.asList(System.getProperty("startup.modes", "jar,cds").split(","));
+
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.Main.V7_0);
+        EmbeddedKafkaKraftBroker kafka = new EmbeddedKafkaKraftBroker(1, 1, "movements", "products");
+        kafka.afterPropertiesSet();
+        WireMockServer standIns = new WireMockServer(options().dynamicPort());
+        standIns.start();
+        stubStandIns(standIns);
+
+        try {
+            ServerAddress mongo = mongod.current().getServerAddress();
+            List<String> appArgs = List.of(
+                    "--spring.data.mongodb.uri=mongodb://" + mongo.getHost() + ":" + mongo.getPort() + "/product-startup",
+                    "--spring.kafka.bootstrap-servers=" + kafka.getBrokersAsString(),
+                    "--spring.config.import=optional:configserver:" + standIns.baseUrl(),
+                    "--eureka.client.service-url.defaultZone=" + standIns.baseUrl() + "/eureka",
+                    "--client-service.base-url=" + standIns.baseUrl());
+
+            Map<String, List<double[]>> results = new LinkedHashMap<>();
+            for (String mode : modes) {
+                List<String> command = command(mode.trim(), target);
+                if (command == null) {
+                    System.out.println("Modo " + mode + " omitido: falta el artefacto (mvn -Paot -DskipTests package)");
+                    continue;
+                }
+                List<double[]> samples = new ArrayList<>();
+                for (int i = 0; i < runs; i++) {
+                    samples.add(measure(command, appArgs));
+                }
+                results.put(mode, samples);
+            }
+            report(results);
+        } finally {
+            standIns.stop();
+            kafka.destroy();
+            mongod.close();
+        }
+    }
+
+    // jar: fat jar sin aot; cds: jar extraido + aot + archivo CDS del perfil aot
+    private static List<String> command(String mode, Path target) throws IOException {
+        if (mode.equals("jar")) {
+            try (var files = Files.list(target)) {
+                return files.filter(file -> file.getFileName().toString().matches("product-.*\\.jar"))
+                        .findFirst()
+                        .map(jar -> List.of("java", "-jar", jar.toString()))
+                        .orElse(null);
+            }
+        }
+        if (mode.equals("cds")) {
+            Path cds = target.resolve("cds");
+            Path archive = cds.resolve("application.jsa");
+            if (!Files.exists(archive)) {
+                return null;
+            }
+            try (var files = Files.list(cds)) {
+                return files.filter(file -> file.getFileName().toString().endsWith(".jar"))
+                        .findFirst()
+                        .map(jar -> List.of("java", "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=error",
+                                "-Dspring.aot.enabled=true", "-jar", jar.toString()))
+                        .orElse(null);
+            }
+        }
+        throw new IllegalArgumentException("Modo desconocido: " + mode);
+    }
+
+    // { process running for (s), hasta health 200 (s) }
+    private static double[] measure(List<String> command, List<String> appArgs) throws Exception {
+        int port = freePort();
+        List<String> full = new ArrayList<>(command);
+        full.add("--server.port=" + port);
+        full.addAll(appArgs);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(full).redirectErrorStream(true).start();
+        try {
+            CompletableFuture<Double> started = new CompletableFuture<>();
+            Thread output = new Thread(() -> drainOutput(process, started), "startup-output");
+            output.setDaemon(true);
+            output.start();
+            HttpClient http = HttpClient.newHttpClient();
+            HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                    .timeout(Duration.ofSeconds(1))
+                    .build();
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("El servicio termino durante el arranque: " + full);
+                }
+                try {
+                    if (http.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        double ready = (System.nanoTime() - start) / 1e9;
+                        return new double[]{started.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS), ready};
+                    }
+                } catch (IOException notListening) {
+                    // todavia no acepta conexiones
+                }
+                Thread.sleep(20);
+            }
+            throw new IllegalStateException("El servicio no arranco en " + TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    // se consume toda la salida para que el proceso no se bloquee al escribir sus logs
+    private static void drainOutput(Process process, CompletableFuture<Double> started) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = STARTED.matcher(line);
+                if (!started.isDone() && matcher.find()) {
+                    started.complete(Double.parseDouble(matcher.group(1)));
+                }
+            }
+        } catch (IOException e) {
+            // el proceso ya termino
+        } finally {
+            started.complete(Double.NaN);
+        }
+    }
+
+    private static void stubStandIns(WireMockServer server) {
+        // config-server sin propiedades: la aplicacion usa su application.yml
+        server.stubFor(get(urlPathMatching("/product-service/.*"))
+                .willReturn(okJson("{\"name\":\"product-service\",\"profiles\":[\"default\"],\"propertySources\":[]}")));
+        // eureka: registro vacio, acepta registro, heartbeats y baja
+        server.stubFor(get(urlPathMatching("/eureka/apps/?(delta)?"))
+                .willReturn(okJson("{\"applications\":{\"versions__delta\":\"1\",\"apps__hashcode\":\"\",\"application\":[]}}")));
+        server.stubFor(any(urlPathMatching("/eureka/apps/PRODUCT-SERVICE.*")).willReturn(noContent()));
+        server.stubFor(get(urlPathMatching("/api/v1/client/.*"))
+                .willReturn(okJson("{\"id\":\"startup-client\",\"type\":\"personal\",\"subtype\":\"STANDARD\"}")));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void report(Map<String, List<double[]>> results) {
+        System.out.printf("%-6s %5s %22s %22s%n", "modo", "runs", "started (mediana/min)", "health 200 (mediana/min)");
+        results.forEach((mode, samples) -> System.out.printf("%-6s %5d %13.2fs/%6.2fs %13.2fs/%6.2fs%n",
+                mode, samples.size(),
+                median(samples, 0), min(samples, 0), median(samples, 1), min(samples, 1)));
+    }
+
+    private static double median(List<double[]> samples, int index) {
+        double[] values = samples.stream().mapToDouble(sample -> sample[index]).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private static double min(List<double[]> samples, int index) {
+        return samples.stream().mapToDouble(sample -> sample[index]).min().orElse(Double.NaN);
+    }
+}
@@ -1,11 +1,16 @@
 package com.bank.ayrton.product;
 
+import com.bank.ayrton.product.config.ProductRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(ProductRuntimeHints.class)
 public class ProductApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,31 @@
+package com.bank.ayrton.product.actuator;
+
+import com.bank.ayrton.product.service.migration.MoneyMigration;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// GET /actuator/moneymigration -> documentos con montos en double pendientes de migrar
+// POST /actuator/moneymigration -> los convierte a Decimal128
+@Component
+@Endpoint(id = "moneymigration")
+@RequiredArgsConstructor
+public class MoneyMigrationEndpoint {
+
+    private final MoneyMigration migration;
+
+    @ReadOperation
+    public Mono<Map<String, Long>> pending() {
+        return migration.pending();
+    }
+
+    @WriteOperation
+    public Mono<Map<String, Long>> migrate() {
+        return migration.migrate();
+    }
+}
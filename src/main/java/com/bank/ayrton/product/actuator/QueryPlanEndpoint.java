@@ -0,0 +1,24 @@
+package com.bank.ayrton.product.actuator;
+
+import com.bank.ayrton.product.dto.QueryPlan;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// GET /actuator/queryplans -> plan de ejecucion de cada consulta del repositorio
+@Component
+@Endpoint(id = "queryplans")
+@RequiredArgsConstructor
+public class QueryPlanEndpoint {
+
+    private final QueryPlanReport report;
+
+    @ReadOperation
+    public Mono<List<QueryPlan>> queryPlans() {
+        return report.explainAll().collectList();
+    }
+}
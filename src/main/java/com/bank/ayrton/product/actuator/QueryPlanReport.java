@@ -0,0 +1,123 @@
+package com.bank.ayrton.product.actuator;
+
+import com.bank.ayrton.product.api.product.ProductRepository;
+import com.bank.ayrton.product.dto.QueryPlan;
+import com.bank.ayrton.product.service.card.DebitCardBalanceService;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// ejecuta explain (queryPlanner) sobre cada consulta de los repositorios para detectar COLLSCAN
+@Component
+@RequiredArgsConstructor
+public class QueryPlanReport {
+
+    private static final String SAMPLE_CLIENT_ID = "'explain'";
+
+    private final ReactiveMongoTemplate template;
+
+    public Flux<QueryPlan> explainAll() {
+        return Flux.concat(
+                explainFind("ProductRepository.findByClientId", "products",
+                        new Document("clientId", "explain")),
+                explainFind("ProductServiceImpl.overdueFilter", "products",
+                        new Document("clientId", "explain").append("type", "activo").append("status", "vencido")),
+                explainFind("OverdueJobService.criteria", "products",
+                        Document.parse("{ subtype: { $in: ['PERSONAL_CREDIT', 'BUSINESS_CREDIT', 'CREDIT_CARD'] },"
+                                + " status: { $ne: 'vencido' }, dueDate: { $lte: { $date: '2026-01-01T00:00:00Z' } } }")),
+                explainAggregate("ProductRepository.summarizeByClientId", "products", List.of(
+                        ProductRepository.SUMMARY_MATCH,
+                        ProductRepository.SUMMARY_GROUP,
+                        ProductRepository.SUMMARY_PROJECT)),
+                explain("DebitCardBalanceService.balances", "debit_cards", new Document("aggregate", "debit_cards")
+                        .append("pipeline", DebitCardBalanceService.pipeline(new ObjectId().toHexString()))
+                        .append("cursor", new Document())),
+                explain("ClientPortfolioViewService.refresh", "products", new Document("aggregate", "products")
+                        .append("pipeline", ClientPortfolioViewService.pipeline(new Document("$in", List.of("explain"))))
+                        .append("cursor", new Document())),
+                explain("ProductOutboxRelay.waiting", "product_outbox", new Document("find", "product_outbox")
+                        .append("filter", Document.parse("{ publishedAt: null, nextAttemptAt: { $gt: ISODate('2026-03-02T10:00:00Z') } }"))
+                        .append("projection", new Document("clientId", 1).append("createdAt", 1))),
+                explain("ProductOutboxRelay.pending", "product_outbox", new Document("find", "product_outbox")
+                        .append("filter", Document.parse("{ publishedAt: null, clientId: { $nin: ['c1'] } }"))
+                        .append("sort", new Document("_id", 1))
+                        .append("limit", 500)),
+                explain("FeeRunService.chunk", "products", new Document("find", "products")
+                        .append("filter", Document.parse("{ subtype: { $in: ['CURRENT_ACCOUNT', 'SAVINGS'] },"
+                                + " lastFeeRun: { $ne: '2026-01' }, _id: { $lt: ObjectId('697eddd00000000000000000') },"
+                                + " partition: { $gte: 0, $lt: 32 } }"))
+                        .append("sort", new Document("partition", 1).append("_id", 1))
+                        .append("limit", 1000)));
+    }
+
+    private Mono<QueryPlan> explainFind(String query, String collection, Document filter) {
+        Document command = new Document("find", collection).append("filter", filter);
+        return explain(query, collection, command);
+    }
+
+    private Mono<QueryPlan> explainAggregate(String query, String collection, List<String> stages) {
+        List<Document> pipeline = new ArrayList<>();
+        for (String stage : stages) {
+            pipeline.add(Document.parse(stage.replace("?0", SAMPLE_CLIENT_ID)));
+        }
+        Document command = new Document("aggregate", collection)
+                .append("pipeline", pipeline)
+                .append("cursor", new Document());
+        return explain(query, collection, command);
+    }
+
+    private Mono<QueryPlan> explain(String query, String collection, Document command) {
+        return template.executeCommand(new Document("explain", command).append("verbosity", "queryPlanner"))
+                .map(result -> toPlan(query, collection, result));
+    }
+
+    static QueryPlan toPlan(String query, String collection, Document explain) {
+        Set<String> stages = new LinkedHashSet<>();
+        Set<String> indexes = new LinkedHashSet<>();
+        collect(winningPlans(explain), stages, indexes);
+        return new QueryPlan(query, collection, new ArrayList<>(stages), new ArrayList<>(indexes),
+                stages.contains("COLLSCAN"));
+    }
+
+    // el explain de find trae queryPlanner en la raiz, el de aggregate lo anida en stages[0].$cursor
+    private static List<Object> winningPlans(Object node) {
+        List<Object> plans = new ArrayList<>();
+        if (node instanceof Map<?, ?> map) {
+            map.forEach((key, value) -> {
+                if ("winningPlan".equals(key)) {
+                    plans.add(value);
+                } else if (!"rejectedPlans".equals(key)) {
+                    plans.addAll(winningPlans(value));
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(item -> plans.addAll(winningPlans(item)));
+        }
+        return plans;
+    }
+
+    private static void collect(Object node, Set<String> stages, Set<String> indexes) {
+        if (node instanceof Map<?, ?> map) {
+            if (map.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            if (map.get("indexName") instanceof String index) {
+                indexes.add(index);
+            }
+            map.values().forEach(value -> collect(value, stages, indexes));
+        } else if (node instanceof List<?> list) {
+            list.forEach(item -> collect(item, stages, indexes));
+        }
+    }
+}
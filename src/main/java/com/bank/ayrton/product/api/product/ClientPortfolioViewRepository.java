@@ -0,0 +1,7 @@
+package com.bank.ayrton.product.api.product;
+
+import com.bank.ayrton.product.entity.ClientPortfolioView;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ClientPortfolioViewRepository extends ReactiveMongoRepository<ClientPortfolioView, String> {
+}
@@ -0,0 +1,14 @@
+package com.bank.ayrton.product.api.product;
+
+import com.bank.ayrton.product.entity.Product;
+import com.mongodb.ReadPreference;
+import reactor.core.publisher.Flux;
+
+// listados con read preference propia; al ser un fragmento de ProductRepository siguen midiendose en
+// spring.data.repository.invocations como los demas metodos del repositorio
+public interface ProductListingRepository {
+
+    Flux<Product> findAllWithReadPreference(ReadPreference readPreference);
+
+    Flux<Product> findByClientIdWithReadPreference(String clientId, ReadPreference readPreference);
+}
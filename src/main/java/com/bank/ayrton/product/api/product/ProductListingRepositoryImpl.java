@@ -0,0 +1,26 @@
+package com.bank.ayrton.product.api.product;
+
+import com.bank.ayrton.product.entity.Product;
+import com.mongodb.ReadPreference;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+@RequiredArgsConstructor
+class ProductListingRepositoryImpl implements ProductListingRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flux<Product> findAllWithReadPreference(ReadPreference readPreference) {
+        return mongoTemplate.find(new Query().withReadPreference(readPreference), Product.class);
+    }
+
+    @Override
+    public Flux<Product> findByClientIdWithReadPreference(String clientId, ReadPreference readPreference) {
+        return mongoTemplate.find(Query.query(Criteria.where("clientId").is(clientId))
+                .withReadPreference(readPreference), Product.class);
+    }
+}
@@ -1,11 +1,26 @@
 package com.bank.ayrton.product.api.product;
 
+import com.bank.ayrton.product.dto.ProductSubtypeSummary;
 import com.bank.ayrton.product.entity.Product;
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
 // al heredar de ReactiveMongoRepository heredamos tambien metodos predefinidos para usar mongodb
-public interface ProductRepository extends ReactiveMongoRepository<Product, String> {
+public interface ProductRepository extends ReactiveMongoRepository<Product, String>, ProductListingRepository {
+
+    // etapas del resumen de portafolio, se reutilizan en el reporte de planes (QueryPlanReport)
+    String SUMMARY_MATCH = "{ $match: { clientId: ?0 } }";
+    String SUMMARY_GROUP = "{ $group: { _id: '$subtype', count: { $sum: 1 }, overdue: { $max: { $and: ["
+            + "{ $eq: [ { $toLower: '$type' }, 'activo' ] },"
+            + "{ $eq: [ { $toLower: '$status' }, 'vencido' ] } ] } } } }";
+    String SUMMARY_PROJECT = "{ $project: { _id: 0, subtype: '$_id', count: 1, overdue: 1 } }";
+
     //aqui se pueden agregar metodos personalizados
     Flux<Product> findByClientId(String id);
+
+    // resumen del portafolio del cliente en una sola consulta: cantidad por subtipo y si tiene creditos vencidos
+    // solo lee clientId, subtype, type y status, por lo que queda cubierto por el indice clientId_subtype_type_status
+    @Aggregation(pipeline = {SUMMARY_MATCH, SUMMARY_GROUP, SUMMARY_PROJECT})
+    Flux<ProductSubtypeSummary> summarizeByClientId(String clientId);
 }
@@ -1,16 +1,26 @@
 package com.bank.ayrton.product.api.product;
 
+import com.bank.ayrton.product.dto.CursorPage;
+import com.bank.ayrton.product.dto.ProductBatchResult;
+import com.bank.ayrton.product.dto.ProductFilter;
 import com.bank.ayrton.product.entity.Product;
 import org.springframework.web.bind.annotation.PathVariable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 public interface ProductService {
 
     Flux<Product> findAll();
+    Mono<CursorPage<Product>> findPage(ProductFilter filter, String after, Integer size, List<String> fields);
+    Flux<Product> stream(ProductFilter filter, List<String> fields);
     Mono<Product> findById(String id);
     Mono<Product> save(Product product);
+    Flux<ProductBatchResult> saveAll(Flux<Product> products);
     Mono<Product> update(String id, Product product);
+    Mono<Product> patch(String id, Map<String, Object> changes);
     Mono<Void> delete(String id);
     Flux<Product> findByClientId(String id);
     Mono<Product> markAsOverdue(String id);
@@ -0,0 +1,39 @@
+package com.bank.ayrton.product.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+// configuracion de la integracion con client-service (prefijo client-service.*)
+@Data
+@ConfigurationProperties(prefix = "client-service")
+public class ClientServiceProperties {
+
+    private String baseUrl = "http://localhost:8081";      // con load-balanced=true usar el nombre en eureka (http://client-service)
+    private boolean loadBalanced = false;                   // resuelve baseUrl con spring cloud loadbalancer (eureka)
+    private Duration connectTimeout = Duration.ofMillis(500);
+    private Duration responseTimeout = Duration.ofMillis(1500); // por debajo del slowCallDurationThreshold del circuit breaker
+    private boolean compression = true;                     // acepta gzip en las respuestas
+    private boolean http2 = false;                          // h2c, solo si client-service lo soporta
+    private Pool pool = new Pool();
+    private Cache cache = new Cache();
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 50;                          // conexiones maximas por host
+        private int pendingAcquireMaxCount = 200;                 // solicitudes en espera de una conexion
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(1);
+        private Duration maxIdleTime = Duration.ofSeconds(30);    // cierra conexiones ociosas
+        private Duration maxLifeTime = Duration.ofMinutes(5);     // recicla conexiones para repartir carga entre instancias
+        private Duration evictionInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Cache {
+        private long maxSize = 10_000;                          // clientes maximos en memoria
+        private Duration refreshAfter = Duration.ofSeconds(30); // a partir de aqui se recarga en segundo plano
+        private Duration expireAfter = Duration.ofMinutes(10);  // antiguedad maxima que se sirve si client-service cae
+        private String invalidationTopic = "client-updated";    // topico kafka con los clientes modificados
+    }
+}
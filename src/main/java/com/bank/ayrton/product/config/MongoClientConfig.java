@@ -0,0 +1,84 @@
+package com.bank.ayrton.product.config;
+
+import com.mongodb.MongoCompressor;
+import com.mongodb.WriteConcern;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.WriteConcernResolver;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// ajustes del cliente de mongo (product.mongo.*)
+// - pool, timeouts y compresion se aplican despues de la uri, por lo que tienen prioridad sobre ella
+// - las metricas del driver (mongodb.driver.commands y mongodb.driver.pool.*) las registra el actuator
+//   con sus propios customizers, que se suman a este
+@Configuration
+public class MongoClientConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer productMongoClientCustomizer(ProductProperties properties) {
+        ProductProperties.Mongo config = properties.getMongo();
+        return builder -> builder
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(config.getMaxPoolSize())
+                        .minSize(config.getMinPoolSize())
+                        .maxConnecting(config.getMaxConnecting())
+                        .maxWaitTime(config.getMaxWaitTime().toMillis(), TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(config.getMaxConnectionIdleTime().toMillis(), TimeUnit.MILLISECONDS)
+                        .maxConnectionLifeTime(config.getMaxConnectionLifeTime().toMillis(), TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout((int) config.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                        .readTimeout((int) config.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS))
+                .compressorList(compressors(config.getCompressors()));
+    }
+
+    // el servidor elige el primero de la lista que tambien tenga habilitado
+    private static List<MongoCompressor> compressors(List<String> names) {
+        return names.stream()
+                .map(name -> switch (name.toLowerCase()) {
+                    case "zstd" -> MongoCompressor.createZstdCompressor();
+                    case "snappy" -> MongoCompressor.createSnappyCompressor();
+                    case "zlib" -> MongoCompressor.createZlibCompressor();
+                    default -> throw new IllegalArgumentException("Compresor de mongo no soportado: " + name);
+                })
+                .toList();
+    }
+
+    // reemplaza al template de spring boot solo para registrar el WriteConcernResolver
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory databaseFactory,
+                                                       MongoConverter converter, ProductProperties properties) {
+        ReactiveMongoTemplate template = new ReactiveMongoTemplate(databaseFactory, converter);
+        template.setWriteConcernResolver(writeConcernResolver(properties));
+        return template;
+    }
+
+    // "coleccion.OPERACION" tiene prioridad sobre "coleccion"; sin entrada se usa el write concern de la uri
+    // (dentro de una transaccion manda el write concern del commit, el driver ignora el de cada operacion)
+    public static WriteConcernResolver writeConcernResolver(ProductProperties properties) {
+        // un valor invalido falla al arrancar y no en la primera escritura
+        properties.getMongo().getWriteConcerns().values().forEach(MongoClientConfig::writeConcern);
+        return action -> {
+            Map<String, String> writeConcerns = properties.getMongo().getWriteConcerns();
+            String value = writeConcerns.get(action.getCollectionName() + "." + action.getMongoActionOperation());
+            if (value == null) {
+                value = writeConcerns.get(action.getCollectionName());
+            }
+            return value == null ? action.getDefaultWriteConcern() : writeConcern(value);
+        };
+    }
+
+    private static WriteConcern writeConcern(String name) {
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Write concern no valido: " + name);
+        }
+        return writeConcern;
+    }
+}
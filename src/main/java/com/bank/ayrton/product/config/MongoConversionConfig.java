@@ -0,0 +1,79 @@
+package com.bank.ayrton.product.config;
+
+import com.bank.ayrton.product.entity.Money;
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+
+// conversiones de mongo propias (reemplaza al bean vacio de spring boot)
+// Money se escribe como Decimal128 y se lee tambien de los double/int de documentos sin migrar
+@Configuration
+public class MongoConversionConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                MoneyToDecimal128.INSTANCE,
+                Decimal128ToMoney.INSTANCE,
+                DoubleToMoney.INSTANCE,
+                IntegerToMoney.INSTANCE,
+                LongToMoney.INSTANCE));
+    }
+
+    @WritingConverter
+    enum MoneyToDecimal128 implements Converter<Money, Decimal128> {
+        INSTANCE;
+
+        @Override
+        public Decimal128 convert(Money source) {
+            return source.toDecimal128();
+        }
+    }
+
+    @ReadingConverter
+    enum Decimal128ToMoney implements Converter<Decimal128, Money> {
+        INSTANCE;
+
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.fromBson(source);
+        }
+    }
+
+    @ReadingConverter
+    enum DoubleToMoney implements Converter<Double, Money> {
+        INSTANCE;
+
+        @Override
+        public Money convert(Double source) {
+            return Money.fromBson(source);
+        }
+    }
+
+    // $sum sobre campos vacios devuelve 0 entero
+    @ReadingConverter
+    enum IntegerToMoney implements Converter<Integer, Money> {
+        INSTANCE;
+
+        @Override
+        public Money convert(Integer source) {
+            return Money.fromBson(source);
+        }
+    }
+
+    @ReadingConverter
+    enum LongToMoney implements Converter<Long, Money> {
+        INSTANCE;
+
+        @Override
+        public Money convert(Long source) {
+            return Money.fromBson(source);
+        }
+    }
+}
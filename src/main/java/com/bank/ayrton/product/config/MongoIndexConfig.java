@@ -0,0 +1,42 @@
+package com.bank.ayrton.product.config;
+
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.IdempotencyRecord;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductOutboxEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// crea al iniciar los indices declarados en las entidades (@CompoundIndex / @Indexed)
+// spring data no los crea por defecto (auto-index-creation=false)
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class MongoIndexConfig {
+
+    private final ReactiveMongoTemplate template;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureIndexes().subscribe(
+                null,
+                error -> log.error("No se pudieron crear los indices de mongo: {}", error.getMessage()));
+    }
+
+    public Mono<Void> ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(template.getConverter().getMappingContext());
+        return Flux.just(Product.class, DebitCard.class, ProductOutboxEvent.class, IdempotencyRecord.class)
+                .concatMap(type -> Flux.fromIterable(resolver.resolveIndexFor(type))
+                        .concatMap(index -> template.indexOps(type).ensureIndex(index))
+                        .doOnNext(name -> log.info("Indice {} verificado en {}", name, type.getSimpleName())))
+                .then();
+    }
+}
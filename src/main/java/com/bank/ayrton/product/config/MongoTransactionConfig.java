@@ -0,0 +1,48 @@
+package com.bank.ayrton.product.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import java.time.Duration;
+
+// transacciones de mongo (requieren replica set); spring boot arma el TransactionalOperator sobre este manager
+@Slf4j
+@Configuration
+public class MongoTransactionConfig {
+
+    @Bean
+    public ReactiveMongoTransactionManager transactionManager(ReactiveMongoDatabaseFactory databaseFactory) {
+        return new ReactiveMongoTransactionManager(databaseFactory);
+    }
+
+    // con product.outbox.transactional=true cada escritura abre una transaccion: contra un mongo standalone
+    // fallarian todas, asi que el servicio no arranca. si mongo no responde aun no se bloquea el arranque
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyTransactionSupport(ApplicationReadyEvent event) {
+        ProductProperties properties = event.getApplicationContext().getBean(ProductProperties.class);
+        if (!properties.getOutbox().isTransactional()) {
+            return;
+        }
+        Document hello;
+        try {
+            hello = event.getApplicationContext().getBean(ReactiveMongoTemplate.class)
+                    .executeCommand(new Document("hello", 1))
+                    .block(Duration.ofSeconds(10));
+        } catch (RuntimeException e) {
+            log.warn("No se pudo verificar si mongo admite transacciones: {}", e.getMessage());
+            return;
+        }
+        if (hello != null && hello.get("setName") == null && !"isdbgrid".equals(hello.get("msg"))) {
+            throw new IllegalStateException("product.outbox.transactional=true requiere un replica set o un cluster "
+                    + "sharded de mongo, pero la conexion es a un servidor standalone. Configure un replica set "
+                    + "o use product.outbox.transactional=false (sin atomicidad entre productos y product_outbox)");
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.bank.ayrton.product.config;
+
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.mongodb.ReadPreference;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// configuracion propia del servicio de productos (prefijo product.*)
+@Data
+@ConfigurationProperties(prefix = "product")
+public class ProductProperties {
+
+    private Batch batch = new Batch();
+    private Listing listing = new Listing();
+    private Movements movements = new Movements();
+    private OverdueJob overdueJob = new OverdueJob();
+    private Logging logging = new Logging();
+    private Outbox outbox = new Outbox();
+    private Admission admission = new Admission();
+    private Mongo mongo = new Mongo();
+    private Blocking blocking = new Blocking();
+    private Idempotency idempotency = new Idempotency();
+    private Feed feed = new Feed();
+    private FeeJob feeJob = new FeeJob();
+    private NearCache nearCache = new NearCache();
+    // reglas de elegibilidad de productos, en orden de evaluacion; se pueden redefinir en el config-server
+    // (product.rules[0].id=...) y se recompilan al refrescar la configuracion, sin redeploy
+    private List<Rule> rules = defaultRules();
+
+    @Data
+    public static class Batch {
+        private int chunkSize = 500;        // productos por escritura masiva
+        private int clientConcurrency = 8;  // clientes validados en paralelo dentro de un bloque
+    }
+
+    @Data
+    public static class Listing {
+        private int defaultPageSize = 50;  // tamaño de pagina si no se indica ?size
+        private int maxPageSize = 500;
+    }
+
+    @Data
+    public static class Movements {
+        private String topic = "movements";
+        private int concurrency = 1;           // consumidores del listener, como maximo uno por particion
+        private int maxPollRecords = 500;      // tamaño maximo del lote
+        private int appliedIdsWindow = 500;    // ids de movimiento recordados por producto para descartar duplicados
+    }
+
+    @Data
+    public static class OverdueJob {
+        private String cron = "-";                      // "-" desactiva la ejecucion programada
+        private String topic = "product-overdue";       // un evento por cliente afectado
+        private int clientsPerUpdate = 200;             // clientes por cada updateMany
+        private ZoneId zone = ZoneId.of("America/Lima");
+        private LocalTime businessHoursStart = LocalTime.of(8, 0);
+        private LocalTime businessHoursEnd = LocalTime.of(20, 0);
+        private Duration businessHoursDelay = Duration.ofMillis(500); // pausa entre updateMany en horario de atencion
+        private Duration offHoursDelay = Duration.ZERO;
+    }
+
+    @Data
+    public static class Outbox {
+        private String topic = "products";
+        private boolean transactional;              // true requiere replica set: producto y evento en una transaccion
+        private Duration pollInterval = Duration.ofMillis(500);
+        private int batchSize = 500;                // eventos leidos por ejecucion del relay
+        private int sendConcurrency = 16;           // clientes publicados en paralelo (en orden dentro de cada uno)
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private Duration maxRetryBackoff = Duration.ofMinutes(1);
+        private Duration lease = Duration.ofSeconds(30); // una sola instancia publica a la vez
+    }
+
+    @Data
+    public static class Admission {
+        private boolean enabled = true;
+        // limite adaptativo (AIMD) de escrituras concurrentes en /api/v1/product
+        private int initialLimit = 50;
+        private int minLimit = 5;
+        private int maxLimit = 400;
+        private Duration latencyThreshold = Duration.ofMillis(750); // una escritura mas lenta cuenta como sobrecarga
+        private double backoffRatio = 0.9;                          // factor con el que baja el limite
+        private Duration retryAfter = Duration.ofSeconds(1);        // cabecera Retry-After de las solicitudes rechazadas
+        // token bucket por cliente para la creacion de productos
+        private double clientPermitsPerSecond = 5;
+        private int clientBurst = 20;
+        private int maxTrackedClients = 100_000;
+        private Duration clientIdleExpiry = Duration.ofMinutes(10); // se olvida el bucket de un cliente inactivo
+    }
+
+    @Data
+    public static class Mongo {
+        // pool del driver (por instancia de la aplicacion); sobrescribe lo que venga en la uri
+        private int maxPoolSize = 100;
+        private int minPoolSize = 10;                               // conexiones abiertas aunque no haya trafico
+        private int maxConnecting = 4;                              // conexiones que se pueden abrir en paralelo
+        private Duration maxWaitTime = Duration.ofSeconds(2);       // espera maxima por una conexion libre
+        private Duration maxConnectionIdleTime = Duration.ofMinutes(5);
+        private Duration maxConnectionLifeTime = Duration.ofMinutes(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration readTimeout = Duration.ZERO;               // 0 = sin limite (los cursores de stream pueden ser largos)
+        private List<String> compressors = List.of("zstd", "snappy", "zlib"); // en orden de preferencia; vacio = sin compresion
+        // listados (findAll, findByClientId, paginas y stream): pueden leer de secundarios y ver datos con
+        // algo de retraso; las escrituras y las validaciones de save siguen en el primario
+        private String listingReadPreference = "secondaryPreferred";
+        private Duration listingMaxStaleness;                       // minimo 90s; vacio = sin limite
+        // write concern por coleccion ("products") o por coleccion y operacion ("products.INSERT", "product_outbox.BULK");
+        // valores: ACKNOWLEDGED, W1, W2, W3, JOURNALED, MAJORITY, UNACKNOWLEDGED
+        private Map<String, String> writeConcerns = new HashMap<>();
+
+        public ReadPreference listingReadPreference() {
+            return listingMaxStaleness == null
+                    ? ReadPreference.valueOf(listingReadPreference)
+                    : ReadPreference.valueOf(listingReadPreference, List.of(),
+                            listingMaxStaleness.toSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    @Data
+    public static class Blocking {
+
+        public enum Mode {
+            VIRTUAL_THREADS, // un hilo virtual por llamada (java 21+; en versiones anteriores se usa BOUNDED_ELASTIC)
+            BOUNDED_ELASTIC  // pool de hilos de plataforma acotado por integracion
+        }
+
+        private Mode mode = Mode.VIRTUAL_THREADS;
+        private int defaultMaxConcurrency = 64;                 // llamadas en paralelo por integracion
+        private Map<String, Integer> maxConcurrency = new HashMap<>(); // por integracion: core-banking, hsm, ...
+        private Duration maxWait = Duration.ofSeconds(2);       // VIRTUAL_THREADS: espera maxima por un permiso
+        private int queueCapacity = 1000;                       // BOUNDED_ELASTIC: tareas en cola por integracion
+
+        public int maxConcurrency(String integration) {
+            return maxConcurrency.getOrDefault(integration, defaultMaxConcurrency);
+        }
+    }
+
+    @Data
+    public static class Idempotency {
+        private Duration ttl = Duration.ofHours(24);            // tiempo que se recuerda una Idempotency-Key
+        private Duration lease = Duration.ofSeconds(30);        // una ejecucion sin terminar se puede retomar pasado este tiempo
+        private Duration pollInterval = Duration.ofMillis(100); // espera entre consultas de un duplicado en otra instancia
+        private Duration maxWait = Duration.ofSeconds(5);       // tras esto el duplicado recibe 409
+    }
+
+    @Data
+    public static class Feed {
+        public enum SlowConsumer {
+            DISCONNECT, // se corta el stream; el cliente reconecta con Last-Event-ID y recupera lo perdido
+            DROP        // se descartan los cambios que no entran en su buffer
+        }
+
+        private int bufferSize = 256;                   // cambios pendientes de enviar por suscriptor
+        private SlowConsumer slowConsumer = SlowConsumer.DISCONNECT;
+        private int historySize = 10_000;               // ultimos cambios en memoria para reanudar sin otro change stream
+        private int maxSubscribers = 1000;              // por instancia, luego 503
+        private Duration heartbeat = Duration.ofSeconds(15); // comentario SSE para que los proxies no corten la conexion
+        private Duration restartBackoff = Duration.ofSeconds(1);
+        private Duration maxRestartBackoff = Duration.ofSeconds(30);
+        private boolean preImages = true;               // clientId en los delete (activa changeStreamPreAndPostImages, mongo 6+)
+    }
+
+    @Data
+    public static class FeeJob {
+        private String cron = "-";                      // "-" desactiva el cobro programado (p.ej. "0 30 0 1 * *")
+        private ZoneId zone = ZoneId.of("America/Lima"); // define el mes de cada movimiento y el mes a cobrar
+        private int partitions = 32;                    // rangos de Product.PARTITIONS con su propio punto de control
+        private int parallelism = 8;                    // rangos procesados a la vez
+        private int chunkSize = 1000;                   // productos por lectura y por escritura masiva
+        private Duration lease = Duration.ofMinutes(2); // una sola instancia ejecuta el mes; se renueva en cada bloque
+    }
+
+    @Data
+    public static class NearCache {
+        private boolean enabled = false;                      // cache en memoria de las lecturas por id
+        private int maxSize = 10_000;                         // entradas por cache (productos y tarjetas)
+        private Duration maxAge = Duration.ofSeconds(5);      // antiguedad maxima de una lectura servida desde la cache
+        private boolean broadcast = true;                     // invalidacion entre instancias con change streams (replica set)
+        private Duration restartBackoff = Duration.ofSeconds(1);
+        private Duration maxRestartBackoff = Duration.ofSeconds(30);
+        // lecturas que pasan por la cache; las validaciones de save y las escrituras siempre leen de mongo
+        private Map<String, Boolean> endpoints = new HashMap<>(Map.of("product-by-id", true, "debit-card-by-id", true));
+
+        public boolean isEnabled(String endpoint) {
+            return enabled && endpoints.getOrDefault(endpoint, false);
+        }
+    }
+
+    @Data
+    public static class Logging {
+        private double debugSampleRate = 0.01; // fraccion de solicitudes con log DEBUG (si el nivel lo permite)
+    }
+
+    @Data
+    public static class Rule {
+
+        public enum Condition {
+            NON_NEGATIVE_BALANCE, // el saldo inicial no puede ser negativo
+            FORBIDDEN,            // el cliente no puede tener el producto
+            REQUIRES,             // el cliente debe tener antes un producto de subtipo requires
+            MAX_COUNT             // el cliente puede tener como maximo maxCount productos del mismo subtipo
+        }
+
+        private String id;                             // nombre de la regla (tag de metricas)
+        private String clientType;                     // empresarial / personal; vacio = cualquiera
+        private ClientSubtype clientSubtype;           // vacio = cualquiera
+        private List<ProductSubtype> productSubtypes;  // vacio = cualquiera
+        private String productType;                    // activo / pasivo; vacio = cualquiera
+        private Condition condition;
+        private ProductSubtype requires;
+        private Integer maxCount;
+        private Money maintenanceFee;                  // comision que se fija al producto si la regla aplica y se cumple
+        private String message;                        // {subtype} se reemplaza por el subtipo del producto
+
+        // la regla no depende del portafolio del cliente (se puede evaluar sin consultar mongo)
+        public boolean isStatic() {
+            return condition == Condition.NON_NEGATIVE_BALANCE || condition == Condition.FORBIDDEN;
+        }
+    }
+
+    private static List<Rule> defaultRules() {
+        List<Rule> rules = new ArrayList<>();
+        rules.add(rule("non-negative-balance", null, null, null, null, Rule.Condition.NON_NEGATIVE_BALANCE,
+                "El saldo inicial no puede ser negativo"));
+
+        // PYME Cuenta corriente sin comisión, debe tener tarjeta de credito
+        Rule pyme = rule("pyme-current-account-requires-card", "empresarial", ClientSubtype.PYME,
+                List.of(ProductSubtype.CURRENT_ACCOUNT), null, Rule.Condition.REQUIRES,
+                "Cliente PYME debe tener una tarjeta de crédito para abrir cuenta corriente");
+        pyme.setRequires(ProductSubtype.CREDIT_CARD);
+        pyme.setMaintenanceFee(Money.ZERO);
+        rules.add(pyme);
+
+        // VIP  Cuenta ahorro con saldo promedio mínimo y tarjeta credito
+        Rule vip = rule("vip-savings-requires-card", "personal", ClientSubtype.VIP,
+                List.of(ProductSubtype.SAVINGS), null, Rule.Condition.REQUIRES,
+                "Cliente VIP debe tener una tarjeta de crédito para abrir cuenta de ahorro");
+        vip.setRequires(ProductSubtype.CREDIT_CARD);
+        rules.add(vip);
+
+        // Empresa no puede tener ahorro o plazo fijo
+        rules.add(rule("business-no-savings-or-fixed-term", "empresarial", null,
+                List.of(ProductSubtype.SAVINGS, ProductSubtype.FIXED_TERM), null, Rule.Condition.FORBIDDEN,
+                "Cliente empresarial no puede tener cuentas de ahorro ni de plazo fijo"));
+
+        // cliente personal solo una cuenta de cada tipo pasivo
+        Rule passive = rule("personal-one-passive-per-subtype", "personal", null, null, "pasivo",
+                Rule.Condition.MAX_COUNT, "Cliente personal ya tiene una cuenta de tipo {subtype}");
+        passive.setMaxCount(1);
+        rules.add(passive);
+
+        // Solo un credito personal por cliente
+        Rule credit = rule("one-personal-credit", null, null, List.of(ProductSubtype.PERSONAL_CREDIT), null,
+                Rule.Condition.MAX_COUNT, "Un cliente personal solo puede tener un crédito personal");
+        credit.setMaxCount(1);
+        rules.add(credit);
+        return rules;
+    }
+
+    private static Rule rule(String id, String clientType, ClientSubtype clientSubtype,
+                             List<ProductSubtype> productSubtypes, String productType,
+                             Rule.Condition condition, String message) {
+        Rule rule = new Rule();
+        rule.setId(id);
+        rule.setClientType(clientType);
+        rule.setClientSubtype(clientSubtype);
+        rule.setProductSubtypes(productSubtypes);
+        rule.setProductType(productType);
+        rule.setCondition(condition);
+        rule.setMessage(message);
+        return rule;
+    }
+}
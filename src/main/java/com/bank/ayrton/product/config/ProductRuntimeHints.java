@@ -0,0 +1,43 @@
+package com.bank.ayrton.product.config;
+
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.dto.MovementEvent;
+import com.bank.ayrton.product.dto.ProductChange;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.dto.ProductOverdueEvent;
+import com.bank.ayrton.product.dto.ProductSubtypeSummary;
+import com.bank.ayrton.product.entity.FeeRun;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.client.ClientServiceClient;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+// hints de reflexion para la imagen nativa (mvn -Pnative native:compile) que spring aot no deduce solo:
+// - tipos que jackson lee o escribe fuera de los controladores (webclient, kafka, outbox) o que mongo
+//   mapea sin repositorio (debit_cards, agregaciones)
+// - resilience4j resuelve las anotaciones y el metodo fallback por reflexion
+// en la jvm (perfil aot + cds) no tienen efecto
+public class ProductRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] JSON_TYPES = {
+            Product.class, DebitCard.class, ClientDto.class,
+            MovementEvent.class, ProductChange.class, ProductEvent.class, ProductOverdueEvent.class, ProductSubtypeSummary.class,
+            FeeRun.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), JSON_TYPES);
+
+        hints.reflection()
+                .registerType(CircuitBreaker.class, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(Bulkhead.class, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(ClientServiceClient.class,
+                        MemberCategory.INTROSPECT_PUBLIC_METHODS, MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+}
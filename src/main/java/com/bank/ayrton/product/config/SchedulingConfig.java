@@ -0,0 +1,18 @@
+package com.bank.ayrton.product.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+
+// habilita los procesos programados (@Scheduled) y expone el reloj para poder fijarlo en los tests
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+}
@@ -1,16 +1,61 @@
 package com.bank.ayrton.product.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
 public class WebClientConfig {
 
-    @Bean
-    public WebClient clientWebClient() {
-        return WebClient.builder()
-                .baseUrl("http://localhost:8081") // URL del servicio cliente
+    // pool de conexiones propio para client-service, publica metricas reactor.netty.connection.provider.*
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider clientServiceConnectionProvider(ClientServiceProperties properties) {
+        ClientServiceProperties.Pool pool = properties.getPool();
+        return ConnectionProvider.builder("client-service")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictionInterval())
+                .metrics(true)
                 .build();
     }
-}
\ No newline at end of file
+
+    // se parte del WebClient.Builder de spring boot para conservar la observacion http.client.requests (tag uri = plantilla)
+    @Bean
+    public WebClient clientWebClient(WebClient.Builder builder,
+                                     ClientServiceProperties properties,
+                                     ConnectionProvider clientServiceConnectionProvider,
+                                     ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancer) {
+        HttpClient httpClient = HttpClient.create(clientServiceConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(properties.getResponseTimeout())
+                .compress(properties.isCompression())
+                .protocol(properties.isHttp2()
+                        ? new HttpProtocol[]{HttpProtocol.H2C, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11});
+
+        builder = builder.clone()
+                .baseUrl(properties.getBaseUrl()) // URL del servicio cliente
+                .clientConnector(new ReactorClientHttpConnector(httpClient));
+
+        if (properties.isLoadBalanced()) {
+            ReactorLoadBalancerExchangeFilterFunction filter = loadBalancer.getIfAvailable();
+            if (filter == null) {
+                throw new IllegalStateException("client-service.load-balanced=true pero no hay loadbalancer configurado");
+            }
+            builder.filter(filter);
+        }
+        return builder.build();
+    }
+}
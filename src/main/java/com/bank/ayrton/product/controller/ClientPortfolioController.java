@@ -0,0 +1,36 @@
+package com.bank.ayrton.product.controller;
+
+import com.bank.ayrton.product.entity.ClientPortfolioView;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// resumen materializado del portafolio de un cliente (conteos, saldos pasivos, exposicion crediticia, vencidos)
+@RestController
+@RequestMapping("/api/v1/product")
+@RequiredArgsConstructor
+public class ClientPortfolioController {
+
+    private final ClientPortfolioViewService service;
+
+    @GetMapping("/client/{clientId}/portfolio")
+    public Mono<ResponseEntity<ClientPortfolioView>> getPortfolio(@PathVariable String clientId) {
+        return service.findByClientId(clientId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // administracion: regenera client_portfolios completo desde products
+    @PostMapping("/portfolios/rebuild")
+    public Mono<Map<String, Long>> rebuild() {
+        return service.rebuild().map(clients -> Map.of("clients", clients));
+    }
+}
@@ -1,16 +1,30 @@
 package com.bank.ayrton.product.controller;
 
 import com.bank.ayrton.product.api.product.DebitCardRepository;
-import com.bank.ayrton.product.api.product.ProductRepository;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.AccountBalance;
+import com.bank.ayrton.product.dto.CursorPage;
 import com.bank.ayrton.product.dto.DebitCard;
-import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.dto.DebitCardBalances;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.card.DebitCardBalanceService;
+import com.bank.ayrton.product.service.idempotency.IdempotencyService;
+import com.bank.ayrton.product.service.listing.KeysetPager;
+import com.bank.ayrton.product.service.logging.RequestLogSampling;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/debit-card")
 @RequiredArgsConstructor
@@ -18,18 +32,31 @@ import reactor.core.publisher.Mono;
 public class DebitCardController {
 
     private final DebitCardRepository repository;
-    private final ProductRepository productRepository;
+    private final DebitCardBalanceService balanceService;
+    private final KeysetPager pager;
+    private final IdempotencyService idempotency;
+    private final NearCaches nearCaches;
+    private final ProductProperties properties;
 
+    // con Idempotency-Key un reintento recibe la tarjeta ya creada en lugar de crear otra
     @PostMapping
-    public Mono<ResponseEntity<DebitCard>> create(@RequestBody DebitCard card) {
-        log.info("Creando tarjeta de débito: {}", card);
-        return repository.save(card)
+    public Mono<ResponseEntity<DebitCard>> create(@RequestBody DebitCard card,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false)
+                                                  String idempotencyKey) {
+        // el log se decide dentro de la cadena, donde ya esta la muestra de la solicitud (RequestLogSampling)
+        return Mono.fromRunnable(() -> {
+                    if (RequestLogSampling.sampled(log, properties.getLogging().getDebugSampleRate())) {
+                        log.debug("Creando tarjeta de débito: {}", card);
+                    }
+                })
+                .then(idempotency.execute(IdempotencyService.scope("debit-card", card.getClientId()), idempotencyKey,
+                        card, DebitCard.class, () -> repository.save(card)))
                 .map(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}")
     public Mono<ResponseEntity<DebitCard>> getById(@PathVariable String id) {
-        return repository.findById(id)
+        return nearCaches.debitCard(NearCaches.DEBIT_CARD_BY_ID, id, repository::findById)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
@@ -39,13 +66,55 @@ public class DebitCardController {
         return repository.findAll();
     }
 
+    // stream NDJSON (Accept: application/x-ndjson) con filtro por cliente y proyeccion
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DebitCard> stream(@RequestParam(required = false) String clientId,
+                                  @RequestParam(required = false) List<String> fields) {
+        return pager.stream(DebitCard.class, byClient(clientId), fields);
+    }
+
+    // pagina por cursor: ?after=<ultimo id>&size=&clientId=&fields=
+    @GetMapping("/page")
+    public Mono<CursorPage<DebitCard>> findPage(@RequestParam(required = false) String clientId,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer size,
+                                                @RequestParam(required = false) List<String> fields) {
+        return pager.page(DebitCard.class, byClient(clientId), after, size, fields);
+    }
+
+    private static Criteria byClient(String clientId) {
+        return clientId == null ? new Criteria() : Criteria.where("clientId").is(clientId);
+    }
+
+    // saldos de la cuenta principal y de las asociadas, en orden, con una sola agregacion
+    @GetMapping("/{id}/balances")
+    public Mono<ResponseEntity<DebitCardBalances>> getBalances(@PathVariable String id) {
+        return balanceService.balances(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // primera cuenta de la tarjeta (principal y luego asociadas) con saldo suficiente para autorizar el monto
+    // amount en unidades mayores (?amount=150.50); con mas decimales que la moneda responde 400
+    @GetMapping("/{id}/funding-account")
+    public Mono<ResponseEntity<AccountBalance>> getFundingAccount(@PathVariable String id,
+                                                                  @RequestParam Money amount) {
+        return balanceService.balances(id)
+                .flatMap(balances -> Mono.justOrEmpty(balances.firstWithFunds(amount))
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                                "Ninguna cuenta de la tarjeta tiene saldo suficiente"))))
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/{id}/main-account-balance")
-    public Mono<ResponseEntity<Double>> getMainAccountBalance(@PathVariable String id) {
-        return repository.findById(id)
-                .flatMap(card -> productRepository.findById(card.getMainAccountId())
-                        .map(Product::getBalance)
-                        .map(ResponseEntity::ok)
-                )
+    public Mono<ResponseEntity<Money>> getMainAccountBalance(@PathVariable String id) {
+        return balanceService.balances(id)
+                .flatMap(balances -> Mono.justOrEmpty(balances.getAccounts().stream()
+                        .filter(AccountBalance::isMain)
+                        .findFirst()))
+                .mapNotNull(AccountBalance::getBalance)
+                .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package com.bank.ayrton.product.controller;
+
+import com.bank.ayrton.product.dto.FeeRunReport;
+import com.bank.ayrton.product.dto.FeeRunRequest;
+import com.bank.ayrton.product.service.fee.FeeRunService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+
+// ejecucion manual (administracion) del cobro de mantenimiento y comisiones de fin de mes
+@RestController
+@RequestMapping("/api/v1/product/fee-runs")
+@RequiredArgsConstructor
+public class FeeRunController {
+
+    private final FeeRunService service;
+
+    // inicia el cobro y responde 202 con la ubicacion de su avance (GET /fee-runs/{period})
+    // si el mes quedo a medias (caida o error) la misma llamada lo reanuda; si ya termino no vuelve a cobrar
+    @PostMapping
+    public Mono<ResponseEntity<Void>> run(@RequestBody(required = false) FeeRunRequest request) {
+        return service.start(request == null ? null : request.getPeriod())
+                .map(period -> ResponseEntity.accepted()
+                        .location(URI.create("/api/v1/product/fee-runs/" + period))
+                        .build());
+    }
+
+    @GetMapping("/{period}")
+    public Mono<FeeRunReport> status(@PathVariable String period) {
+        YearMonth month;
+        try {
+            month = YearMonth.parse(period);
+        } catch (DateTimeException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Mes invalido (yyyy-MM): " + period));
+        }
+        return service.status(month)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "No hay cobro registrado para " + period)));
+    }
+}
@@ -0,0 +1,26 @@
+package com.bank.ayrton.product.controller;
+
+import com.bank.ayrton.product.dto.OverdueJobReport;
+import com.bank.ayrton.product.dto.OverdueJobRequest;
+import com.bank.ayrton.product.service.overdue.OverdueJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+// ejecucion manual (administracion) del marcado masivo de creditos vencidos
+@RestController
+@RequestMapping("/api/v1/product/overdue-jobs")
+@RequiredArgsConstructor
+public class OverdueJobController {
+
+    private final OverdueJobService service;
+
+    // con "dryRun": true solo informa cuantos productos y clientes se verian afectados
+    @PostMapping
+    public Mono<OverdueJobReport> run(@RequestBody OverdueJobRequest request) {
+        return service.run(request);
+    }
+}
@@ -1,21 +1,38 @@
 package com.bank.ayrton.product.controller;
 
 import com.bank.ayrton.product.api.product.ProductService;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.CursorPage;
+import com.bank.ayrton.product.dto.ProductChange;
+import com.bank.ayrton.product.dto.ProductBatchResult;
+import com.bank.ayrton.product.dto.ProductFilter;
 import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.admission.ClientRateLimiter;
+import com.bank.ayrton.product.service.feed.ProductChangeFeed;
+import com.bank.ayrton.product.service.idempotency.IdempotencyService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/product")
 @RequiredArgsConstructor // crea los constructores con la inyeccion de dependencias
 public class ProductController {
 
     private final ProductService service;
+    private final ClientRateLimiter clientRateLimiter;
+    private final IdempotencyService idempotency;
+    private final ProductChangeFeed changeFeed;
+    private final ProductProperties properties;
 
     //obtiene todos los productos
     @GetMapping
@@ -23,6 +40,40 @@ public class ProductController {
         return service.findAll();
     }
 
+    //obtiene todos los productos en stream NDJSON (Accept: application/x-ndjson), con filtros y proyeccion
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Product> stream(ProductFilter filter, @RequestParam(required = false) List<String> fields) {
+        return service.stream(filter, fields);
+    }
+
+    //obtiene una pagina de productos: ?after=<ultimo id>&size=&clientId=&subtype=&status=&fields=id,subtype,balance
+    @GetMapping("/page")
+    public Mono<CursorPage<Product>> findPage(ProductFilter filter,
+                                              @RequestParam(required = false) String after,
+                                              @RequestParam(required = false) Integer size,
+                                              @RequestParam(required = false) List<String> fields) {
+        return service.findPage(filter, after, size, fields);
+    }
+
+    //cambios de productos en vivo (text/event-stream) filtrados por ?clientId= y/o ?productId=
+    //el id de cada evento es el token del cambio: al reconectar el navegador lo envia en Last-Event-ID y se
+    //reciben los cambios perdidos; un evento "overflow" o "resync" cierra el stream (reconectar o volver a leer)
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ProductChange>> changes(@RequestParam(required = false) String clientId,
+                                                        @RequestParam(required = false) String productId,
+                                                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Flux<ServerSentEvent<ProductChange>> events = changeFeed.subscribe(clientId, productId, lastEventId)
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(change.getToken())
+                        .event(change.getOperation())
+                        .build())
+                .onErrorResume(ProductChangeFeed.Disconnected.class,
+                        e -> Mono.just(ServerSentEvent.<ProductChange>builder().event(e.getReason()).build()));
+        return events.publish(shared -> Flux.merge(shared, Flux.interval(properties.getFeed().getHeartbeat())
+                .map(tick -> ServerSentEvent.<ProductChange>builder().comment("ping").build())
+                .takeUntilOther(shared.then())));
+    }
+
     //obtiene un producto por ID
     @GetMapping("/{id}")
     public Mono<ResponseEntity<Product>> findById(@PathVariable String id) {
@@ -31,14 +82,26 @@ public class ProductController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
-    //crea un nuevo producto
+    //crea un nuevo producto (429 con Retry-After si el cliente supera su cuota de solicitudes)
+    //con Idempotency-Key un reintento recibe el producto ya creado en lugar de crear otro
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Mono<Product> save(@RequestBody Product product) {
-        return service.save(product);
+    public Mono<Product> save(@RequestBody Product product,
+                              @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute(IdempotencyService.scope("product", product.getClientId()), idempotencyKey, product, Product.class,
+                () -> clientRateLimiter.acquire(product.getClientId())
+                        .then(Mono.defer(() -> service.save(product))));
     }
 
-    //actualiza un producto por ID
+    //crea productos en bloque (migraciones), recibe NDJSON y responde un resultado por producto
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductBatchResult> saveBatch(@RequestBody Flux<Product> products) {
+        return service.saveAll(products);
+    }
+
+    //actualiza un producto por ID; requiere "version" (428 sin ella, 409 si cambio). el saldo no se edita
 
     @PutMapping("/{id}")
     public Mono<ResponseEntity<Product>> update(@PathVariable String id, @RequestBody Product product) {
@@ -47,6 +110,14 @@ public class ProductController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    //actualiza solo los campos enviados; si incluye "version" se valida contra la version actual
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<Product>> patch(@PathVariable String id, @RequestBody Map<String, Object> changes) {
+        return service.patch(id, changes)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
     //elimina un producto por ID
     @DeleteMapping("/{id}")
     public Mono<ResponseEntity<Void>> delete(@PathVariable String id) {
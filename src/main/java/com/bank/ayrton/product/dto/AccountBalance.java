@@ -0,0 +1,15 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalance {
+    private String productId;
+    private Money balance;
+    private boolean main; // cuenta principal de la tarjeta
+}
@@ -0,0 +1,49 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.ProductSubtype;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// foto en memoria de los productos del cliente, se carga una vez por solicitud
+// y todas las reglas de negocio se validan contra ella
+public class ClientPortfolio {
+
+    private final Map<ProductSubtype, Long> countsBySubtype = new EnumMap<>(ProductSubtype.class);
+    private boolean overdue;
+
+    public static ClientPortfolio empty() {
+        return new ClientPortfolio();
+    }
+
+    public static ClientPortfolio of(List<ProductSubtypeSummary> summaries) {
+        ClientPortfolio portfolio = new ClientPortfolio();
+        for (ProductSubtypeSummary summary : summaries) {
+            if (summary.getSubtype() != null) {
+                portfolio.countsBySubtype.merge(summary.getSubtype(), summary.getCount(), Long::sum);
+            }
+            portfolio.overdue |= summary.isOverdue();
+        }
+        return portfolio;
+    }
+
+    public boolean hasOverdueDebt() {
+        return overdue;
+    }
+
+    public boolean has(ProductSubtype subtype) {
+        return count(subtype) > 0;
+    }
+
+    public long count(ProductSubtype subtype) {
+        return subtype == null ? 0 : countsBySubtype.getOrDefault(subtype, 0L);
+    }
+
+    // registra un producto recien aceptado para que las siguientes validaciones lo consideren
+    public void register(ProductSubtype subtype) {
+        if (subtype != null) {
+            countsBySubtype.merge(subtype, 1L, Long::sum);
+        }
+    }
+}
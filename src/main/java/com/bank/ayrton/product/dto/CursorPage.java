@@ -0,0 +1,16 @@
+package com.bank.ayrton.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// pagina por cursor (keyset sobre _id): para la siguiente pagina enviar ?after=nextCursor
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor; // null cuando no hay mas resultados
+}
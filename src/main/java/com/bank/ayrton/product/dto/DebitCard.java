@@ -2,6 +2,7 @@ package com.bank.ayrton.product.dto;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.List;
@@ -13,8 +14,10 @@ public class DebitCard {
     @Id
     private String id;
 
+    @Indexed
     private String clientId; // cliente dueño de la tarjeta
 
+    @Indexed
     private String mainAccountId; // ID de la cuenta principal
 
     private List<String> linkedAccountIds; // Cuentas asociadas en orden
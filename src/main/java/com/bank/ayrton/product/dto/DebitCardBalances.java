@@ -0,0 +1,25 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// saldos de las cuentas de una tarjeta de debito: primero la principal y luego las asociadas en su orden
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DebitCardBalances {
+    private String cardId;
+    private List<AccountBalance> accounts;
+
+    // primera cuenta (en orden de la tarjeta) con saldo suficiente para el monto, null si ninguna alcanza
+    public AccountBalance firstWithFunds(Money amount) {
+        return accounts.stream()
+                .filter(account -> account.getBalance() != null && !account.getBalance().isLessThan(amount))
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,33 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.FeeRun;
+import com.bank.ayrton.product.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeeRunReport {
+    private String period;               // yyyy-MM
+    private FeeRun.Status status;
+    private int attempts;                // mas de 1: el cobro se reanudo desde el punto de control
+    private int ranges;
+    private int completedRanges;
+    // acumulado del mes (todas las ejecuciones)
+    private long processed;
+    private long charged;
+    private long exempt;
+    private long insufficientFunds;
+    private long conflicts;
+    private Money fees;
+    private Instant startedAt;
+    private Instant finishedAt;
+    // de esta ejecucion
+    private long processedNow;
+    private long elapsedMillis;
+    private double accountsPerSecond;
+}
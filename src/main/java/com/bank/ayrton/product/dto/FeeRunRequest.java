@@ -0,0 +1,10 @@
+package com.bank.ayrton.product.dto;
+
+import lombok.Data;
+
+import java.time.YearMonth;
+
+@Data
+public class FeeRunRequest {
+    private YearMonth period; // mes a cobrar ("2026-09"); por defecto el mes anterior
+}
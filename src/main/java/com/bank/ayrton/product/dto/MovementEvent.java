@@ -0,0 +1,42 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.Money;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.time.Instant;
+
+// evento publicado por movement-service en el topico movements
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MovementEvent {
+    private String id;        // id del movimiento, se usa para no aplicarlo dos veces
+    private String productId; // producto afectado
+    private String type;      // DEPOSIT / WITHDRAWAL (o deposito / retiro)
+    private Money amount;     // monto positivo
+    private Instant date;     // fecha del movimiento, define su mes para la comision por transacciones
+
+    // false si el movimiento no afecta el saldo o es invalido
+    public boolean affectsBalance() {
+        return amount != null && !amount.isNegative() && sign() != 0;
+    }
+
+    // variacion del saldo en unidades menores, 0 si no lo afecta
+    public long balanceDelta() {
+        return amount == null ? 0 : sign() * amount.minorUnits();
+    }
+
+    // equalsIgnoreCase en lugar de toUpperCase: no crea un String por evento
+    private int sign() {
+        if (type == null) {
+            return 0;
+        }
+        if (type.equalsIgnoreCase("DEPOSIT") || type.equalsIgnoreCase("DEPOSITO")) {
+            return 1;
+        }
+        if (type.equalsIgnoreCase("WITHDRAWAL") || type.equalsIgnoreCase("RETIRO")) {
+            return -1;
+        }
+        return 0;
+    }
+}
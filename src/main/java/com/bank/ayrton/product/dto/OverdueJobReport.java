@@ -0,0 +1,19 @@
+package com.bank.ayrton.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueJobReport {
+    private boolean dryRun;
+    private long matchedProducts;   // productos que cumplen los criterios y aun no estan vencidos
+    private long affectedClients;
+    private long modifiedProducts;  // 0 en dry-run
+    private Instant startedAt;
+    private Instant finishedAt;
+}
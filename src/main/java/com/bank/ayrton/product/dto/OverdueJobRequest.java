@@ -0,0 +1,17 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.ProductSubtype;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// criterios del marcado masivo de vencidos; los campos vacios no filtran, pero se exige dueTo o clientIds
+@Data
+public class OverdueJobRequest {
+    private List<ProductSubtype> subtypes; // solo subtipos de credito; por defecto todos ellos
+    private List<String> clientIds;
+    private LocalDate dueFrom;             // dueDate >= dueFrom
+    private LocalDate dueTo;               // dueDate <= dueTo
+    private boolean dryRun;                // solo cuenta, no modifica ni publica eventos
+}
@@ -0,0 +1,36 @@
+package com.bank.ayrton.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// resultado por item de POST /api/v1/product/batch, en el mismo orden de entrada
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchResult {
+
+    public enum Status {
+        CREATED,   // guardado
+        REJECTED,  // no cumple las reglas de negocio
+        FAILED     // cumple las reglas pero fallo la escritura
+    }
+
+    private long index;       // posicion en el stream recibido
+    private String clientId;
+    private Status status;
+    private String productId;
+    private String message;
+
+    public static ProductBatchResult created(long index, String clientId, String productId) {
+        return new ProductBatchResult(index, clientId, Status.CREATED, productId, null);
+    }
+
+    public static ProductBatchResult rejected(long index, String clientId, String message) {
+        return new ProductBatchResult(index, clientId, Status.REJECTED, null, message);
+    }
+
+    public static ProductBatchResult failed(long index, String clientId, String message) {
+        return new ProductBatchResult(index, clientId, Status.FAILED, null, message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.Product;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+// cambio de un producto leido del change stream de products (GET /api/v1/product/changes)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChange {
+    private String operation;           // insert / update / replace / delete
+    private String productId;
+    private String clientId;            // en delete sale de la pre-imagen (product.feed.pre-images)
+    private List<String> changedFields; // campos modificados, solo en update
+    private Product product;            // estado actual del producto, null en delete
+    private Instant timestamp;          // hora del cambio en el cluster
+    @JsonIgnore
+    private String token;               // resume token del change stream, va como id del evento SSE
+}
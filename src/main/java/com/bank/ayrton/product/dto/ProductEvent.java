@@ -0,0 +1,29 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// mensaje del topico products: cada cambio de estado de un producto, con la clave clientId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        OVERDUE
+    }
+
+    private String eventId;     // unico por cambio, para descartar duplicados en los consumidores
+    private Type type;
+    private String productId;
+    private String clientId;
+    private Instant occurredAt;
+    private Product product;    // estado despues del cambio (ultimo estado conocido si es DELETED)
+}
@@ -0,0 +1,12 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.ProductSubtype;
+import lombok.Data;
+
+// filtros opcionales del listado de productos (?clientId=&subtype=&status=)
+@Data
+public class ProductFilter {
+    private String clientId;
+    private ProductSubtype subtype;
+    private String status;
+}
@@ -0,0 +1,16 @@
+package com.bank.ayrton.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// evento publicado por cliente cuando el job marca alguno de sus creditos como vencido
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductOverdueEvent {
+    private String clientId;
+    private Instant markedAt;
+}
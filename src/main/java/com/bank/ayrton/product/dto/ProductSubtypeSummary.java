@@ -0,0 +1,16 @@
+package com.bank.ayrton.product.dto;
+
+import com.bank.ayrton.product.entity.ProductSubtype;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// fila del resumen agregado por subtipo que devuelve ProductRepository.summarizeByClientId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSubtypeSummary {
+    private ProductSubtype subtype;
+    private long count;
+    private boolean overdue; // algun credito del subtipo esta vencido
+}
@@ -0,0 +1,19 @@
+package com.bank.ayrton.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// resultado del explain de una consulta del repositorio
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlan {
+    private String query;          // metodo del repositorio explicado
+    private String collection;
+    private List<String> stages;   // etapas del plan ganador (IXSCAN, FETCH, COLLSCAN...)
+    private List<String> indexes;  // indices usados por el plan
+    private boolean collectionScan;
+}
@@ -0,0 +1,26 @@
+package com.bank.ayrton.product.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+// vista materializada del portafolio de un cliente (client_portfolios), se lee por _id = clientId
+// la mantiene ClientPortfolioViewService despues de cada escritura de productos o saldos
+@Data
+@Document(collection = "client_portfolios")
+public class ClientPortfolioView {
+    @Id
+    private String clientId;
+    private Map<ProductSubtype, Long> countsBySubtype = new EnumMap<>(ProductSubtype.class);
+    private Money passiveBalance = Money.ZERO;  // suma de saldos de productos pasivos
+    private Money creditExposure = Money.ZERO;  // suma de saldos de productos activos (creditos y tarjetas)
+    private Money creditLimit = Money.ZERO;     // suma de lineas de credito de productos activos
+    private boolean overdue;              // algun producto activo vencido
+    private Instant updatedAt;
+    // hora del servidor mongo antes de leer products para calcularla: una vista no reemplaza a otra mas reciente
+    private Instant sourceAt;
+}
@@ -0,0 +1,50 @@
+package com.bank.ayrton.product.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+// punto de control del cobro de comisiones de un mes: si el proceso se cae, la siguiente ejecucion
+// retoma cada rango de particiones desde el ultimo producto procesado
+@Data
+@Document(collection = "fee_runs")
+public class FeeRun {
+
+    public enum Status { RUNNING, COMPLETED }
+
+    @Id
+    private String id;            // mes cobrado (yyyy-MM)
+    private Status status;
+    private String owner;         // instancia con el lease vigente
+    private Instant lockedUntil;
+    private int attempts;         // ejecuciones del mes (mas de una = reanudado)
+    private Instant startedAt;
+    private Instant finishedAt;
+    private List<Range> ranges;
+
+    // rango [from, to) de Product.partition recorrido en orden (partition, _id)
+    @Data
+    @NoArgsConstructor
+    public static class Range {
+        private int from;
+        private int to;
+        private Integer lastPartition; // cursor: ultimo producto procesado
+        private String lastId;
+        private boolean done;
+        private long processed;
+        private long charged;
+        private long exempt;           // sin comision en el mes
+        private long insufficientFunds;
+        private long conflicts;        // cambiaron entre la lectura y el cobro; quedan pendientes
+        private long feesMinor;        // total cobrado en unidades menores
+
+        public Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.bank.ayrton.product.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// resultado de una creacion con cabecera Idempotency-Key; un reintento con la misma clave lo recibe sin volver a ejecutarla
+@Data
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+    public enum Status {
+        IN_PROGRESS, // una instancia la esta ejecutando
+        COMPLETED    // respuesta guardada (cuerpo o rechazo definitivo 4xx)
+    }
+
+    @Id
+    private String id;            // alcance:clave, p. ej. product:7f1c...
+    private String requestHash;   // sha-256 del cuerpo: la misma clave con otro cuerpo es un error del cliente
+    private Status status;
+    private int httpStatus;       // 0 si la creacion tuvo exito; codigo 4xx si fue rechazada
+    private String response;      // cuerpo serializado de la respuesta
+    private String reason;        // motivo del rechazo
+    private Instant lockedUntil;  // IN_PROGRESS: pasado este momento otra instancia la puede retomar (instancia caida)
+    private Instant createdAt;
+    @Indexed(name = "expiresAt_ttl", expireAfter = "0s") // mongo la borra al llegar a expiresAt
+    private Instant expiresAt;
+}
@@ -0,0 +1,193 @@
+package com.bank.ayrton.product.entity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+// monto en unidades menores (centimos) mas la moneda ISO 4217, sin redondeo binario
+// - en mongo se guarda como Decimal128 en unidades mayores (MongoConversionConfig): $inc, $sum y las
+//   comparaciones de las agregaciones siguen funcionando igual que con el double anterior
+// - en json se escribe como numero decimal (1500.25); con mas decimales que la moneda se rechaza
+// - el campo no guarda la moneda: todos los productos estan en la moneda del banco (DEFAULT_CURRENCY)
+// - las rutas calientes (validacion del saldo, movimientos, comisiones) operan con los metodos estaticos
+//   sobre long, que no crean objetos; el tipo solo se construye al leer o escribir
+public final class Money implements Comparable<Money> {
+
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("PEN");
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    private static final long BASIS_POINTS = 10_000;
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return ofMinor(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        return minorUnits == 0 && currency == DEFAULT_CURRENCY ? ZERO : new Money(minorUnits, currency);
+    }
+
+    // monto en unidades mayores (json, parametros); falla si tiene mas decimales que la moneda
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        return of(amount, DEFAULT_CURRENCY);
+    }
+
+    public static Money of(BigDecimal amount, Currency currency) {
+        try {
+            return ofMinor(amount.setScale(currency.getDefaultFractionDigits(), RoundingMode.UNNECESSARY)
+                    .unscaledValue().longValueExact(), currency);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Monto no valido para " + currency + ": " + amount.toPlainString(), e);
+        }
+    }
+
+    // propiedades de configuracion (product.rules[].maintenance-fee)
+    public static Money valueOf(String amount) {
+        return of(new BigDecimal(amount.trim()));
+    }
+
+    // saldos antiguos guardados como double: se redondean al centimo (HALF_EVEN, igual que $round en mongo)
+    public static Money fromDouble(double amount) {
+        return ofMinor(BigDecimal.valueOf(amount)
+                .setScale(DEFAULT_CURRENCY.getDefaultFractionDigits(), RoundingMode.HALF_EVEN)
+                .unscaledValue().longValueExact());
+    }
+
+    // valor leido de mongo (Decimal128 o numeros de documentos anteriores a la migracion), null si no hay
+    public static Money fromBson(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            if (decimal.isNaN() || decimal.isInfinite()) {
+                throw new IllegalArgumentException("Monto no valido en mongo: " + decimal);
+            }
+            // -0 (p. ej. despues de un $inc) no se puede convertir a BigDecimal
+            BigDecimal amount = decimal.doubleValue() == 0 ? BigDecimal.ZERO : decimal.bigDecimalValue();
+            return of(amount.setScale(DEFAULT_CURRENCY.getDefaultFractionDigits(), RoundingMode.HALF_EVEN));
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ofMinor(Math.multiplyExact(((Number) value).longValue(), minorPerUnit(DEFAULT_CURRENCY)));
+        }
+        if (value instanceof Number number) {
+            return fromDouble(number.doubleValue());
+        }
+        return null;
+    }
+
+    public long minorUnits() {
+        return minorUnits;
+    }
+
+    public Currency currency() {
+        return currency;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(add(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits), currency);
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    public Decimal128 toDecimal128() {
+        return toDecimal128(minorUnits, currency);
+    }
+
+    // ---- aritmetica sobre unidades menores, sin objetos intermedios ----
+
+    // los desbordes fallan en lugar de dar la vuelta
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    // comision fija por cantidad (p. ej. transacciones sobre el limite gratuito)
+    public static long times(long minorUnits, long count) {
+        return Math.multiplyExact(minorUnits, count);
+    }
+
+    // porcentaje en puntos basicos (150 = 1.5%) redondeado al centimo HALF_EVEN
+    public static long percentOf(long minorUnits, long basisPoints) {
+        return divideHalfEven(Math.multiplyExact(minorUnits, basisPoints), BASIS_POINTS);
+    }
+
+    // transacciones que exceden el limite gratuito por la comision de cada una
+    public static long transactionFees(long transactions, long freeTransactions, long feeMinorUnits) {
+        return times(feeMinorUnits, Math.max(0, transactions - freeTransactions));
+    }
+
+    public static Decimal128 toDecimal128(long minorUnits, Currency currency) {
+        return new Decimal128(BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits()));
+    }
+
+    static long divideHalfEven(long dividend, long divisor) {
+        long quotient = Math.floorDiv(dividend, divisor);
+        long twiceRemainder = 2 * Math.floorMod(dividend, divisor);
+        if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) == 1)) {
+            quotient++;
+        }
+        return quotient;
+    }
+
+    private static long minorPerUnit(Currency currency) {
+        long factor = 1;
+        for (int i = 0; i < currency.getDefaultFractionDigits(); i++) {
+            factor *= 10;
+        }
+        return factor;
+    }
+
+    private Money sameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Monedas distintas: " + currency + " y " + other.currency);
+        }
+        return other;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, sameCurrency(other).minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+}
@@ -1,27 +1,61 @@
 package com.bank.ayrton.product.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Document(collection = "products")
+// los indices se crean al iniciar (MongoIndexConfig)
+// clientId+subtype cubre el resumen de portafolio y las busquedas por cliente
+@CompoundIndex(name = "clientId_subtype_type_status", def = "{'clientId': 1, 'subtype': 1, 'type': 1, 'status': 1}")
+// filtro de deudas vencidas por cliente
+@CompoundIndex(name = "clientId_type_status", def = "{'clientId': 1, 'type': 1, 'status': 1}")
+// marcado masivo de vencidos por subtipo de credito y fecha de pago
+@CompoundIndex(name = "subtype_dueDate", def = "{'subtype': 1, 'dueDate': 1}")
+// recorrido por particion y _id del cobro de comisiones de fin de mes (FeeRunService)
+@CompoundIndex(name = "partition_id", def = "{'partition': 1, '_id': 1}")
 public class Product {
+
+    public static final int PARTITIONS = 1024; // particiones fijas; los procesos masivos las reparten en rangos
+
     @Id
     private String id;
     private String type;      // activo o pasivo
     private ProductSubtype subtype;   //ahorro, cuenta_corriente, plazo_fijo...(en ingles)
     private String clientId;  //id del cliente
-    private Double balance = 0.0; //saldo, saldo por defecto 0
-    private Double maintenanceFee;         //para cuenta corriente
+    private Money balance = Money.ZERO; //saldo, saldo por defecto 0
+    private Money maintenanceFee;          //para cuenta corriente
     private Integer monthlyMovementLimit;  //para cuenta ahorro
     private Integer allowedMovementDay;    //para cuenta plazo fijo
-    private Double creditLimit;            //para créditos y tarjetas
+    private Money creditLimit;             //para créditos y tarjetas
     private List<String> holders;              //titulares (empresas)
     private List<String> authorizedSignatories; //firmantes autorizados
     private Integer freeTransactionLimit; // transacciones sin comision
-    private Double transactionFee;        // monto de comision
+    private Money transactionFee;         // monto de comision
     private String status; //puede ser vencido/activo
+    private LocalDate dueDate; // fecha de vencimiento del pago (creditos y tarjetas)
+    @Version
+    private Long version; // bloqueo optimista: se incrementa en cada actualizacion
+    @JsonIgnore
+    private List<String> appliedMovementIds; // ultimos movimientos aplicados al saldo (idempotencia del consumer)
+    @JsonIgnore
+    private Integer partition; // hash del clientId (0..PARTITIONS-1): todos los productos de un cliente en la misma
+    @JsonIgnore
+    private Map<String, Integer> monthlyTransactions; // movimientos por mes (yyyy-MM), base de la comision por transaccion
+    @JsonIgnore
+    private String lastFeeRun; // ultimo mes (yyyy-MM) procesado por el cobro (cobrado, exento o sin saldo): no se repite aunque se reanude
+    @JsonIgnore
+    private String overdueJobId; // ejecucion del marcado masivo que lo dejo vencido (OverdueJobService)
+
+    public static int partitionOf(String clientId) {
+        return clientId == null ? 0 : Math.floorMod(clientId.hashCode(), PARTITIONS);
+    }
 }
@@ -0,0 +1,30 @@
+package com.bank.ayrton.product.entity;
+
+import com.bank.ayrton.product.dto.ProductEvent;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// evento pendiente de publicar en kafka, escrito en la misma transaccion que el cambio en products
+@Data
+@Document(collection = "product_outbox")
+// pendientes en orden de escritura (el _id es un ObjectId creciente)
+@CompoundIndex(name = "publishedAt_id", def = "{'publishedAt': 1, '_id': 1}")
+public class ProductOutboxEvent {
+    @Id
+    private String id;
+    private String clientId;   // clave del mensaje: mantiene el orden por cliente en la particion
+    private String productId;
+    private ProductEvent.Type type;
+    private String payload;    // ProductEvent serializado al momento del cambio
+    private Instant createdAt;
+    @Indexed(name = "publishedAt_ttl", expireAfter = "7d") // los publicados se borran a la semana
+    private Instant publishedAt;
+    private int attempts;
+    private Instant nextAttemptAt; // reintento con espera creciente despues de un fallo
+    private String lastError;
+}
@@ -0,0 +1,47 @@
+package com.bank.ayrton.product.kafka;
+
+import com.bank.ayrton.product.service.client.ClientCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+// escucha los clientes modificados en client-service e invalida la cache local
+// - cada instancia usa su propio grupo: todas deben recibir todos los eventos, no repartirselos
+// - latest: al arrancar la cache esta vacia, los eventos anteriores no hacen falta
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClientEventConsumer {
+
+    private final ClientCache clientCache;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(topics = "${client-service.cache.invalidation-topic:client-updated}",
+            groupId = "product-client-cache-${random.uuid}",
+            properties = "auto.offset.reset=latest")
+    public void listen(String message) {
+        String clientId = extractClientId(message);
+        if (clientId == null || clientId.isBlank()) {
+            log.warn("Evento de cliente sin id, se ignora: {}", message);
+            return;
+        }
+        clientCache.invalidate(clientId);
+    }
+
+    // el evento puede traer el cliente completo en JSON o solo su id
+    private String extractClientId(String message) {
+        try {
+            JsonNode node = objectMapper.readTree(message);
+            if (node.isObject()) {
+                return node.path("id").asText(node.path("clientId").asText(null));
+            }
+            return node.isTextual() ? node.asText() : message.trim();
+        } catch (JsonProcessingException e) {
+            return message.trim();
+        }
+    }
+}
@@ -1,18 +1,54 @@
 package com.bank.ayrton.product.kafka;
 
 
+import com.bank.ayrton.product.dto.MovementEvent;
+import com.bank.ayrton.product.service.movement.MovementBalanceUpdater;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
 //el consumer escucha los eventos, recibe del producer en este caso del microservicio movement-service
 //la notacion component indica que es una clase getionada por spring
+@Slf4j
 @Component
+@RequiredArgsConstructor
 public class KafkaConsumer {
 
-    @KafkaListener(topics = "movements", groupId = "product-group")
-    public void listen(String message) {
-        System.out.println("📦 Product-service recibió mensaje de Kafka: " + message);
+    private final MovementBalanceUpdater balanceUpdater;
+    private final ObjectMapper objectMapper;
+
+    // recibe el lote completo del poll, aplica los saldos y recien entonces confirma los offsets
+    // si la escritura falla no se confirma y el error handler reintenta el lote
+    @KafkaListener(topics = "${product.movements.topic:movements}", groupId = "product-group",
+            containerFactory = "movementsListenerContainerFactory")
+    public void listen(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        List<MovementEvent> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                MovementEvent event = objectMapper.readValue(record.value(), MovementEvent.class);
+                // eventos sin fecha: la del registro (cuando se publico), no la de consumo
+                if (event.getDate() == null && record.timestamp() >= 0) {
+                    event.setDate(Instant.ofEpochMilli(record.timestamp()));
+                }
+                events.add(event);
+            } catch (JsonProcessingException e) {
+                log.warn("Movimiento con formato invalido en {}-{}@{}, se descarta: {}",
+                        record.topic(), record.partition(), record.offset(), e.getOriginalMessage());
+            }
+        }
+        log.debug("Lote de {} movimientos recibido ({} validos)", records.size(), events.size());
 
-        // aun no implementado
+        // el hilo del listener no es de netty, se puede esperar la escritura
+        balanceUpdater.apply(events).block();
+        ack.acknowledge();
     }
-}
\ No newline at end of file
+}
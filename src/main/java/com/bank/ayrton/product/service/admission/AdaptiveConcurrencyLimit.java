@@ -0,0 +1,71 @@
+package com.bank.ayrton.product.service.admission;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// limite de concurrencia adaptativo (AIMD) para las escrituras de productos
+// - cada escritura rapida y sin error de sobrecarga suma 1/limite (en promedio +1 por cada "ronda" completa)
+// - una escritura lenta o con 503/504 multiplica el limite por backoffRatio, como maximo una vez por latencyThreshold
+//   para que un pico de respuestas lentas que ya estaban en curso no lo hunda hasta el minimo
+// - solo crece si al menos la mitad del limite estaba en uso; si no, subiria sin haberse probado
+@Component
+public class AdaptiveConcurrencyLimit {
+
+    private final ProductProperties properties;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long lastDecrease;
+
+    public AdaptiveConcurrencyLimit(ProductProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = properties.getAdmission().getInitialLimit();
+        this.lastDecrease = System.nanoTime() - properties.getAdmission().getLatencyThreshold().toNanos();
+        Gauge.builder("product.admission.limit", this, AdaptiveConcurrencyLimit::getLimit)
+                .description("Escrituras concurrentes permitidas")
+                .register(meterRegistry);
+        Gauge.builder("product.admission.inflight", inFlight, AtomicInteger::get)
+                .description("Escrituras en curso")
+                .register(meterRegistry);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // startNanos/endNanos de System.nanoTime()
+    public void release(long startNanos, long endNanos, boolean overloaded) {
+        int inUse = inFlight.getAndDecrement();
+        ProductProperties.Admission config = properties.getAdmission();
+        long threshold = config.getLatencyThreshold().toNanos();
+        synchronized (this) {
+            if (overloaded || endNanos - startNanos > threshold) {
+                if (endNanos - lastDecrease >= threshold) {
+                    limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+                    lastDecrease = endNanos;
+                }
+            } else if (inUse * 2 >= limit) {
+                limit = Math.min(config.getMaxLimit(), limit + 1 / limit);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.ayrton.product.service.admission;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// token bucket por cliente para la creacion de productos: un cliente que reintenta en bucle
+// no consume el limite de concurrencia que comparten todos los demas
+// - clientBurst solicitudes seguidas y luego clientPermitsPerSecond
+// - los buckets viven en una cache acotada y se olvidan tras clientIdleExpiry sin uso
+@Component
+public class ClientRateLimiter {
+
+    private final ProductProperties properties;
+    private final Cache<String, TokenBucket> buckets;
+    private final Counter rejected;
+
+    public ClientRateLimiter(ProductProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        ProductProperties.Admission config = properties.getAdmission();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTrackedClients())
+                .expireAfterAccess(config.getClientIdleExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "client-rate-buckets");
+        this.rejected = Counter.builder("product.admission.rejected")
+                .tag("reason", "client-rate")
+                .register(meterRegistry);
+    }
+
+    // vacio si se admite; TooManyRequestsException con el tiempo hasta el siguiente permiso si no
+    public Mono<Void> acquire(String clientId) {
+        return Mono.defer(() -> {
+            ProductProperties.Admission config = properties.getAdmission();
+            if (!config.isEnabled() || clientId == null) {
+                return Mono.empty(); // sin cliente la validacion del producto lo rechaza despues
+            }
+            long waitNanos = buckets.get(clientId, id -> new TokenBucket(config.getClientBurst()))
+                    .tryConsume(System.nanoTime(), config.getClientPermitsPerSecond(), config.getClientBurst());
+            if (waitNanos == 0) {
+                return Mono.empty();
+            }
+            rejected.increment();
+            return Mono.error(new TooManyRequestsException(
+                    "Demasiadas solicitudes para el cliente " + clientId, Duration.ofNanos(waitNanos)));
+        });
+    }
+
+    static final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int burst) {
+            this.tokens = burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        // 0 si habia un permiso; si no, nanosegundos hasta que haya uno
+        synchronized long tryConsume(long now, double permitsPerSecond, int burst) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerSecond / 1e9);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / permitsPerSecond * 1e9);
+        }
+    }
+}
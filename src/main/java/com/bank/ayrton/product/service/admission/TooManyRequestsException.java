@@ -0,0 +1,34 @@
+package com.bank.ayrton.product.service.admission;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+
+// 429 con la cabecera Retry-After (segundos, redondeado hacia arriba)
+public class TooManyRequestsException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    public TooManyRequestsException(String reason, Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, reason);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfter));
+        return headers;
+    }
+
+    public static String retryAfterSeconds(Duration retryAfter) {
+        long millis = retryAfter.toMillis();
+        return String.valueOf(Math.max(1, (millis + 999) / 1000));
+    }
+}
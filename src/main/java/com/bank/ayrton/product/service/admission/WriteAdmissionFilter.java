@@ -0,0 +1,101 @@
+package com.bank.ayrton.product.service.admission;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// load shedding de las escrituras en /api/v1/product: por encima del limite adaptativo se responde 429
+// con Retry-After antes de leer el cuerpo, sin ocupar una conexion de mongo ni una llamada a client-service;
+// las lecturas no pasan por el limite, ni las operaciones largas (/batch, /overdue-jobs, /fee-runs,
+// /portfolios/rebuild): siempre superan latency-threshold y bajarian el limite de las altas normales
+@Component
+public class WriteAdmissionFilter implements WebFilter {
+
+    // solo el CRUD de productos: alta, PUT/PATCH/DELETE por id y marcado de vencido
+    private static final PathPattern PRODUCTS = PathPatternParser.defaultInstance.parse("/api/v1/product");
+    private static final PathPattern PRODUCT = PathPatternParser.defaultInstance.parse("/api/v1/product/{id}");
+    private static final PathPattern MARK_OVERDUE =
+            PathPatternParser.defaultInstance.parse("/api/v1/product/{id}/mark-overdue");
+    private static final Set<HttpMethod> ITEM_WRITES = Set.of(HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE);
+
+    private final ProductProperties properties;
+    private final AdaptiveConcurrencyLimit limit;
+    private final Counter rejected;
+
+    public WriteAdmissionFilter(ProductProperties properties, AdaptiveConcurrencyLimit limit, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = limit;
+        this.rejected = Counter.builder("product.admission.rejected")
+                .tag("reason", "concurrency")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!properties.getAdmission().isEnabled() || !isWrite(exchange.getRequest())) {
+            return chain.filter(exchange);
+        }
+        if (!limit.tryAcquire()) {
+            rejected.increment();
+            return shed(exchange.getResponse());
+        }
+        long start = System.nanoTime();
+        // los errores llegan aqui antes de que el manejador de excepciones fije el estado de la respuesta
+        AtomicBoolean overloaded = new AtomicBoolean();
+        return chain.filter(exchange)
+                .doOnError(error -> overloaded.set(isOverload(error)))
+                .doFinally(signal -> limit.release(start, System.nanoTime(),
+                        overloaded.get() || isOverload(exchange.getResponse().getStatusCode())));
+    }
+
+    private static boolean isWrite(ServerHttpRequest request) {
+        PathContainer path = request.getPath().pathWithinApplication();
+        HttpMethod method = request.getMethod();
+        return (HttpMethod.POST.equals(method) && PRODUCTS.matches(path))
+                || (ITEM_WRITES.contains(method) && PRODUCT.matches(path))
+                || (HttpMethod.PUT.equals(method) && MARK_OVERDUE.matches(path));
+    }
+
+    private Mono<Void> shed(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                TooManyRequestsException.retryAfterSeconds(properties.getAdmission().getRetryAfter()));
+        return response.setComplete();
+    }
+
+    // 503/504, timeouts y bulkhead/circuito de client-service: senal de que hay que bajar el limite
+    // (un 429 por cliente no lo es: solo afecta a ese cliente)
+    private static boolean isOverload(Throwable error) {
+        if (error instanceof ResponseStatusException status) {
+            return isOverload(status.getStatusCode());
+        }
+        return error instanceof TimeoutException
+                || error instanceof BulkheadFullException
+                || error instanceof CallNotPermittedException;
+    }
+
+    private static boolean isOverload(HttpStatusCode status) {
+        return status != null && (status.value() == 503 || status.value() == 504);
+    }
+}
@@ -0,0 +1,183 @@
+package com.bank.ayrton.product.service.blocking;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ejecuta pasos bloqueantes (SDK del core bancario, HSM de tarjetas) fuera de los event loops de netty
+// - cada integracion tiene su propio limite de llamadas en paralelo: una integracion lenta no agota a las demas
+// - VIRTUAL_THREADS: un hilo virtual por llamada; la espera por un permiso (hasta maxWait) ocurre en el hilo virtual
+// - BOUNDED_ELASTIC: hilos de plataforma (maxConcurrency) y una cola acotada (queueCapacity)
+// si no hay permiso ni lugar en la cola se responde 503 en lugar de encolar sin limite
+@Slf4j
+@Component
+public class BlockingExecutor implements DisposableBean {
+
+    private final ProductProperties.Blocking config;
+    private final MeterRegistry meterRegistry;
+    private final ProductProperties.Blocking.Mode mode;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final ExecutorService virtualThreads;
+    private final Scheduler virtualScheduler;
+
+    public BlockingExecutor(ProductProperties properties, MeterRegistry meterRegistry) {
+        this.config = properties.getBlocking();
+        this.meterRegistry = meterRegistry;
+        this.virtualThreads = config.getMode() == ProductProperties.Blocking.Mode.VIRTUAL_THREADS
+                ? newVirtualThreadExecutor()
+                : null;
+        if (config.getMode() == ProductProperties.Blocking.Mode.VIRTUAL_THREADS && virtualThreads == null) {
+            log.warn("Hilos virtuales no disponibles en java {}, se usa BOUNDED_ELASTIC", Runtime.version().feature());
+        }
+        this.mode = virtualThreads != null
+                ? ProductProperties.Blocking.Mode.VIRTUAL_THREADS
+                : ProductProperties.Blocking.Mode.BOUNDED_ELASTIC;
+        this.virtualScheduler = virtualThreads != null ? Schedulers.fromExecutorService(virtualThreads, "virtual") : null;
+    }
+
+    public ProductProperties.Blocking.Mode getMode() {
+        return mode;
+    }
+
+    // integration: nombre de la integracion (limite, metricas y nombre de los hilos)
+    public <T> Mono<T> call(String integration, Callable<T> task) {
+        return Mono.defer(() -> lanes.computeIfAbsent(integration, this::lane).call(task));
+    }
+
+    public Mono<Void> run(String integration, Runnable task) {
+        return call(integration, () -> {
+            task.run();
+            return Boolean.TRUE;
+        }).then();
+    }
+
+    private Lane lane(String integration) {
+        int maxConcurrency = config.maxConcurrency(integration);
+        Lane lane = mode == ProductProperties.Blocking.Mode.VIRTUAL_THREADS
+                ? new VirtualThreadLane(integration, maxConcurrency)
+                : new BoundedElasticLane(integration, maxConcurrency);
+        Gauge.builder("product.blocking.active", lane.active, AtomicInteger::get)
+                .tag("integration", integration)
+                .register(meterRegistry);
+        return lane;
+    }
+
+    @Override
+    public void destroy() {
+        lanes.values().forEach(Lane::dispose);
+        if (virtualScheduler != null) {
+            virtualScheduler.dispose();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() por reflexion: el proyecto compila con java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private abstract class Lane {
+
+        final String integration;
+        final AtomicInteger active = new AtomicInteger();
+        final Timer timer;
+
+        Lane(String integration) {
+            this.integration = integration;
+            this.timer = Timer.builder("product.blocking.calls")
+                    .tag("integration", integration)
+                    .tag("mode", mode.name())
+                    .register(meterRegistry);
+        }
+
+        abstract <T> Mono<T> call(Callable<T> task);
+
+        void dispose() {
+        }
+
+        <T> T timed(Callable<T> task) throws Exception {
+            active.incrementAndGet();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                return task.call();
+            } finally {
+                sample.stop(timer);
+                active.decrementAndGet();
+            }
+        }
+
+        ResponseStatusException busy() {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Integracion " + integration + " ocupada, intente nuevamente");
+        }
+    }
+
+    private final class VirtualThreadLane extends Lane {
+
+        private final Semaphore permits;
+
+        VirtualThreadLane(String integration, int maxConcurrency) {
+            super(integration);
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        <T> Mono<T> call(Callable<T> task) {
+            return Mono.fromCallable(() -> {
+                if (!permits.tryAcquire(config.getMaxWait().toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw busy();
+                }
+                try {
+                    return timed(task);
+                } finally {
+                    permits.release();
+                }
+            }).subscribeOn(virtualScheduler);
+        }
+    }
+
+    private final class BoundedElasticLane extends Lane {
+
+        private final Scheduler scheduler;
+
+        BoundedElasticLane(String integration, int maxConcurrency) {
+            super(integration);
+            this.scheduler = Schedulers.newBoundedElastic(maxConcurrency, config.getQueueCapacity(),
+                    "blocking-" + integration);
+        }
+
+        @Override
+        <T> Mono<T> call(Callable<T> task) {
+            return Mono.fromCallable(() -> timed(task))
+                    .subscribeOn(scheduler)
+                    .onErrorMap(RejectedExecutionException.class, e -> busy());
+        }
+
+        @Override
+        void dispose() {
+            scheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.bank.ayrton.product.service.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// documentos por id en memoria, con tamaño y antiguedad maximos
+// - las lecturas concurrentes del mismo id comparten una sola consulta a mongo
+// - un id inexistente o una consulta fallida no se guardan
+// - invalidar durante una carga descarta su resultado: la siguiente lectura vuelve a mongo
+// los valores se comparten entre solicitudes y no se deben modificar
+final class IdCache<T> {
+
+    private final AsyncCache<String, T> cache;
+
+    IdCache(String name, int maxSize, Duration maxAge, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxAge)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), name);
+    }
+
+    Mono<T> get(String id, Function<String, Mono<T>> loader) {
+        // suppressCancel: cancelar un suscriptor no debe cancelar la carga compartida con los demas
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    long size() {
+        return cache.synchronous().estimatedSize();
+    }
+}
@@ -0,0 +1,131 @@
+package com.bank.ayrton.product.service.cache;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Function;
+
+// cache cercana (en memoria de cada instancia) de productos y tarjetas de debito por id (product.near-cache.*)
+// - solo la usan las lecturas habilitadas en product.near-cache.endpoints; el resto lee siempre de mongo
+// - las escrituras de esta instancia invalidan el id al terminar
+// - las de otras instancias (o de otros servicios) llegan por un change stream de products y debit_cards que solo
+//   trae el _id; si el stream se corta se vacia la cache al reabrirlo, y max-age acota lo que se pudo perder
+@Slf4j
+@Component
+public class NearCaches {
+
+    public static final String PRODUCT_BY_ID = "product-by-id";
+    public static final String DEBIT_CARD_BY_ID = "debit-card-by-id";
+
+    // solo la clave y el tipo de operacion: el _id del evento (token) se conserva
+    private static final ChangeStreamOptions KEYS_ONLY = ChangeStreamOptions.builder()
+            .filter(new Document("$project", new Document("documentKey", 1).append("operationType", 1)))
+            .build();
+    private static final Set<String> COLLECTION_GONE = Set.of("drop", "rename", "dropDatabase", "invalidate");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ProductProperties properties;
+    private final IdCache<Product> products;
+    private final IdCache<DebitCard> debitCards;
+    private Disposable broadcast;
+
+    public NearCaches(ReactiveMongoTemplate mongoTemplate, ProductProperties properties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        ProductProperties.NearCache config = properties.getNearCache();
+        this.products = new IdCache<>("products", config.getMaxSize(), config.getMaxAge(), meterRegistry);
+        this.debitCards = new IdCache<>("debit-cards", config.getMaxSize(), config.getMaxAge(), meterRegistry);
+    }
+
+    public Mono<Product> product(String endpoint, String id, Function<String, Mono<Product>> loader) {
+        return properties.getNearCache().isEnabled(endpoint) ? products.get(id, loader) : loader.apply(id);
+    }
+
+    public Mono<DebitCard> debitCard(String endpoint, String id, Function<String, Mono<DebitCard>> loader) {
+        return properties.getNearCache().isEnabled(endpoint) ? debitCards.get(id, loader) : loader.apply(id);
+    }
+
+    public void invalidateProduct(String id) {
+        products.invalidate(id);
+    }
+
+    public void invalidateProducts(Collection<String> ids) {
+        ids.forEach(products::invalidate);
+    }
+
+    public void invalidateDebitCard(String id) {
+        debitCards.invalidate(id);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ProductProperties.NearCache config = properties.getNearCache();
+        if (config.isEnabled() && config.isBroadcast()) {
+            broadcast = Flux.merge(invalidations("products", products), invalidations("debit_cards", debitCards))
+                    .subscribe();
+        }
+    }
+
+    // invalida cada id modificado; ante un error o cierre del stream se reabre y se vacia la cache
+    Flux<String> invalidations(String collection, IdCache<?> cache) {
+        ProductProperties.NearCache config = properties.getNearCache();
+        return Flux.defer(() -> {
+                    cache.invalidateAll(); // lo que cambio mientras el stream estaba cerrado no se sabe
+                    return mongoTemplate.changeStream(collection, KEYS_ONLY, Document.class);
+                })
+                .concatWith(Mono.error(() -> new IllegalStateException("change stream cerrado")))
+                .mapNotNull(event -> invalidate(cache, event))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, config.getRestartBackoff())
+                        .maxBackoff(config.getMaxRestartBackoff())
+                        .doBeforeRetry(signal -> log.warn("Invalidacion de la cache de {} interrumpida, se reabre: {}",
+                                collection, signal.failure().getMessage())));
+    }
+
+    private static String invalidate(IdCache<?> cache, ChangeStreamEvent<Document> event) {
+        String operation = event.getRaw() == null || event.getRaw().getOperationTypeString() == null
+                ? "" : event.getRaw().getOperationTypeString();
+        String id = id(event.getRaw() == null ? null : event.getRaw().getDocumentKey());
+        if (id == null || COLLECTION_GONE.contains(operation)) {
+            cache.invalidateAll();
+            return operation;
+        }
+        cache.invalidate(id);
+        return id;
+    }
+
+    private static String id(BsonDocument documentKey) {
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id instanceof BsonObjectId objectId ? objectId.getValue().toHexString()
+                : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (broadcast != null) {
+            broadcast.dispose();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.bank.ayrton.product.service.card;
+
+import com.bank.ayrton.product.dto.AccountBalance;
+import com.bank.ayrton.product.dto.DebitCardBalances;
+import com.bank.ayrton.product.entity.Money;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// resuelve la tarjeta y los saldos de todas sus cuentas en una sola agregacion ($lookup sobre products),
+// en lugar de leer la tarjeta y luego cada cuenta por separado
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DebitCardBalanceService {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public Mono<DebitCardBalances> balances(String cardId) {
+        List<AggregationOperation> stages = pipeline(cardId).stream()
+                .<AggregationOperation>map(stage -> context -> stage)
+                .toList();
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages), "debit_cards", Document.class)
+                .next()
+                .map(DebitCardBalanceService::toBalances);
+    }
+
+    // tambien lo usa QueryPlanReport para revisar que la agregacion vaya por _id en ambas colecciones
+    public static List<Document> pipeline(String cardId) {
+        Object id = ObjectId.isValid(cardId) ? new ObjectId(cardId) : cardId;
+        // ids de cuentas como ObjectId (igual que _id en products); si alguno no es valido se deja el texto
+        Document accountIds = new Document("$map", new Document("input",
+                new Document("$concatArrays", List.of(List.of("$mainAccountId"),
+                        new Document("$ifNull", List.of("$linkedAccountIds", List.of())))))
+                .append("as", "accountId")
+                .append("in", new Document("$convert", new Document("input", "$$accountId")
+                        .append("to", "objectId")
+                        .append("onError", "$$accountId")
+                        .append("onNull", null))));
+        return List.of(
+                new Document("$match", new Document("_id", id)),
+                new Document("$project", new Document("mainAccountId", 1)
+                        .append("linkedAccountIds", 1)
+                        .append("accountIds", accountIds)),
+                new Document("$lookup", new Document("from", "products")
+                        .append("localField", "accountIds")
+                        .append("foreignField", "_id")
+                        .append("pipeline", List.of(new Document("$project", new Document("balance", 1))))
+                        .append("as", "accounts")));
+    }
+
+    // $lookup no conserva el orden de localField: se reordena principal primero y luego las asociadas
+    private static DebitCardBalances toBalances(Document card) {
+        Map<String, Money> balances = new HashMap<>();
+        for (Document account : card.getList("accounts", Document.class, List.of())) {
+            balances.put(String.valueOf(account.get("_id")), Money.fromBson(account.get("balance")));
+        }
+
+        String mainAccountId = card.getString("mainAccountId");
+        Set<String> ordered = new LinkedHashSet<>();
+        if (mainAccountId != null) {
+            ordered.add(mainAccountId);
+        }
+        ordered.addAll(card.getList("linkedAccountIds", String.class, List.of()));
+
+        List<AccountBalance> accounts = new ArrayList<>(ordered.size());
+        for (String accountId : ordered) {
+            if (!balances.containsKey(accountId)) {
+                log.warn("La cuenta {} de la tarjeta {} no existe", accountId, card.get("_id"));
+                continue;
+            }
+            accounts.add(new AccountBalance(accountId, balances.get(accountId), accountId.equals(mainAccountId)));
+        }
+        return new DebitCardBalances(String.valueOf(card.get("_id")), accounts);
+    }
+}
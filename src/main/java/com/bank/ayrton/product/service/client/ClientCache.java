@@ -0,0 +1,52 @@
+package com.bank.ayrton.product.service.client;
+
+import com.bank.ayrton.product.config.ClientServiceProperties;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+// cache asincrona de clientes delante de client-service
+// - las consultas concurrentes del mismo id comparten una sola llamada remota
+// - pasado refreshAfter se devuelve el valor guardado y se recarga en segundo plano;
+//   si la recarga falla (client-service caido o circuito abierto) se sigue sirviendo hasta expireAfter
+// - se invalida con los eventos de cliente modificado (ClientEventConsumer)
+@Slf4j
+@Component
+public class ClientCache {
+
+    private final AsyncLoadingCache<String, ClientDto> cache;
+
+    public ClientCache(ClientServiceProperties properties, ClientServiceClient client, MeterRegistry meterRegistry) {
+        ClientServiceProperties.Cache config = properties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .refreshAfterWrite(config.getRefreshAfter())
+                .expireAfterWrite(config.getExpireAfter())
+                .recordStats()
+                .buildAsync((clientId, executor) -> client.getClientById(clientId).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "clients");
+    }
+
+    public Mono<ClientDto> get(String clientId) {
+        // suppressCancel: cancelar un suscriptor no debe cancelar la carga compartida con los demas
+        return Mono.fromFuture(cache.get(clientId), true);
+    }
+
+    // cliente ya cargado, sin esperar ni disparar una llamada remota; null si no esta en cache
+    public ClientDto getIfPresent(String clientId) {
+        CompletableFuture<ClientDto> future = cache.getIfPresent(clientId);
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    public void invalidate(String clientId) {
+        log.debug("Invalidando cliente {} en cache", clientId);
+        cache.synchronous().invalidate(clientId);
+    }
+}
@@ -0,0 +1,38 @@
+package com.bank.ayrton.product.service.client;
+
+import com.bank.ayrton.product.dto.ClientDto;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+// llamada remota a client-service, en un bean propio para que el proxy del circuit breaker la intercepte
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClientServiceClient {
+
+    private final WebClient clientWebClient;
+
+    // bulkhead: como maximo tantas llamadas en curso como conexiones tiene el pool; el resto falla al instante
+    // (503 por el fallback) en lugar de encolarse y retener solicitudes de escritura mientras client-service va lento
+    @CircuitBreaker(name = "clientService", fallbackMethod = "fallbackClient")
+    @Bulkhead(name = "clientService")
+    public Mono<ClientDto> getClientById(String clientId) {
+        return clientWebClient.get()
+                .uri("/api/v1/client/{id}", clientId) // plantilla: las metricas se agrupan por uri y no por id
+                .retrieve()
+                .bodyToMono(ClientDto.class);
+    }
+
+    public Mono<ClientDto> fallbackClient(String clientId, Throwable error) {
+        log.warn("Fallback activado al llamar a client-service: {}", error.getMessage());
+        return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "client-service no disponible actualmente"));
+    }
+}
@@ -0,0 +1,446 @@
+package com.bank.ayrton.product.service.fee;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.FeeRunReport;
+import com.bank.ayrton.product.entity.FeeRun;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// cobro de fin de mes de cuentas corrientes y de ahorro: mantenimiento + comision por transacciones sobre el limite libre
+// - las particiones (hash del clientId) se reparten en rangos que se procesan en paralelo
+// - cada rango se lee en bloques ordenados por (partition, _id) y se cobra con un $inc por producto en una escritura masiva
+// - despues de cada bloque se guarda el cursor del rango en fee_runs: una ejecucion caida se reanuda desde ahi
+// - el filtro lastFeeRun != mes hace que un producto no se cobre dos veces aunque un bloque se repita
+@Slf4j
+@Service
+public class FeeRunService {
+
+    private static final List<ProductSubtype> FEE_SUBTYPES = List.of(ProductSubtype.CURRENT_ACCOUNT, ProductSubtype.SAVINGS);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ProductProperties properties;
+    private final Clock clock;
+    private final ClientPortfolioViewService portfolioViews;
+    private final NearCaches nearCaches;
+    private final String instanceId = UUID.randomUUID().toString();
+    // meses en curso en esta instancia: el lease es por instancia, no impide que la ejecucion programada y una
+    // manual cobren el mismo mes a la vez
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Timer chunkTimer;
+    private final Counter charged;
+    private final Counter exempt;
+    private final Counter insufficientFunds;
+    private final Counter conflicts;
+
+    public FeeRunService(ReactiveMongoTemplate mongoTemplate, ProductProperties properties, Clock clock,
+                         ClientPortfolioViewService portfolioViews, NearCaches nearCaches,
+                         MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.clock = clock;
+        this.portfolioViews = portfolioViews;
+        this.nearCaches = nearCaches;
+        this.chunkTimer = meterRegistry.timer("product.fees.chunk");
+        this.charged = meterRegistry.counter("product.fees.accounts", "result", "charged");
+        this.exempt = meterRegistry.counter("product.fees.accounts", "result", "exempt");
+        this.insufficientFunds = meterRegistry.counter("product.fees.accounts", "result", "insufficient-funds");
+        this.conflicts = meterRegistry.counter("product.fees.accounts", "result", "conflict");
+    }
+
+    // ejecucion programada (product.fee-job.cron, p.ej. el dia 1): cobra el mes anterior
+    @Scheduled(cron = "${product.fee-job.cron:-}", zone = "${product.fee-job.zone:America/Lima}")
+    public void runScheduled() {
+        run(null).subscribe(
+                report -> log.info("Cobro de comisiones programado terminado: {}", report),
+                error -> log.error("Fallo el cobro de comisiones programado: {}", error.getMessage()));
+    }
+
+    // ejecucion manual: el cobro corre desacoplado de la solicitud, asi un timeout del cliente o del proxy no lo
+    // cancela a mitad de un bloque (dejando el lease tomado); el avance se consulta con status(period)
+    public Mono<YearMonth> start(YearMonth month) {
+        return Mono.fromCallable(() -> period(month))
+                .doOnNext(period -> {
+                    String key = period.toString();
+                    if (!running.add(key)) {
+                        throw alreadyRunning(key);
+                    }
+                    execute(key)
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .subscribe(
+                                    report -> log.info("Cobro de comisiones de {} terminado: {}", key, report),
+                                    error -> log.error("Fallo el cobro de comisiones de {}: {}", key, error.getMessage()));
+                });
+    }
+
+    // sin mes se cobra el anterior al actual (en la zona product.fee-job.zone)
+    public Mono<FeeRunReport> run(YearMonth month) {
+        return Mono.fromCallable(() -> period(month).toString())
+                .flatMap(key -> running.add(key) ? execute(key) : Mono.error(alreadyRunning(key)));
+    }
+
+    // el mes ya esta reservado en running; se libera al terminar
+    private Mono<FeeRunReport> execute(String key) {
+        Instant startedAt = clock.instant();
+        AtomicLong processedNow = new AtomicLong();
+
+        return claim(key, startedAt)
+                .flatMap(run -> run.getStatus() == FeeRun.Status.COMPLETED
+                        ? Mono.just(run)
+                        : assignPartitions()
+                                .then(Flux.range(0, run.getRanges().size())
+                                        .filter(index -> !run.getRanges().get(index).isDone())
+                                        .flatMap(index -> processRange(key, index, run.getRanges().get(index), processedNow),
+                                                properties.getFeeJob().getParallelism())
+                                        .then())
+                                .then(Mono.defer(() -> complete(key))))
+                .map(run -> report(run, processedNow.get(), startedAt))
+                .doOnNext(report -> log.info("Cobro de comisiones: {}", report))
+                .doFinally(signal -> running.remove(key));
+    }
+
+    private static ResponseStatusException alreadyRunning(String period) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "El cobro de " + period + " ya se está ejecutando");
+    }
+
+    private YearMonth period(YearMonth month) {
+        YearMonth period = month == null ? currentMonth().minusMonths(1) : month;
+        if (!period.isBefore(currentMonth())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Solo se pueden cobrar meses terminados: " + period);
+        }
+        return period;
+    }
+
+    // avance del cobro de un mes (mientras corre o ya terminado)
+    public Mono<FeeRunReport> status(YearMonth period) {
+        return mongoTemplate.findById(period.toString(), FeeRun.class)
+                .map(run -> report(run, 0, null));
+    }
+
+    // una sola instancia cobra un mes a la vez; un mes ya terminado devuelve su resumen sin volver a cobrar
+    private Mono<FeeRun> claim(String period, Instant now) {
+        Query query = Query.query(Criteria.where("_id").is(period).and("status").ne(FeeRun.Status.COMPLETED)
+                .orOperator(Criteria.where("lockedUntil").lt(now), Criteria.where("owner").is(instanceId)));
+        Update update = new Update()
+                .set("owner", instanceId)
+                .set("lockedUntil", now.plus(properties.getFeeJob().getLease()))
+                .inc("attempts", 1)
+                .setOnInsert("status", FeeRun.Status.RUNNING)
+                .setOnInsert("startedAt", now)
+                .setOnInsert("ranges", ranges());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        FeeRun.class)
+                // el documento existe y no cumple el filtro: terminado o con el lease de otra instancia
+                .onErrorResume(DuplicateKeyException.class, e -> mongoTemplate.findById(period, FeeRun.class)
+                        .filter(run -> run.getStatus() == FeeRun.Status.COMPLETED)
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                "El cobro de " + period + " se está ejecutando en otra instancia"))));
+    }
+
+    // rangos contiguos de Product.PARTITIONS; se fijan al crear el mes para que una reanudacion use los mismos
+    private List<FeeRun.Range> ranges() {
+        int count = Math.max(1, Math.min(properties.getFeeJob().getPartitions(), Product.PARTITIONS));
+        List<FeeRun.Range> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ranges.add(new FeeRun.Range(i * Product.PARTITIONS / count, (i + 1) * Product.PARTITIONS / count));
+        }
+        return ranges;
+    }
+
+    // productos creados antes de existir el campo partition
+    private Mono<Long> assignPartitions() {
+        int chunkSize = properties.getFeeJob().getChunkSize();
+        return assignPartitionChunk(chunkSize)
+                .expand(assigned -> assigned == chunkSize ? assignPartitionChunk(chunkSize) : Mono.empty())
+                .reduce(0L, Long::sum)
+                .doOnNext(assigned -> {
+                    if (assigned > 0) {
+                        log.info("Particion asignada a {} productos", assigned);
+                    }
+                });
+    }
+
+    private Mono<Long> assignPartitionChunk(int chunkSize) {
+        Query query = Query.query(Criteria.where("partition").exists(false)).limit(chunkSize);
+        query.fields().include("clientId");
+        return mongoTemplate.find(query, Product.class)
+                .collectList()
+                .flatMap(products -> {
+                    if (products.isEmpty()) {
+                        return Mono.just(0L);
+                    }
+                    ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+                    for (Product product : products) {
+                        bulk.updateOne(Query.query(Criteria.where("id").is(product.getId()).and("partition").exists(false)),
+                                new Update().set("partition", Product.partitionOf(product.getClientId())));
+                    }
+                    return bulk.execute().thenReturn((long) products.size());
+                });
+    }
+
+    private Mono<Void> processRange(String period, int index, FeeRun.Range range, AtomicLong processedNow) {
+        return Mono.just(new Cursor(range.getLastPartition(), range.getLastId()))
+                .expand(cursor -> chunk(period, index, range, cursor, processedNow))
+                .then(Mono.defer(() -> updateRun(period, new Update().set("ranges." + index + ".done", true))))
+                .doOnSuccess(done -> log.debug("Rango {} [{}, {}) del cobro {} terminado",
+                        index, range.getFrom(), range.getTo(), period));
+    }
+
+    // lee, cobra y guarda el cursor de un bloque; vacio cuando el rango ya no tiene productos
+    private Mono<Cursor> chunk(String period, int index, FeeRun.Range range, Cursor cursor, AtomicLong processedNow) {
+        long start = System.nanoTime();
+        return mongoTemplate.find(chunkQuery(period, range, cursor), Product.class)
+                .collectList()
+                .filter(products -> !products.isEmpty())
+                .flatMap(products -> charge(period, products)
+                        .flatMap(tally -> checkpoint(period, index, products.get(products.size() - 1), tally))
+                        .then(portfolioViews.refresh(clientIds(products)))
+                        .then(Mono.fromSupplier(() -> {
+                            processedNow.addAndGet(products.size());
+                            chunkTimer.record(Duration.ofNanos(System.nanoTime() - start));
+                            Product last = products.get(products.size() - 1);
+                            return new Cursor(last.getPartition(), last.getId());
+                        })));
+    }
+
+    private Query chunkQuery(String period, FeeRun.Range range, Cursor cursor) {
+        Criteria criteria = Criteria.where("subtype").in(FEE_SUBTYPES).and("lastFeeRun").ne(period)
+                .and("id").lt(openedBefore(period));
+        if (cursor.partition() == null) {
+            criteria.and("partition").gte(range.getFrom()).lt(range.getTo());
+        } else {
+            criteria.orOperator(
+                    Criteria.where("partition").is(cursor.partition()).and("id").gt(cursor.id()),
+                    Criteria.where("partition").gt(cursor.partition()).lt(range.getTo()));
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by("partition", "id"))
+                .limit(properties.getFeeJob().getChunkSize());
+        query.fields().include("partition", "clientId", "balance", "maintenanceFee", "freeTransactionLimit",
+                "transactionFee", "monthlyTransactions." + period);
+        return query;
+    }
+
+    // solo cuentas que existian en el mes: el _id (ObjectId) lleva su fecha de creacion, y el menor ObjectId del
+    // primer segundo del mes siguiente (en product.fee-job.zone) excluye las abiertas despues
+    private ObjectId openedBefore(String period) {
+        long end = YearMonth.parse(period).plusMonths(1).atDay(1)
+                .atStartOfDay(properties.getFeeJob().getZone()).toEpochSecond();
+        return new ObjectId(String.format("%08x%016x", end, 0));
+    }
+
+    // un updateOne por producto con el cargo total; el filtro de saldo evita dejarlo negativo si cambio desde la lectura
+    // los exentos y sin saldo tambien se marcan con el mes y pierden su contador: si no, monthlyTransactions
+    // acumularia una entrada por mes en las cuentas que nunca se cobran
+    private Mono<Tally> charge(String period, List<Product> products) {
+        Tally tally = new Tally();
+        tally.processed = products.size();
+        Map<String, Long> fees = new LinkedHashMap<>();
+        List<String> uncharged = new ArrayList<>();
+        for (Product product : products) {
+            long fee = fee(product, period);
+            if (fee == 0) {
+                tally.exempt++;
+                uncharged.add(product.getId());
+            } else if (product.getBalance() == null || product.getBalance().minorUnits() < fee) {
+                tally.insufficientFunds++;
+                uncharged.add(product.getId());
+            } else {
+                fees.put(product.getId(), fee);
+            }
+        }
+        exempt.increment(tally.exempt);
+        insufficientFunds.increment(tally.insufficientFunds);
+        if (fees.isEmpty()) {
+            return settle(period, uncharged).thenReturn(tally);
+        }
+
+        ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Map.Entry<String, Long> entry : fees.entrySet()) {
+            Query query = Query.query(Criteria.where("id").is(entry.getKey())
+                    .and("lastFeeRun").ne(period)
+                    .and("balance").gte(Money.toDecimal128(entry.getValue(), Money.DEFAULT_CURRENCY)));
+            Update update = new Update()
+                    .inc("balance", Money.toDecimal128(-entry.getValue(), Money.DEFAULT_CURRENCY))
+                    .inc("version", 1)
+                    .set("lastFeeRun", period)
+                    .unset("monthlyTransactions." + period);
+            bulk.updateOne(query, update);
+        }
+        return bulk.execute()
+                .doFinally(signal -> nearCaches.invalidateProducts(fees.keySet()))
+                .flatMap(result -> result.getMatchedCount() == fees.size()
+                        ? Mono.just(fees.keySet())
+                        : chargedAmong(period, fees.keySet()))
+                .flatMap(chargedIds -> {
+                    for (String id : chargedIds) {
+                        tally.feesMinor = Money.add(tally.feesMinor, fees.get(id));
+                    }
+                    tally.charged = chargedIds.size();
+                    tally.conflicts = fees.size() - chargedIds.size();
+                    charged.increment(tally.charged);
+                    conflicts.increment(tally.conflicts);
+                    // los que no se cobraron por el filtro de saldo tampoco deben conservar el contador
+                    for (String id : fees.keySet()) {
+                        if (!chargedIds.contains(id)) {
+                            uncharged.add(id);
+                        }
+                    }
+                    return settle(period, uncharged).thenReturn(tally);
+                });
+    }
+
+    // marca el mes como procesado sin cobrar; no cambia el saldo ni la version
+    private Mono<Void> settle(String period, List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(ids).and("lastFeeRun").ne(period)),
+                        new Update().set("lastFeeRun", period).unset("monthlyTransactions." + period), Product.class)
+                .then();
+    }
+
+    // algun producto no se actualizo (saldo retirado entre la lectura y el cobro): se consulta cuales si se cobraron
+    private Mono<Set<String>> chargedAmong(String period, Set<String> ids) {
+        Query query = Query.query(Criteria.where("id").in(ids).and("lastFeeRun").is(period));
+        query.fields().include("id");
+        return mongoTemplate.find(query, Product.class)
+                .map(Product::getId)
+                .collect(HashSet::new, Set::add);
+    }
+
+    static long fee(Product product, String period) {
+        long maintenance = product.getMaintenanceFee() == null ? 0 : product.getMaintenanceFee().minorUnits();
+        if (product.getTransactionFee() == null) {
+            return maintenance;
+        }
+        Integer transactions = product.getMonthlyTransactions() == null ? null : product.getMonthlyTransactions().get(period);
+        return Money.add(maintenance, Money.transactionFees(transactions == null ? 0 : transactions,
+                product.getFreeTransactionLimit() == null ? 0 : product.getFreeTransactionLimit(),
+                product.getTransactionFee().minorUnits()));
+    }
+
+    // guarda el cursor y los totales del bloque y renueva el lease
+    private Mono<Void> checkpoint(String period, int index, Product last, Tally tally) {
+        String range = "ranges." + index + ".";
+        return updateRun(period, new Update()
+                .set(range + "lastPartition", last.getPartition())
+                .set(range + "lastId", last.getId())
+                .inc(range + "processed", tally.processed)
+                .inc(range + "charged", tally.charged)
+                .inc(range + "exempt", tally.exempt)
+                .inc(range + "insufficientFunds", tally.insufficientFunds)
+                .inc(range + "conflicts", tally.conflicts)
+                .inc(range + "feesMinor", tally.feesMinor));
+    }
+
+    private Mono<Void> updateRun(String period, Update update) {
+        update.set("lockedUntil", clock.instant().plus(properties.getFeeJob().getLease()));
+        return mongoTemplate.updateFirst(ownRun(period), update, FeeRun.class)
+                .flatMap(result -> result.getMatchedCount() == 0
+                        ? Mono.error(new IllegalStateException("Se perdio el lease del cobro " + period))
+                        : Mono.empty());
+    }
+
+    private Mono<FeeRun> complete(String period) {
+        Update update = new Update().set("status", FeeRun.Status.COMPLETED).set("finishedAt", clock.instant());
+        return mongoTemplate.findAndModify(ownRun(period), update, FindAndModifyOptions.options().returnNew(true),
+                        FeeRun.class)
+                .switchIfEmpty(Mono.error(new IllegalStateException("Se perdio el lease del cobro " + period)));
+    }
+
+    private Query ownRun(String period) {
+        return Query.query(Criteria.where("_id").is(period).and("owner").is(instanceId));
+    }
+
+    private static Set<String> clientIds(List<Product> products) {
+        Set<String> clientIds = new HashSet<>();
+        for (Product product : products) {
+            clientIds.add(product.getClientId());
+        }
+        return clientIds;
+    }
+
+    private FeeRunReport report(FeeRun run, long processedNow, Instant startedAt) {
+        FeeRunReport report = new FeeRunReport();
+        report.setPeriod(run.getId());
+        report.setStatus(run.getStatus());
+        report.setAttempts(run.getAttempts());
+        report.setStartedAt(run.getStartedAt());
+        report.setFinishedAt(run.getFinishedAt());
+        long feesMinor = 0;
+        List<FeeRun.Range> ranges = run.getRanges() == null ? List.of() : run.getRanges();
+        report.setRanges(ranges.size());
+        for (FeeRun.Range range : ranges) {
+            report.setCompletedRanges(report.getCompletedRanges() + (range.isDone() ? 1 : 0));
+            report.setProcessed(report.getProcessed() + range.getProcessed());
+            report.setCharged(report.getCharged() + range.getCharged());
+            report.setExempt(report.getExempt() + range.getExempt());
+            report.setInsufficientFunds(report.getInsufficientFunds() + range.getInsufficientFunds());
+            report.setConflicts(report.getConflicts() + range.getConflicts());
+            feesMinor = Money.add(feesMinor, range.getFeesMinor());
+        }
+        report.setFees(Money.ofMinor(feesMinor));
+        if (startedAt != null) {
+            long elapsed = Math.max(1, Duration.between(startedAt, clock.instant()).toMillis());
+            report.setProcessedNow(processedNow);
+            report.setElapsedMillis(elapsed);
+            report.setAccountsPerSecond(processedNow * 1000.0 / elapsed);
+        }
+        return report;
+    }
+
+    private YearMonth currentMonth() {
+        return YearMonth.now(clock.withZone(properties.getFeeJob().getZone()));
+    }
+
+    private record Cursor(Integer partition, String id) {
+    }
+
+    // totales de un bloque, se suman al rango en el punto de control
+    private static final class Tally {
+        long processed;
+        long charged;
+        long exempt;
+        long insufficientFunds;
+        long conflicts;
+        long feesMinor;
+    }
+}
@@ -0,0 +1,355 @@
+package com.bank.ayrton.product.service.feed;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ProductChange;
+import com.bank.ayrton.product.entity.Product;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.CollectionOptions.CollectionChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+// cambios de products en vivo para los suscriptores SSE (requiere replica set, como las transacciones)
+// - un solo change stream por instancia reparte los cambios a todos los suscriptores; se abre con el primero
+//   y queda abierto para conservar el historial de reconexion
+// - cada suscriptor tiene su propio buffer acotado: uno lento no frena a los demas ni al change stream;
+//   al llenarse se desconecta (DISCONNECT) o se le descartan cambios (DROP)
+// - al reconectar con el ultimo token recibido se reenvia lo perdido desde el historial en memoria; si el token
+//   ya no esta (otra instancia, reinicio) se abre un change stream propio desde ese token
+// - si mongo ya no tiene el token en el oplog el suscriptor recibe "resync" y debe volver a leer por GET
+// - un delete no trae el documento: su clientId sale de la pre-imagen, que se activa al iniciar en la coleccion
+@Slf4j
+@Component
+public class ProductChangeFeed {
+
+    private static final String COLLECTION = "products";
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final int NAMESPACE_NOT_FOUND = 26;
+    private static final List<String> HIDDEN_FIELDS = List.of("appliedMovementIds");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ProductProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Object lock = new Object();
+    // protegidos por lock
+    private final Deque<ProductChange> history = new ArrayDeque<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private Disposable upstream;
+    private String lastToken;
+    // suscriptores reanudados con un change stream propio
+    private final AtomicInteger dedicated = new AtomicInteger();
+
+    public ProductChangeFeed(ReactiveMongoTemplate mongoTemplate, ProductProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("product.feed.subscribers", this, feed -> feed.subscribers.size() + feed.dedicated.get())
+                .description("Suscriptores conectados al feed de cambios de productos")
+                .register(meterRegistry);
+    }
+
+    // sin pre-imagenes los delete llegan sin clientId y los suscriptores filtrados por cliente no los reciben
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!properties.getFeed().isPreImages()) {
+            log.warn("product.feed.pre-images=false: los suscriptores filtrados por clientId no recibiran los delete");
+            return;
+        }
+        enablePreImages().subscribe(
+                null,
+                error -> log.warn("No se pudieron activar las pre-imagenes de products, los suscriptores filtrados "
+                        + "por clientId no recibiran los delete: {}", error.getMessage()));
+    }
+
+    public Mono<Void> enablePreImages() {
+        Document collMod = new Document("collMod", COLLECTION)
+                .append("changeStreamPreAndPostImages", new Document("enabled", true));
+        return mongoTemplate.executeCommand(collMod)
+                // base nueva: se crea la coleccion con las pre-imagenes activas
+                .onErrorResume(error -> error instanceof MongoCommandException command
+                                && command.getErrorCode() == NAMESPACE_NOT_FOUND,
+                        error -> mongoTemplate.createCollection(COLLECTION, CollectionOptions.empty()
+                                        .changeStream(CollectionChangeStreamOptions.preAndPostImages(true)))
+                                .then(Mono.empty()))
+                .doOnSuccess(result -> log.info("Pre-imagenes del change stream activas en {}", COLLECTION))
+                .then();
+    }
+
+    // cambios de un cliente y/o producto (ambos null = todos); lastEventId = token del ultimo cambio recibido
+    // termina con Disconnected si el suscriptor es lento (DISCONNECT) o si hay que resincronizar
+    public Flux<ProductChange> subscribe(String clientId, String productId, String lastEventId) {
+        Predicate<ProductChange> filter = change -> (clientId == null || clientId.equals(change.getClientId()))
+                && (productId == null || productId.equals(change.getProductId()));
+        BsonDocument resumeToken = lastEventId == null || lastEventId.isBlank() ? null : parseToken(lastEventId);
+        return Flux.defer(() -> {
+            Subscriber subscriber = new Subscriber(filter);
+            List<ProductChange> missed;
+            synchronized (lock) {
+                if (subscribers.size() + dedicated.get() >= properties.getFeed().getMaxSubscribers()) {
+                    return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Se alcanzo el maximo de suscriptores del feed de cambios"));
+                }
+                missed = resumeToken == null ? List.of() : fromHistory(lastEventId, filter);
+                if (missed == null) {
+                    return resumeFromMongo(resumeToken, clientId, productId, filter);
+                }
+                subscribers.add(subscriber);
+                start();
+            }
+            if (resumeToken != null) {
+                meterRegistry.counter("product.feed.resumed", "source", "history").increment();
+            }
+            return Flux.fromIterable(missed)
+                    .concatWith(subscriber.sink.asFlux())
+                    .doFinally(signal -> subscribers.remove(subscriber));
+        });
+    }
+
+    // cambios posteriores al token si sigue en el historial, null si no esta
+    private List<ProductChange> fromHistory(String token, Predicate<ProductChange> filter) {
+        List<ProductChange> missed = new ArrayList<>();
+        Iterator<ProductChange> newestFirst = history.descendingIterator();
+        while (newestFirst.hasNext()) {
+            ProductChange change = newestFirst.next();
+            if (change.getToken().equals(token)) {
+                Collections.reverse(missed);
+                return missed;
+            }
+            if (filter.test(change)) {
+                missed.add(change);
+            }
+        }
+        return null;
+    }
+
+    // sin historial: change stream propio desde el token, filtrado en el servidor; la contrapresion del
+    // suscriptor frena su cursor y no afecta a los demas
+    private Flux<ProductChange> resumeFromMongo(BsonDocument token, String clientId, String productId,
+                                                Predicate<ProductChange> filter) {
+        dedicated.incrementAndGet();
+        meterRegistry.counter("product.feed.resumed", "source", "mongo").increment();
+        List<Document> stages = new ArrayList<>();
+        if (clientId != null) {
+            stages.add(new Document("$match", new Document("$or", List.of(
+                    new Document("fullDocument.clientId", clientId),
+                    new Document("fullDocumentBeforeChange.clientId", clientId)))));
+        }
+        if (productId != null) {
+            stages.add(new Document("$match", new Document("documentKey._id",
+                    ObjectId.isValid(productId) ? new ObjectId(productId) : productId)));
+        }
+        return changeStream(token, stages)
+                .filter(filter)
+                .onErrorMap(ProductChangeFeed::isHistoryLost, error -> new Disconnected("resync"))
+                .doFinally(signal -> dedicated.decrementAndGet());
+    }
+
+    // abre el change stream compartido si no esta abierto; ante un error lo reabre desde el ultimo token
+    private void start() {
+        if (upstream != null && !upstream.isDisposed()) {
+            return;
+        }
+        ProductProperties.Feed config = properties.getFeed();
+        upstream = Flux.defer(() -> changeStream(currentToken(), List.of()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, config.getRestartBackoff())
+                        .maxBackoff(config.getMaxRestartBackoff())
+                        .doBeforeRetry(signal -> restarting(signal.failure())))
+                .subscribe(this::dispatch);
+    }
+
+    private BsonDocument currentToken() {
+        synchronized (lock) {
+            return lastToken == null ? null : new BsonDocument("_data", new BsonString(lastToken));
+        }
+    }
+
+    private void restarting(Throwable error) {
+        if (!isHistoryLost(error)) {
+            log.warn("Change stream de productos interrumpido, se reabre desde el ultimo cambio: {}", error.getMessage());
+            return;
+        }
+        // el ultimo token salio del oplog: se reabre desde ahora y los suscriptores deben resincronizar
+        log.error("Change stream de productos sin historial desde el ultimo cambio, se reabre desde ahora");
+        synchronized (lock) {
+            lastToken = null;
+            history.clear();
+            for (Subscriber subscriber : subscribers) {
+                disconnect(subscriber, "resync");
+            }
+        }
+    }
+
+    private void dispatch(ProductChange change) {
+        meterRegistry.counter("product.feed.events").increment();
+        synchronized (lock) {
+            lastToken = change.getToken();
+            history.addLast(change);
+            if (history.size() > properties.getFeed().getHistorySize()) {
+                history.removeFirst();
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.filter.test(change)) {
+                    offer(subscriber, change);
+                }
+            }
+        }
+    }
+
+    private void offer(Subscriber subscriber, ProductChange change) {
+        Sinks.EmitResult result = subscriber.sink.tryEmitNext(change);
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            if (properties.getFeed().getSlowConsumer() == ProductProperties.Feed.SlowConsumer.DROP) {
+                meterRegistry.counter("product.feed.dropped").increment();
+            } else {
+                disconnect(subscriber, "overflow");
+            }
+        } else if (result.isFailure()) {
+            subscribers.remove(subscriber); // cancelado o terminado
+        }
+    }
+
+    private void disconnect(Subscriber subscriber, String reason) {
+        subscribers.remove(subscriber);
+        meterRegistry.counter("product.feed.disconnected", "reason", reason).increment();
+        subscriber.sink.tryEmitError(new Disconnected(reason));
+    }
+
+    private Flux<ProductChange> changeStream(BsonDocument resumeToken, List<Document> filters) {
+        List<Document> stages = new ArrayList<>();
+        stages.add(new Document("$match", new Document("operationType",
+                new Document("$in", List.of("insert", "update", "replace", "delete")))));
+        stages.addAll(filters);
+        Document hidden = new Document();
+        HIDDEN_FIELDS.forEach(field -> hidden.append("fullDocument." + field, 0));
+        stages.add(new Document("$project", hidden));
+
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .filter(stages.toArray(Document[]::new))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (properties.getFeed().isPreImages()) {
+            options.fullDocumentBeforeChangeLookup(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        }
+        if (resumeToken != null) {
+            options.resumeAfter(resumeToken);
+        }
+        return mongoTemplate.changeStream(COLLECTION, options.build(), Product.class)
+                .map(ProductChangeFeed::toChange);
+    }
+
+    static ProductChange toChange(ChangeStreamEvent<Product> event) {
+        ChangeStreamDocument<Document> raw = event.getRaw();
+        Product product = event.getBody();
+        Product before = event.getBodyBeforeChange();
+        String clientId = product != null ? product.getClientId() : before != null ? before.getClientId() : null;
+        List<String> changedFields = raw.getUpdateDescription() == null ? null
+                : raw.getUpdateDescription().getUpdatedFields().keySet().stream()
+                        .filter(field -> HIDDEN_FIELDS.stream().noneMatch(field::startsWith))
+                        .toList();
+        String token = ((BsonDocument) event.getResumeToken()).getString("_data").getValue();
+        return new ProductChange(raw.getOperationTypeString(), id(raw.getDocumentKey()), clientId, changedFields,
+                product, event.getTimestamp(), token);
+    }
+
+    private static String id(BsonDocument documentKey) {
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id instanceof BsonObjectId objectId ? objectId.getValue().toHexString()
+                : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    // el token del change stream (_data) es hexadecimal
+    private static BsonDocument parseToken(String lastEventId) {
+        try {
+            HexFormat.of().parseHex(lastEventId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Last-Event-ID no valido");
+        }
+        return new BsonDocument("_data", new BsonString(lastEventId));
+    }
+
+    private static boolean isHistoryLost(Throwable error) {
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof MongoCommandException command && command.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void stop() {
+        synchronized (lock) {
+            if (upstream != null) {
+                upstream.dispose();
+            }
+            subscribers.forEach(subscriber -> subscriber.sink.tryEmitComplete());
+            subscribers.clear();
+        }
+    }
+
+    private final class Subscriber {
+
+        private final Predicate<ProductChange> filter;
+        private final Sinks.Many<ProductChange> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<ProductChange>get(properties.getFeed().getBufferSize()).get());
+
+        private Subscriber(Predicate<ProductChange> filter) {
+            this.filter = filter;
+        }
+    }
+
+    // fin del stream para el suscriptor: overflow (lento) o resync (se perdio el historial)
+    @Getter
+    public static final class Disconnected extends RuntimeException {
+
+        private final String reason;
+
+        private Disconnected(String reason) {
+            super(reason, null, false, false);
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.bank.ayrton.product.service.idempotency;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.IdempotencyRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// creaciones idempotentes con la cabecera Idempotency-Key
+// - la primera solicitud inserta la clave (IN_PROGRESS) y guarda la respuesta al terminar; un reintento recibe
+//   esa respuesta sin volver a llamar a client-service ni evaluar las reglas
+// - los duplicados simultaneos en la misma instancia comparten una sola ejecucion; en otra instancia esperan
+//   (hasta maxWait) a que la primera termine y reciben su respuesta, o 409 si no termina a tiempo
+// - los rechazos definitivos (4xx) tambien se guardan; los errores transitorios (5xx, 409, 429) liberan la clave
+// - la misma clave con otro cuerpo es 422
+@Slf4j
+@Component
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<Integer> TRANSIENT_4XX = Set.of(408, 409, 423, 425, 429);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final ProductProperties properties;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Execution> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(ReactiveMongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                              ProductProperties properties, Clock clock, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // scope separa las claves de cada endpoint y cliente (ver scope(...)); sin clave se ejecuta directamente
+    public <T> Mono<T> execute(String scope, String key, Object request, Class<T> type, Supplier<Mono<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        return Mono.defer(() -> {
+            if (key.length() > MAX_KEY_LENGTH) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        HEADER + " no puede superar " + MAX_KEY_LENGTH + " caracteres"));
+            }
+            String id = scope + ":" + key;
+            String hash = hash(request);
+            Execution created = new Execution(id, hash, attempt(id, hash, type, action));
+            Execution execution = inFlight.computeIfAbsent(id, k -> created);
+            if (execution != created) {
+                if (!execution.hash.equals(hash)) {
+                    return Mono.error(reusedKey());
+                }
+                count("coalesced");
+            }
+            return execution.result.map(type::cast);
+        });
+    }
+
+    // la clave la elige quien llama: dos clientes que reutilizan la misma clave con el mismo cuerpo
+    // no deben recibir la respuesta del otro
+    public static String scope(String endpoint, String clientId) {
+        return endpoint + ":" + (clientId == null ? "" : clientId);
+    }
+
+    private Mono<Object> attempt(String id, String hash, Class<?> type, Supplier<? extends Mono<?>> action) {
+        return Mono.defer(() -> claim(id, hash)
+                        .flatMap(claimed -> claimed ? run(id, action) : existing(id, hash, type, action)))
+                // la clave esta en curso en otra instancia: se vuelve a consultar hasta maxWait
+                .retryWhen(Retry.fixedDelay(maxPolls(), properties.getIdempotency().getPollInterval())
+                        .filter(error -> error == Pending.INSTANCE)
+                        .onRetryExhaustedThrow((spec, signal) -> {
+                            count("conflict");
+                            return new ResponseStatusException(HttpStatus.CONFLICT,
+                                    "Hay una solicitud con la misma " + HEADER + " en proceso");
+                        }));
+    }
+
+    private Mono<Boolean> claim(String id, String hash) {
+        Instant now = clock.instant();
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(id);
+        record.setRequestHash(hash);
+        record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+        record.setCreatedAt(now);
+        record.setLockedUntil(now.plus(properties.getIdempotency().getLease()));
+        record.setExpiresAt(now.plus(properties.getIdempotency().getTtl()));
+        return mongoTemplate.insert(record)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    private Mono<Object> existing(String id, String hash, Class<?> type, Supplier<? extends Mono<?>> action) {
+        return mongoTemplate.findById(id, IdempotencyRecord.class)
+                .flatMap(record -> {
+                    if (!hash.equals(record.getRequestHash())) {
+                        return Mono.error(reusedKey());
+                    }
+                    if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                        count("replayed");
+                        return replay(record, type);
+                    }
+                    if (record.getLockedUntil().isBefore(clock.instant())) {
+                        return takeOver(id).flatMap(taken -> taken ? run(id, action) : Mono.error(Pending.INSTANCE));
+                    }
+                    return Mono.error(Pending.INSTANCE);
+                })
+                // la clave vencio o se libero entre el insert y la lectura
+                .switchIfEmpty(Mono.error(Pending.INSTANCE));
+    }
+
+    // la instancia que la ejecutaba no termino dentro del lease: la retoma solo una instancia
+    private Mono<Boolean> takeOver(String id) {
+        Instant now = clock.instant();
+        Query expired = Query.query(Criteria.where("id").is(id)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("lockedUntil").lt(now));
+        Update update = new Update().set("lockedUntil", now.plus(properties.getIdempotency().getLease()));
+        return mongoTemplate.findAndModify(expired, update, FindAndModifyOptions.options().returnNew(true),
+                        IdempotencyRecord.class)
+                .hasElement();
+    }
+
+    private Mono<Object> run(String id, Supplier<? extends Mono<?>> action) {
+        count("executed");
+        return Mono.defer(action).<Object>map(result -> result)
+                .flatMap(result -> complete(id, result).thenReturn(result))
+                .switchIfEmpty(Mono.defer(() -> release(id).then(Mono.empty())))
+                .onErrorResume(error -> (isFinal(error) ? reject(id, (ResponseStatusException) error) : release(id))
+                        .then(Mono.error(error)));
+    }
+
+    private Mono<Void> complete(String id, Object result) {
+        String response;
+        try {
+            response = objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo guardar la respuesta de la clave {}: {}", id, e.getMessage());
+            return release(id);
+        }
+        return store(id, new Update().set("response", response));
+    }
+
+    private Mono<Void> reject(String id, ResponseStatusException error) {
+        return store(id, new Update().set("httpStatus", error.getStatusCode().value()).set("reason", error.getReason()));
+    }
+
+    // si no se puede guardar el resultado se responde igual; un reintento posterior volveria a ejecutar
+    private Mono<Void> store(String id, Update update) {
+        update.set("status", IdempotencyRecord.Status.COMPLETED)
+                .set("expiresAt", clock.instant().plus(properties.getIdempotency().getTtl()))
+                .unset("lockedUntil");
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(id)), update, IdempotencyRecord.class)
+                .then()
+                .onErrorResume(e -> {
+                    log.error("No se pudo guardar el resultado de la clave {}: {}", id, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> release(String id) {
+        return mongoTemplate.remove(Query.query(Criteria.where("id").is(id)), IdempotencyRecord.class)
+                .then()
+                .onErrorResume(e -> {
+                    log.error("No se pudo liberar la clave {}: {}", id, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Object> replay(IdempotencyRecord record, Class<?> type) {
+        if (record.getHttpStatus() >= 400) {
+            return Mono.error(new ResponseStatusException(HttpStatus.valueOf(record.getHttpStatus()), record.getReason()));
+        }
+        return Mono.fromCallable(() -> objectMapper.readValue(record.getResponse(), type));
+    }
+
+    private static boolean isFinal(Throwable error) {
+        return error instanceof ResponseStatusException status
+                && status.getStatusCode().is4xxClientError()
+                && !TRANSIENT_4XX.contains(status.getStatusCode().value());
+    }
+
+    private static ResponseStatusException reusedKey() {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "La " + HEADER + " ya se uso con otra solicitud");
+    }
+
+    private long maxPolls() {
+        ProductProperties.Idempotency config = properties.getIdempotency();
+        return Math.max(1, config.getMaxWait().toMillis() / Math.max(1, config.getPollInterval().toMillis()));
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular el hash de la solicitud", e);
+        }
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("product.idempotency.requests", "result", result).increment();
+    }
+
+    // ejecucion compartida por los duplicados simultaneos de la misma instancia; cache() la mantiene
+    // aunque el cliente original cancele (timeout), para que el reintento reciba su resultado
+    private final class Execution {
+
+        private final String hash;
+        private final Mono<Object> result;
+
+        Execution(String id, String hash, Mono<Object> attempt) {
+            this.hash = hash;
+            this.result = attempt.doFinally(signal -> inFlight.remove(id, this)).cache();
+        }
+    }
+
+    // la clave esta en curso en otra instancia
+    private static final class Pending extends RuntimeException {
+
+        static final Pending INSTANCE = new Pending();
+
+        private Pending() {
+            super("en proceso", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.bank.ayrton.product.service.listing;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.CursorPage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentEntity;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// listados paginados por cursor (_id ascendente) y en stream, con filtros y proyeccion resueltos en mongo
+@Component
+@RequiredArgsConstructor
+public class KeysetPager {
+
+    private final ReactiveMongoTemplate template;
+    private final ProductProperties properties;
+
+    // lee size + 1 documentos para saber si existe una pagina siguiente sin hacer un count
+    public <T> Mono<CursorPage<T>> page(Class<T> type, Criteria filter, String after, Integer size, List<String> fields) {
+        return Mono.defer(() -> findPage(type, filter, after, size, fields));
+    }
+
+    // stream completo: el driver pide lotes al cursor segun la demanda del suscriptor (backpressure)
+    public <T> Flux<T> stream(Class<T> type, Criteria filter, List<String> fields) {
+        return Flux.defer(() -> template.find(
+                query(type, filter, fields).cursorBatchSize(properties.getListing().getDefaultPageSize()), type));
+    }
+
+    private <T> Mono<CursorPage<T>> findPage(Class<T> type, Criteria filter, String after, Integer size,
+                                              List<String> fields) {
+        int pageSize = pageSize(size);
+        Criteria criteria = after == null || after.isBlank()
+                ? filter
+                : new Criteria().andOperator(filter, Criteria.where("id").gt(after));
+        Query query = query(type, criteria, fields).limit(pageSize + 1);
+
+        return template.find(query, type)
+                .collectList()
+                .map(items -> {
+                    if (items.size() <= pageSize) {
+                        return new CursorPage<>(items, null);
+                    }
+                    List<T> page = items.subList(0, pageSize);
+                    return new CursorPage<>(page, idOf(type, page.get(pageSize - 1)));
+                });
+    }
+
+    private <T> Query query(Class<T> type, Criteria criteria, List<String> fields) {
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "id"))
+                .withReadPreference(properties.getMongo().listingReadPreference());
+        if (fields != null && !fields.isEmpty()) {
+            PersistentEntity<?, ?> entity = template.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+            for (String field : fields) {
+                if (entity.getPersistentProperty(field) == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Campo no valido para proyeccion: " + field);
+                }
+                query.fields().include(field);
+            }
+            query.fields().include("id"); // el cursor siempre necesita el id
+        }
+        return query;
+    }
+
+    private int pageSize(Integer size) {
+        ProductProperties.Listing listing = properties.getListing();
+        if (size == null) {
+            return listing.getDefaultPageSize();
+        }
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El tamaño de pagina debe ser mayor a 0");
+        }
+        return Math.min(size, listing.getMaxPageSize());
+    }
+
+    private String idOf(Class<?> type, Object item) {
+        Object id = template.getConverter().getMappingContext().getRequiredPersistentEntity(type)
+                .getIdentifierAccessor(item).getIdentifier();
+        return id == null ? null : id.toString();
+    }
+}
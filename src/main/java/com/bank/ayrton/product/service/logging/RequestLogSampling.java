@@ -0,0 +1,53 @@
+package com.bank.ayrton.product.service.logging;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import io.micrometer.context.ContextRegistry;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// decide una sola vez por solicitud si se emiten sus logs DEBUG (product.logging.debug-sample-rate),
+// asi una solicitud muestreada deja su rastro completo y el resto ninguno.
+// la decision viaja en el contexto de reactor y la propagacion automatica (spring.reactor.context-propagation)
+// la restaura en un ThreadLocal en cada operador, tambien en los hilos del driver de mongo
+@Component
+public class RequestLogSampling implements WebFilter {
+
+    static final String KEY = "product.log.sampled";
+    private static final ThreadLocal<Boolean> SAMPLED = new ThreadLocal<>();
+
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(KEY, SAMPLED::get, SAMPLED::set, SAMPLED::remove);
+    }
+
+    private final ProductProperties properties;
+
+    public RequestLogSampling(ProductProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < properties.getLogging().getDebugSampleRate();
+        return chain.filter(exchange).contextWrite(context -> context.put(KEY, sampled));
+    }
+
+    // decision de la solicitud en curso; null fuera de una solicitud http (kafka, tareas programadas)
+    public static Boolean current() {
+        return SAMPLED.get();
+    }
+
+    // si se emite un log DEBUG por solicitud: la decision de la solicitud en curso o, fuera de una, al azar con la tasa
+    public static boolean sampled(Logger log, double sampleRate) {
+        if (!log.isDebugEnabled()) {
+            return false;
+        }
+        Boolean requestSampled = current();
+        return requestSampled != null ? requestSampled : ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
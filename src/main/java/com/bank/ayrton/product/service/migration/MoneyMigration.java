@@ -0,0 +1,72 @@
+package com.bank.ayrton.product.service.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// paso de los montos guardados como double (o int) a Decimal128
+// - no hace falta parar el servicio: Money se lee de ambos formatos y cada escritura (alta, PUT, PATCH,
+//   $inc de movimientos) ya deja el campo en Decimal128
+// - migrate() convierte lo que quede con un update por pipeline ($toDecimal + $round a 2 decimales, HALF_EVEN
+//   igual que Money.fromDouble): lo hace el servidor sin leer los documentos y se puede repetir
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MoneyMigration {
+
+    // campos de dinero por coleccion
+    static final Map<String, List<String>> FIELDS = Map.of(
+            "products", List.of("balance", "maintenanceFee", "creditLimit", "transactionFee"),
+            "client_portfolios", List.of("passiveBalance", "creditExposure", "creditLimit"));
+
+    private static final int SCALE = 2;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    // documentos con el campo todavia numerico no decimal, por "coleccion.campo"
+    public Mono<Map<String, Long>> pending() {
+        return fields()
+                .concatMap(field -> mongoTemplate.count(legacy(field[1]), field[0])
+                        .map(count -> Tuples.of(field[0] + "." + field[1], count)))
+                .collectMap(tuple -> tuple.getT1(), tuple -> tuple.getT2(), LinkedHashMap::new);
+    }
+
+    // documentos convertidos por "coleccion.campo"
+    public Mono<Map<String, Long>> migrate() {
+        return fields()
+                .concatMap(field -> mongoTemplate.updateMulti(legacy(field[1]), toDecimal(field[1]), field[0])
+                        .map(result -> Tuples.of(field[0] + "." + field[1], result.getModifiedCount())))
+                .collectMap(tuple -> tuple.getT1(), tuple -> tuple.getT2(), LinkedHashMap::new)
+                .doOnNext(migrated -> log.info("Montos migrados a Decimal128: {}", migrated));
+    }
+
+    private static Flux<String[]> fields() {
+        return Flux.fromIterable(FIELDS.entrySet())
+                .flatMapIterable(entry -> entry.getValue().stream()
+                        .map(field -> new String[]{entry.getKey(), field})
+                        .toList());
+    }
+
+    private static Query legacy(String field) {
+        return Query.query(Criteria.where(field).type(JsonSchemaObject.Type.doubleType(),
+                JsonSchemaObject.Type.intType(), JsonSchemaObject.Type.longType()));
+    }
+
+    private static AggregationUpdate toDecimal(String field) {
+        return AggregationUpdate.from(List.of(context -> new Document("$set", new Document(field,
+                new Document("$round", List.of(new Document("$toDecimal", "$" + field), SCALE))))));
+    }
+}
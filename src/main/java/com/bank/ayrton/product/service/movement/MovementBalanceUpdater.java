@@ -0,0 +1,158 @@
+package com.bank.ayrton.product.service.movement;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.MovementEvent;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// aplica un lote de movimientos a los saldos: un $inc por producto con el delta neto, en una escritura masiva
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MovementBalanceUpdater {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ProductProperties properties;
+    private final ClientPortfolioViewService portfolioViews;
+    private final Clock clock;
+    private final NearCaches nearCaches;
+
+    public Mono<Void> apply(List<MovementEvent> events) {
+        Map<String, Map<String, MovementEvent>> byProduct = groupByProduct(events);
+        if (byProduct.isEmpty()) {
+            return Mono.empty();
+        }
+        return apply(byProduct, 1);
+    }
+
+    private Mono<Void> apply(Map<String, Map<String, MovementEvent>> byProduct, int attempt) {
+        Query applied = Query.query(Criteria.where("id").in(byProduct.keySet()));
+        applied.fields().include("appliedMovementIds").include("clientId").include("lastFeeRun");
+
+        return mongoTemplate.find(applied, Product.class)
+                .collectList()
+                .flatMap(products -> {
+                    Map<String, Set<String>> alreadyApplied = new HashMap<>();
+                    Map<String, String> lastFeeRuns = new HashMap<>();
+                    Set<String> clientIds = new HashSet<>();
+                    for (Product product : products) {
+                        alreadyApplied.put(product.getId(), product.getAppliedMovementIds() == null
+                                ? Set.of() : Set.copyOf(product.getAppliedMovementIds()));
+                        lastFeeRuns.put(product.getId(), product.getLastFeeRun());
+                        clientIds.add(product.getClientId());
+                    }
+                    ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+                    int updates = 0;
+                    int expected = 0; // actualizaciones de productos que existian al leer
+                    for (Map.Entry<String, Map<String, MovementEvent>> entry : byProduct.entrySet()) {
+                        Set<String> skip = alreadyApplied.getOrDefault(entry.getKey(), Set.of());
+                        String settled = lastFeeRuns.get(entry.getKey());
+                        List<String> ids = new ArrayList<>();
+                        long delta = 0; // unidades menores: el neto del lote no arrastra redondeo
+                        Map<String, Integer> perMonth = new HashMap<>();
+                        for (Map.Entry<String, MovementEvent> movement : entry.getValue().entrySet()) {
+                            if (!skip.contains(movement.getKey())) {
+                                ids.add(movement.getKey());
+                                delta = Money.add(delta, movement.getValue().balanceDelta());
+                                String month = month(movement.getValue());
+                                // un mes ya cobrado no vuelve a tener contador: nadie lo borraria
+                                if (settled == null || month.compareTo(settled) > 0) {
+                                    perMonth.merge(month, 1, Integer::sum);
+                                }
+                            }
+                        }
+                        if (ids.isEmpty()) {
+                            continue;
+                        }
+                        // el filtro $nin hace la actualizacion idempotente aunque otro consumidor aplique el mismo lote;
+                        // el de lastFeeRun hace que se reintente si el cobro del mes paso entre la lectura y la escritura
+                        Criteria criteria = Criteria.where("id").is(entry.getKey()).and("appliedMovementIds").nin(ids);
+                        if (alreadyApplied.containsKey(entry.getKey())) {
+                            criteria.and("lastFeeRun").is(settled);
+                        }
+                        Query query = Query.query(criteria);
+                        Update update = new Update()
+                                .inc("balance", Money.toDecimal128(delta, Money.DEFAULT_CURRENCY))
+                                .inc("version", 1); // un PUT con version anterior no pisara este saldo
+                        // contador por mes para la comision por transacciones (FeeRunService)
+                        perMonth.forEach((month, count) -> update.inc("monthlyTransactions." + month, count));
+                        update.push("appliedMovementIds").slice(-properties.getMovements().getAppliedIdsWindow())
+                                .each(ids.toArray());
+                        bulk.updateOne(query, update);
+                        updates++;
+                        if (alreadyApplied.containsKey(entry.getKey())) {
+                            expected++;
+                        }
+                    }
+                    if (updates == 0) {
+                        log.debug("Lote de movimientos ya aplicado, nada que actualizar");
+                        return Mono.empty();
+                    }
+                    int matched = expected;
+                    return bulk.execute()
+                            .doOnNext(result -> log.debug("Saldos actualizados: {} productos", result.getModifiedCount()))
+                            .doFinally(signal -> nearCaches.invalidateProducts(byProduct.keySet()))
+                            .flatMap(result -> result.getMatchedCount() < matched
+                                    ? retry(byProduct, attempt, matched - result.getMatchedCount())
+                                    : portfolioViews.refresh(clientIds));
+                });
+    }
+
+    // otro consumidor (p. ej. durante un rebalanceo) aplico parte del lote entre la lectura y la escritura, o el
+    // cobro del mes proceso la cuenta en ese intervalo: el filtro descarto la actualizacion completa de esos
+    // productos, asi que se relee y se aplica lo que falta. si no se logra el lote termina en error y el offset
+    // no se confirma
+    private Mono<Void> retry(Map<String, Map<String, MovementEvent>> byProduct, int attempt, int missed) {
+        if (attempt >= MAX_ATTEMPTS) {
+            return Mono.error(new IllegalStateException(
+                    "Movimientos sin aplicar en " + missed + " productos tras " + attempt + " intentos"));
+        }
+        log.debug("{} productos cambiaron durante el lote, se reintenta ({}/{})", missed, attempt, MAX_ATTEMPTS);
+        return apply(byProduct, attempt + 1);
+    }
+
+    // mes del movimiento en la zona del cobro; un lote consumido tarde (lag, reproceso) o pasada la medianoche
+    // del dia 1 se sigue contando en el mes en que ocurrio. sin fecha se usa la de consumo
+    private String month(MovementEvent event) {
+        Instant date = event.getDate() == null ? clock.instant() : event.getDate();
+        return YearMonth.from(date.atZone(properties.getFeeJob().getZone())).toString();
+    }
+
+    // agrupa por producto y descarta repetidos dentro del lote; los movimientos sin efecto en el saldo se ignoran
+    private Map<String, Map<String, MovementEvent>> groupByProduct(List<MovementEvent> events) {
+        Map<String, Map<String, MovementEvent>> byProduct = new LinkedHashMap<>();
+        for (MovementEvent event : events) {
+            if (event.getId() == null || event.getProductId() == null || !event.affectsBalance()) {
+                log.warn("Movimiento ignorado por datos incompletos o tipo desconocido: {}", event);
+                continue;
+            }
+            byProduct.computeIfAbsent(event.getProductId(), id -> new HashMap<>()).putIfAbsent(event.getId(), event);
+        }
+        return byProduct;
+    }
+}
@@ -0,0 +1,118 @@
+package com.bank.ayrton.product.service.outbox;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductOutboxEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+// registra cada cambio de producto en product_outbox dentro de la misma transaccion que la escritura;
+// ProductOutboxRelay los publica despues en kafka. con product.outbox.transactional=false el evento se escribe
+// despues del producto y sus fallos se reintentan sin revertirlo
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductOutbox {
+
+    private static final int RETRIES = 3;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final ProductProperties properties;
+    private final Clock clock;
+
+    // escritura de un producto y su evento; si la escritura no devuelve producto no se registra nada
+    public Mono<Product> record(ProductEvent.Type type, Mono<Product> write) {
+        return inTransaction(write.flatMap(product -> insert(events(type, List.of(product)))
+                .thenReturn(product)));
+    }
+
+    // escritura de varios productos (alta masiva) y un evento por producto
+    public <T> Mono<T> recordAll(ProductEvent.Type type, List<Product> products, Mono<T> write) {
+        return inTransaction(write.flatMap(result -> insert(events(type, products))
+                .then(Mono.just(result))));
+    }
+
+    // escritura masiva que luego lee los productos modificados (changed) y un evento por cada uno
+    public <T> Mono<T> recordEach(ProductEvent.Type type, Mono<T> write, Function<T, List<Product>> changed) {
+        return inTransaction(write.flatMap(result -> {
+            List<Product> products = changed.apply(result);
+            return products.isEmpty() ? Mono.just(result) : insert(events(type, products)).then(Mono.just(result));
+        }));
+    }
+
+    // sin transaccion: eventos de los productos que si se guardaron en una escritura masiva que fallo en parte
+    public Mono<Void> recordWritten(ProductEvent.Type type, List<Product> products) {
+        return products.isEmpty() || isTransactional() ? Mono.empty() : insert(events(type, products));
+    }
+
+    public boolean isTransactional() {
+        return properties.getOutbox().isTransactional();
+    }
+
+    private <T> Mono<T> inTransaction(Mono<T> work) {
+        return isTransactional() ? transactionalOperator.transactional(work) : work;
+    }
+
+    // con transaccion un fallo revierte tambien la escritura del producto. sin ella el producto ya quedo guardado:
+    // se reintenta evento por evento (un duplicado es un evento que ya estaba) y si aun falla se deja en el log,
+    // en lugar de responder error por una escritura que si ocurrio
+    private Mono<Void> insert(List<ProductOutboxEvent> events) {
+        Mono<Void> insert = mongoTemplate.insertAll(events).then();
+        if (isTransactional()) {
+            return insert;
+        }
+        return insert.onErrorResume(error -> Flux.fromIterable(events)
+                .concatMap(event -> Mono.defer(() -> mongoTemplate.insert(event)).then()
+                        .onErrorResume(DuplicateKeyException.class, duplicate -> Mono.empty())
+                        .retryWhen(Retry.backoff(RETRIES, properties.getOutbox().getRetryBackoff()))
+                        .onErrorResume(retryError -> {
+                            log.error("Evento {} del producto {} sin registrar en product_outbox, no se publicara: {}",
+                                    event.getType(), event.getProductId(), retryError.getMessage());
+                            return Mono.empty();
+                        }))
+                .then());
+    }
+
+    private List<ProductOutboxEvent> events(ProductEvent.Type type, List<Product> products) {
+        return products.stream().map(product -> event(type, product)).toList();
+    }
+
+    private ProductOutboxEvent event(ProductEvent.Type type, Product product) {
+        Instant now = clock.instant();
+        ProductOutboxEvent event = new ProductOutboxEvent();
+        event.setId(new ObjectId().toHexString());
+        event.setClientId(product.getClientId());
+        event.setProductId(product.getId());
+        event.setType(type);
+        event.setCreatedAt(now);
+        event.setPayload(toJson(new ProductEvent(event.getId(), type, product.getId(), product.getClientId(),
+                now, product)));
+        return event;
+    }
+
+    private String toJson(ProductEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento del producto " + event.getProductId(), e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.bank.ayrton.product.service.outbox;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.ProductOutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+// publica en kafka (topico products, clave clientId) los eventos pendientes de product_outbox
+// - una sola instancia publica a la vez (lease en product_outbox_lock)
+// - los eventos de un cliente salen en orden; si uno falla, los siguientes del mismo cliente esperan su reintento
+// - entrega al menos una vez: los consumidores descartan duplicados por eventId y cambios viejos por product.version
+@Slf4j
+@Component
+public class ProductOutboxRelay {
+
+    private static final String LOCK_COLLECTION = "product_outbox_lock";
+    private static final String LOCK_ID = "relay";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ProductProperties properties;
+    private final Clock clock;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicReference<Instant> oldestPending = new AtomicReference<>();
+    private final Counter published;
+    private final Counter failures;
+
+    public ProductOutboxRelay(ReactiveMongoTemplate mongoTemplate, KafkaTemplate<String, String> kafkaTemplate,
+                              ProductProperties properties, Clock clock, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.properties = properties;
+        this.clock = clock;
+        this.published = meterRegistry.counter("product.outbox.published");
+        this.failures = meterRegistry.counter("product.outbox.failures");
+        // antiguedad del evento pendiente mas viejo visto en la ultima ejecucion (0 si no habia pendientes o si
+        // esta instancia no tiene el lease)
+        Gauge.builder("product.outbox.lag", this, ProductOutboxRelay::lagSeconds)
+                .baseUnit("seconds")
+                .description("Antiguedad del evento pendiente mas viejo")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${product.outbox.poll-interval:500ms}")
+    public void runScheduled() {
+        try {
+            relay().block(); // fixedDelay: la siguiente ejecucion empieza cuando termina esta
+        } catch (RuntimeException e) {
+            log.error("Fallo el relay de eventos de productos: {}", e.getMessage());
+        }
+    }
+
+    // devuelve la cantidad de eventos publicados en esta ejecucion
+    public Mono<Integer> relay() {
+        Instant now = clock.instant();
+        return acquireLease(now)
+                .flatMap(acquired -> acquired ? publishPending(now) : Mono.fromSupplier(() -> {
+                    oldestPending.set(null); // el lag lo informa la instancia que tiene el lease
+                    return 0;
+                }));
+    }
+
+    private Mono<Boolean> acquireLease(Instant now) {
+        Query query = Query.query(Criteria.where("_id").is(LOCK_ID).orOperator(
+                Criteria.where("lockedUntil").lt(now),
+                Criteria.where("owner").is(instanceId)));
+        Update update = new Update()
+                .set("owner", instanceId)
+                .set("lockedUntil", now.plus(properties.getOutbox().getLease()));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        Document.class, LOCK_COLLECTION)
+                .map(lock -> true)
+                .defaultIfEmpty(true)
+                // otra instancia tiene el lease vigente: el upsert choca con su documento
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    private Mono<Integer> publishPending(Instant now) {
+        ProductProperties.Outbox config = properties.getOutbox();
+        // un evento con nextAttemptAt siempre es el primero pendiente de su cliente (los siguientes no se intentan):
+        // esos clientes se excluyen del bloque, si no sus eventos lo llenarian y los demas clientes no avanzarian
+        Query waiting = Query.query(Criteria.where("publishedAt").is(null).and("nextAttemptAt").gt(now));
+        waiting.fields().include("clientId", "createdAt");
+
+        return mongoTemplate.find(waiting, ProductOutboxEvent.class)
+                .collectList()
+                .flatMap(blocked -> {
+                    Set<String> blockedClients = new HashSet<>();
+                    blocked.forEach(event -> blockedClients.add(event.getClientId()));
+                    Criteria criteria = Criteria.where("publishedAt").is(null);
+                    if (!blockedClients.isEmpty()) {
+                        criteria.and("clientId").nin(blockedClients);
+                    }
+                    Query pending = Query.query(criteria)
+                            .with(Sort.by("id"))
+                            .limit(config.getBatchSize());
+                    return mongoTemplate.find(pending, ProductOutboxEvent.class)
+                            .collectList()
+                            .flatMap(events -> {
+                                oldestPending.set(oldest(blocked, events));
+                                Map<String, List<ProductOutboxEvent>> byClient = new LinkedHashMap<>();
+                                for (ProductOutboxEvent event : events) {
+                                    byClient.computeIfAbsent(event.getClientId(), id -> new ArrayList<>()).add(event);
+                                }
+                                return Flux.fromIterable(byClient.values())
+                                        .flatMap(clientEvents -> publishInOrder(clientEvents, now),
+                                                config.getSendConcurrency())
+                                        .collectList()
+                                        .flatMap(ids -> markPublished(ids, now).thenReturn(ids.size()));
+                            });
+                });
+    }
+
+    // el pendiente mas viejo, incluidos los que esperan reintento
+    private static Instant oldest(List<ProductOutboxEvent> blocked, List<ProductOutboxEvent> events) {
+        Instant oldest = events.isEmpty() ? null : events.get(0).getCreatedAt();
+        for (ProductOutboxEvent event : blocked) {
+            if (event.getCreatedAt() != null && (oldest == null || event.getCreatedAt().isBefore(oldest))) {
+                oldest = event.getCreatedAt();
+            }
+        }
+        return oldest;
+    }
+
+    // publica uno por uno los eventos de un cliente y se detiene en el primero que falla o espera reintento
+    private Flux<String> publishInOrder(List<ProductOutboxEvent> events, Instant now) {
+        return Flux.fromIterable(events)
+                .takeWhile(event -> event.getNextAttemptAt() == null || !event.getNextAttemptAt().isAfter(now))
+                .concatMap(event -> Mono.fromFuture(() -> kafkaTemplate.send(properties.getOutbox().getTopic(),
+                                event.getClientId(), event.getPayload()))
+                        .doOnSuccess(result -> published.increment())
+                        .thenReturn(event.getId())
+                        .onErrorMap(error -> new RelayFailure(event, error)))
+                .onErrorResume(RelayFailure.class, failure -> scheduleRetry(failure.event, failure.getCause(), now)
+                        .then(Mono.empty()));
+    }
+
+    private Mono<Void> markPublished(List<String> ids, Instant now) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("id").in(ids)),
+                        new Update().set("publishedAt", now), ProductOutboxEvent.class)
+                .then();
+    }
+
+    private Mono<Void> scheduleRetry(ProductOutboxEvent event, Throwable error, Instant now) {
+        failures.increment();
+        int attempts = event.getAttempts() + 1;
+        Instant nextAttemptAt = now.plus(backoff(attempts));
+        log.warn("No se pudo publicar el evento {} del cliente {} (intento {}), se reintenta a las {}: {}",
+                event.getId(), event.getClientId(), attempts, nextAttemptAt, error.getMessage());
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(event.getId())),
+                        new Update().set("attempts", attempts)
+                                .set("nextAttemptAt", nextAttemptAt)
+                                .set("lastError", error.getMessage()),
+                        ProductOutboxEvent.class)
+                .then();
+    }
+
+    // espera exponencial sin limite de intentos: descartar un evento dejaria desactualizados a los consumidores
+    private Duration backoff(int attempts) {
+        ProductProperties.Outbox config = properties.getOutbox();
+        Duration backoff = config.getRetryBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(config.getMaxRetryBackoff()) > 0 ? config.getMaxRetryBackoff() : backoff;
+    }
+
+    private double lagSeconds() {
+        Instant oldest = oldestPending.get();
+        return oldest == null ? 0 : Math.max(0, Duration.between(oldest, clock.instant()).toMillis() / 1000.0);
+    }
+
+    private static final class RelayFailure extends RuntimeException {
+
+        private final transient ProductOutboxEvent event;
+
+        RelayFailure(ProductOutboxEvent event, Throwable cause) {
+            super(cause.getMessage(), cause, false, false);
+            this.event = event;
+        }
+    }
+}
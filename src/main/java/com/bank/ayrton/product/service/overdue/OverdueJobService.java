@@ -0,0 +1,233 @@
+package com.bank.ayrton.product.service.overdue;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.OverdueJobReport;
+import com.bank.ayrton.product.dto.OverdueJobRequest;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.dto.ProductOverdueEvent;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+// marca creditos como vencidos en bloque con updateMany en mongo, en lugar de una llamada por producto
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OverdueJobService {
+
+    private static final List<ProductSubtype> CREDIT_SUBTYPES = List.of(
+            ProductSubtype.PERSONAL_CREDIT, ProductSubtype.BUSINESS_CREDIT, ProductSubtype.CREDIT_CARD);
+    private static final int CLIENTS_PER_PAGE = 10_000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final ProductProperties properties;
+    private final Clock clock;
+    private final ClientPortfolioViewService portfolioViews;
+    private final ProductOutbox outbox; // eventos OVERDUE de cada producto marcado (topico products)
+    private final NearCaches nearCaches;
+
+    // ejecucion programada (product.overdue-job.cron): creditos con fecha de pago anterior a hoy
+    @Scheduled(cron = "${product.overdue-job.cron:-}", zone = "${product.overdue-job.zone:America/Lima}")
+    public void runScheduled() {
+        OverdueJobRequest request = new OverdueJobRequest();
+        request.setDueTo(LocalDate.now(clock.withZone(properties.getOverdueJob().getZone())).minusDays(1));
+        run(request).subscribe(
+                report -> log.info("Job de vencidos programado terminado: {}", report),
+                error -> log.error("Fallo el job de vencidos programado: {}", error.getMessage()));
+    }
+
+    public Mono<OverdueJobReport> run(OverdueJobRequest request) {
+        return Mono.defer(() -> {
+            validate(request);
+            return mark(request);
+        });
+    }
+
+    private Mono<OverdueJobReport> mark(OverdueJobRequest request) {
+        Instant startedAt = clock.instant();
+        Criteria criteria = criteria(request);
+
+        if (request.isDryRun()) {
+            return clients(criteria)
+                    .reduceWith(Totals::new, (totals, client) -> {
+                        totals.clients++;
+                        totals.matched += ((Number) client.get("products")).longValue();
+                        return totals;
+                    })
+                    .map(totals -> new OverdueJobReport(true, totals.matched, totals.clients, 0,
+                            startedAt, clock.instant()))
+                    .doOnNext(report -> log.info("Job de vencidos: {}", report));
+        }
+        return markByClientChunks(new ObjectId().toHexString(), criteria,
+                        clients(criteria).map(client -> client.getString("_id")))
+                .map(totals -> new OverdueJobReport(false, totals.matched, totals.clients, totals.modified,
+                        startedAt, clock.instant()))
+                .doOnNext(report -> log.info("Job de vencidos: {}", report));
+    }
+
+    // clientes con productos por marcar ({_id: clientId, products}), por paginas ordenadas por clientId:
+    // un distinct devuelve todos en una sola respuesta, limitada a 16 MB. cada pagina se lee completa para
+    // que el cursor no quede abierto durante las pausas entre bloques
+    private Flux<Document> clients(Criteria criteria) {
+        return clientPage(criteria, null)
+                .expand(page -> page.size() < CLIENTS_PER_PAGE
+                        ? Mono.empty()
+                        : clientPage(criteria, page.get(page.size() - 1).getString("_id")))
+                .concatMapIterable(page -> page);
+    }
+
+    private Mono<List<Document>> clientPage(Criteria criteria, String after) {
+        Criteria match = new Criteria().andOperator(criteria,
+                after == null ? Criteria.where("clientId").ne(null) : Criteria.where("clientId").gt(after));
+        Aggregation aggregation = Aggregation.newAggregation(
+                        Aggregation.match(match),
+                        Aggregation.group("clientId").count().as("products"),
+                        Aggregation.sort(Sort.Direction.ASC, "_id"),
+                        Aggregation.limit(CLIENTS_PER_PAGE))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return mongoTemplate.aggregate(aggregation, Product.class, Document.class).collectList();
+    }
+
+    // un updateMany por bloque de clientes, con pausa entre bloques segun el horario para no saturar mongo
+    private Mono<Totals> markByClientChunks(String jobId, Criteria criteria, Flux<String> clientIds) {
+        ProductProperties.OverdueJob config = properties.getOverdueJob();
+        Totals totals = new Totals();
+
+        return clientIds
+                .doOnNext(clientId -> totals.clients++)
+                .buffer(config.getClientsPerUpdate())
+                .index()
+                .concatMap(chunk -> Mono.delay(chunk.getT1() == 0 ? Duration.ZERO : pause())
+                        .then(markChunk(jobId, criteria, chunk.getT2()))
+                        .flatMap(result -> {
+                            totals.matched += result.getMatchedCount();
+                            totals.modified += result.getModifiedCount();
+                            return publish(chunk.getT2()).then(portfolioViews.refresh(chunk.getT2()));
+                        }))
+                .then(Mono.fromSupplier(() -> totals));
+    }
+
+    // como markAsOverdue, cada producto marcado deja su evento OVERDUE en product_outbox en la misma transaccion:
+    // el updateMany del bloque deja jobId en los productos que cambio y luego se leen esos productos para el evento,
+    // con el saldo y la version que quedaron en mongo (no una copia leida antes de actualizar)
+    private Mono<UpdateResult> markChunk(String jobId, Criteria criteria, List<String> clientIds) {
+        Query chunk = Query.query(new Criteria().andOperator(criteria, Criteria.where("clientId").in(clientIds)));
+        Update update = new Update().set("status", "vencido").set("overdueJobId", jobId).inc("version", 1);
+        return outbox.recordEach(ProductEvent.Type.OVERDUE,
+                        mongoTemplate.updateMulti(chunk, update, Product.class)
+                                .flatMap(result -> (result.getModifiedCount() == 0
+                                        ? Mono.just(List.<Product>of())
+                                        : marked(jobId, clientIds))
+                                        .map(products -> new Marked(result, products))),
+                        Marked::products)
+                // despues de confirmar el bloque: sin broadcast (mongo standalone) GET /{id} no debe servir el
+                // estado anterior hasta max-age
+                .doOnNext(marked -> nearCaches.invalidateProducts(marked.products().stream().map(Product::getId).toList()))
+                .map(Marked::result);
+    }
+
+    // sin los campos internos del producto: no van en el evento y appliedMovementIds puede ser grande
+    private Mono<List<Product>> marked(String jobId, List<String> clientIds) {
+        Query query = Query.query(Criteria.where("clientId").in(clientIds).and("overdueJobId").is(jobId));
+        query.fields().exclude("appliedMovementIds", "monthlyTransactions", "partition", "lastFeeRun", "overdueJobId");
+        return mongoTemplate.find(query, Product.class).collectList();
+    }
+
+    private Mono<Void> publish(List<String> clientIds) {
+        Instant markedAt = clock.instant();
+        return Flux.fromIterable(clientIds)
+                .concatMap(clientId -> Mono.fromFuture(() -> kafkaTemplate.send(properties.getOverdueJob().getTopic(),
+                        clientId, toJson(new ProductOverdueEvent(clientId, markedAt)))))
+                .then();
+    }
+
+    private Duration pause() {
+        ProductProperties.OverdueJob config = properties.getOverdueJob();
+        LocalTime now = LocalTime.now(clock.withZone(config.getZone()));
+        boolean businessHours = !now.isBefore(config.getBusinessHoursStart()) && now.isBefore(config.getBusinessHoursEnd());
+        return businessHours ? config.getBusinessHoursDelay() : config.getOffHoursDelay();
+    }
+
+    // sin fecha de pago limite ni clientes se marcarian tambien los creditos que aun no vencen,
+    // y solo los creditos pueden quedar vencidos
+    private static void validate(OverdueJobRequest request) {
+        boolean byClients = request.getClientIds() != null && !request.getClientIds().isEmpty();
+        if (request.getDueTo() == null && !byClients) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Se requiere dueTo o clientIds para marcar productos vencidos");
+        }
+        if (request.getSubtypes() != null && !CREDIT_SUBTYPES.containsAll(request.getSubtypes())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Solo se pueden marcar como vencidos productos de credito: " + CREDIT_SUBTYPES);
+        }
+    }
+
+    private static Criteria criteria(OverdueJobRequest request) {
+        List<ProductSubtype> subtypes = request.getSubtypes() == null || request.getSubtypes().isEmpty()
+                ? CREDIT_SUBTYPES : request.getSubtypes();
+        Criteria criteria = Criteria.where("subtype").in(subtypes).and("status").ne("vencido");
+        if (request.getClientIds() != null && !request.getClientIds().isEmpty()) {
+            criteria.and("clientId").in(request.getClientIds());
+        }
+        if (request.getDueFrom() != null || request.getDueTo() != null) {
+            Criteria due = criteria.and("dueDate");
+            if (request.getDueFrom() != null) {
+                due.gte(request.getDueFrom());
+            }
+            if (request.getDueTo() != null) {
+                due.lte(request.getDueTo());
+            }
+        }
+        return criteria;
+    }
+
+    private record Marked(UpdateResult result, List<Product> products) {
+    }
+
+    // totales del job, se acumulan bloque a bloque
+    private static final class Totals {
+        long clients;
+        long matched;
+        long modified;
+    }
+
+    private String toJson(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento " + event, e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.bank.ayrton.product.service.portfolio;
+
+import com.bank.ayrton.product.api.product.ClientPortfolioViewRepository;
+import com.bank.ayrton.product.entity.ClientPortfolioView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// mantiene client_portfolios: cada escritura recalcula solo los clientes afectados desde products
+// (una agregacion por el indice de clientId), asi la vista no acumula errores de deltas parciales
+// y un recalculo atrasado no pisa uno posterior (sourceAt)
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClientPortfolioViewService {
+
+    private static final String COLLECTION = "client_portfolios";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ClientPortfolioViewRepository repository;
+    private final Clock clock;
+
+    // lectura puntual por _id
+    public Mono<ClientPortfolioView> findByClientId(String clientId) {
+        return repository.findById(clientId);
+    }
+
+    // recalcula la vista de los clientes indicados; un cliente sin productos pierde su vista.
+    // la vista es un dato derivado: si falla se registra y se corrige en la siguiente escritura o con rebuild.
+    // dos escrituras concurrentes del mismo cliente pueden terminar su recalculo en cualquier orden: cada vista
+    // lleva la hora del servidor tomada antes de leer products (sourceAt) y solo reemplaza o borra una anterior
+    public Mono<Void> refresh(Collection<String> clientIds) {
+        Set<String> ids = new LinkedHashSet<>(clientIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        List<AggregationOperation> stages = pipeline(new Document("$in", new ArrayList<>(ids))).stream()
+                .<AggregationOperation>map(stage -> context -> stage)
+                .toList();
+        Instant now = clock.instant();
+
+        return serverTime()
+                .flatMap(sourceAt -> mongoTemplate.aggregate(Aggregation.newAggregation(stages), "products",
+                                ClientPortfolioView.class)
+                        .collectMap(ClientPortfolioView::getClientId)
+                        .flatMap(views -> {
+                            ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                                    ClientPortfolioView.class);
+                            for (String clientId : ids) {
+                                ClientPortfolioView view = views.get(clientId);
+                                if (view == null) {
+                                    bulk.remove(Query.query(Criteria.where("clientId").is(clientId)
+                                            .orOperator(olderThan(sourceAt))));
+                                } else {
+                                    view.setUpdatedAt(now);
+                                    view.setSourceAt(sourceAt);
+                                    bulk.upsert(Query.query(Criteria.where("clientId").is(clientId)),
+                                            replaceIfOlder(view, sourceAt));
+                                }
+                            }
+                            return bulk.execute();
+                        }))
+                .then()
+                .onErrorResume(error -> {
+                    log.error("No se pudo actualizar la vista de portafolio de {}: {}", ids, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // hora del servidor (hello.localTime): comparable entre instancias, a diferencia del reloj de cada una
+    private Mono<Instant> serverTime() {
+        return mongoTemplate.executeCommand(new Document("hello", 1))
+                .map(hello -> hello.get("localTime", Date.class).toInstant());
+    }
+
+    private static Criteria[] olderThan(Instant sourceAt) {
+        return new Criteria[]{Criteria.where("sourceAt").lte(sourceAt), Criteria.where("sourceAt").exists(false)};
+    }
+
+    // actualizacion con pipeline: en una sola operacion atomica deja la vista nueva solo si la guardada es anterior
+    private AggregationUpdate replaceIfOlder(ClientPortfolioView view, Instant sourceAt) {
+        Document replacement = new Document();
+        mongoTemplate.getConverter().write(view, replacement);
+        replacement.remove("_class");
+        Document newer = new Document("$lte", List.of(
+                new Document("$ifNull", List.of("$sourceAt", new Date(0))), Date.from(sourceAt)));
+        Document stage = new Document("$replaceWith", new Document("$cond",
+                List.of(newer, new Document("$literal", replacement), "$$ROOT")));
+        return AggregationUpdate.from(List.<AggregationOperation>of(context -> stage));
+    }
+
+    // regenera toda la vista desde products; $out reemplaza la coleccion de forma atomica al terminar
+    public Mono<Long> rebuild() {
+        List<Document> pipeline = new ArrayList<>(pipeline(null));
+        pipeline.add(new Document("$addFields", new Document("updatedAt", "$$NOW").append("sourceAt", "$$NOW")));
+        pipeline.add(new Document("$out", COLLECTION));
+        return mongoTemplate.getCollection("products")
+                .flatMap(products -> Mono.from(products.aggregate(pipeline).allowDiskUse(true).toCollection()))
+                .then(mongoTemplate.count(new Query(), ClientPortfolioView.class))
+                .doOnNext(count -> log.info("Vista client_portfolios regenerada: {} clientes", count));
+    }
+
+    // agrupa por cliente y subtipo y luego por cliente; clientFilter null = todos los clientes
+    // tambien lo usa QueryPlanReport
+    public static List<Document> pipeline(Object clientFilter) {
+        Document active = eqLower("$type", "activo");
+        Document passive = eqLower("$type", "pasivo");
+        List<Document> stages = new ArrayList<>();
+        if (clientFilter != null) {
+            stages.add(new Document("$match", new Document("clientId", clientFilter)));
+        }
+        stages.add(new Document("$group", new Document("_id",
+                new Document("clientId", "$clientId").append("subtype", "$subtype"))
+                .append("count", new Document("$sum", 1))
+                .append("passiveBalance", sumIf(passive, "$balance"))
+                .append("creditExposure", sumIf(active, "$balance"))
+                .append("creditLimit", sumIf(active, "$creditLimit"))
+                .append("overdue", new Document("$max", new Document("$and",
+                        List.of(active, eqLower("$status", "vencido")))))));
+        stages.add(new Document("$group", new Document("_id", "$_id.clientId")
+                .append("counts", new Document("$push",
+                        new Document("k", "$_id.subtype").append("v", "$count")))
+                .append("passiveBalance", new Document("$sum", "$passiveBalance"))
+                .append("creditExposure", new Document("$sum", "$creditExposure"))
+                .append("creditLimit", new Document("$sum", "$creditLimit"))
+                .append("overdue", new Document("$max", "$overdue"))));
+        // productos sin subtipo cuentan en los totales pero no en el conteo por subtipo
+        stages.add(new Document("$project", new Document("countsBySubtype", new Document("$arrayToObject",
+                new Document("$filter", new Document("input", "$counts")
+                        .append("cond", new Document("$eq", List.of(new Document("$type", "$$this.k"), "string"))))))
+                .append("passiveBalance", 1)
+                .append("creditExposure", 1)
+                .append("creditLimit", 1)
+                .append("overdue", 1)));
+        return stages;
+    }
+
+    private static Document eqLower(String field, String value) {
+        return new Document("$eq", List.of(new Document("$toLower", new Document("$ifNull", List.of(field, ""))), value));
+    }
+
+    private static Document sumIf(Document condition, String field) {
+        return new Document("$sum", new Document("$cond",
+                List.of(condition, new Document("$ifNull", List.of(field, 0)), 0)));
+    }
+}
@@ -0,0 +1,134 @@
+package com.bank.ayrton.product.service.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.config.ProductProperties.Rule;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientPortfolio;
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// tabla de reglas de elegibilidad indexada por (tipo de cliente, subtipo de cliente, subtipo de producto)
+// cada combinacion se resuelve una sola vez; despues la evaluacion es una pasada sobre las reglas que aplican
+@Slf4j
+@Component
+public class ProductRuleEngine {
+
+    private final ProductProperties properties;
+    private final MeterRegistry meterRegistry;
+    private volatile RuleTable table;
+
+    public ProductRuleEngine(ProductProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // solo reglas que no necesitan el portafolio: permite rechazar antes de cualquier consulta a mongo
+    public Optional<Rule> checkStatic(Product product, ClientDto client) {
+        return evaluate(product, client, null, true);
+    }
+
+    // todas las reglas en el orden configurado, devuelve la primera que no se cumple
+    public Optional<Rule> check(Product product, ClientDto client, ClientPortfolio portfolio) {
+        return evaluate(product, client, portfolio, true);
+    }
+
+    // solo las reglas que dependen del portafolio, cuando checkStatic ya evaluo las demas con el mismo cliente
+    public Optional<Rule> checkPortfolio(Product product, ClientDto client, ClientPortfolio portfolio) {
+        return evaluate(product, client, portfolio, false);
+    }
+
+    // portfolio null: solo reglas estaticas; includeStatic false: solo las que dependen del portafolio
+    private Optional<Rule> evaluate(Product product, ClientDto client, ClientPortfolio portfolio, boolean includeStatic) {
+        for (CompiledRule compiled : rulesFor(client, product.getSubtype())) {
+            Rule rule = compiled.rule();
+            if (rule.isStatic() ? !includeStatic : portfolio == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean violated = compiled.appliesTo(product) && violates(rule, product, portfolio);
+            compiled.timer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (violated) {
+                return Optional.of(rule);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // efectos de las reglas que aplican al producto (p. ej. PYME cuenta corriente sin comision)
+    public void applyEffects(Product product, ClientDto client) {
+        for (CompiledRule compiled : rulesFor(client, product.getSubtype())) {
+            if (compiled.rule().getMaintenanceFee() != null && compiled.appliesTo(product)) {
+                product.setMaintenanceFee(compiled.rule().getMaintenanceFee());
+            }
+        }
+    }
+
+    // rechazos de altas por motivo (id de la regla o deuda vencida)
+    public void recordRejection(String reason) {
+        meterRegistry.counter("product.save.rejections", "reason", reason).increment();
+    }
+
+    public String message(Rule rule, Product product) {
+        return rule.getMessage().replace("{subtype}", String.valueOf(product.getSubtype()));
+    }
+
+    private static boolean violates(Rule rule, Product product, ClientPortfolio portfolio) {
+        return switch (rule.getCondition()) {
+            case NON_NEGATIVE_BALANCE -> product.getBalance() != null && product.getBalance().isNegative();
+            case FORBIDDEN -> true;
+            case REQUIRES -> !portfolio.has(rule.getRequires());
+            case MAX_COUNT -> portfolio.count(product.getSubtype()) >= rule.getMaxCount();
+        };
+    }
+
+    private List<CompiledRule> rulesFor(ClientDto client, ProductSubtype subtype) {
+        RuleTable current = table;
+        // al refrescar la configuracion se vuelve a enlazar la lista de reglas y la tabla se recompila
+        if (current == null || current.source() != properties.getRules()) {
+            current = new RuleTable(properties.getRules(), new ConcurrentHashMap<>());
+            table = current;
+            log.info("Tabla de reglas de productos compilada con {} reglas", current.source().size());
+        }
+        RuleTable compiled = current;
+        return compiled.byKey().computeIfAbsent(new RuleKey(client.getType(), client.getSubtype(), subtype),
+                key -> compiled.source().stream()
+                        .filter(rule -> matches(rule, key))
+                        .map(rule -> new CompiledRule(rule, Timer.builder("product.rule.evaluation")
+                                .description("Tiempo de evaluacion de cada regla de elegibilidad")
+                                .tag("rule", rule.getId())
+                                .register(meterRegistry)))
+                        .toList());
+    }
+
+    private static boolean matches(Rule rule, RuleKey key) {
+        return (rule.getClientType() == null || rule.getClientType().equalsIgnoreCase(key.clientType()))
+                && (rule.getClientSubtype() == null || rule.getClientSubtype() == key.clientSubtype())
+                && (rule.getProductSubtypes() == null || rule.getProductSubtypes().isEmpty()
+                        || rule.getProductSubtypes().contains(key.productSubtype()));
+    }
+
+    private record RuleKey(String clientType, ClientSubtype clientSubtype, ProductSubtype productSubtype) {
+    }
+
+    private record RuleTable(List<Rule> source, Map<RuleKey, List<CompiledRule>> byKey) {
+    }
+
+    private record CompiledRule(Rule rule, Timer timer) {
+
+        // el tipo de producto (activo/pasivo) no forma parte de la clave, se compara al evaluar
+        boolean appliesTo(Product product) {
+            return rule.getProductType() == null || rule.getProductType().equalsIgnoreCase(product.getType());
+        }
+    }
+}
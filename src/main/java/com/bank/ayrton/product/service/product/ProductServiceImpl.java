@@ -1,189 +1,489 @@
 package com.bank.ayrton.product.service.product;
 
 import com.bank.ayrton.product.api.product.ProductService;
+import com.bank.ayrton.product.config.ProductProperties;
 import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientPortfolio;
+import com.bank.ayrton.product.dto.CursorPage;
+import com.bank.ayrton.product.dto.ProductBatchResult;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.dto.ProductFilter;
 import com.bank.ayrton.product.entity.Product;
 import com.bank.ayrton.product.api.product.ProductRepository;
-import com.bank.ayrton.product.entity.ProductSubtype;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.client.ClientCache;
+import com.bank.ayrton.product.service.listing.KeysetPager;
+import com.bank.ayrton.product.service.logging.RequestLogSampling;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
 
+    // campos que se pueden modificar con PUT/PATCH; id, version, appliedMovementIds y los de comisiones los maneja el servicio
+    // y el saldo solo lo cambian los movimientos y el cobro de comisiones (con $inc, sin pisar cambios concurrentes)
+    private static final Set<String> UPDATABLE_FIELDS = Arrays.stream(Product.class.getDeclaredFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+            .map(Field::getName)
+            .filter(name -> !Set.of("id", "version", "balance", "appliedMovementIds",
+                    "partition", "monthlyTransactions", "lastFeeRun", "overdueJobId").contains(name))
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
+    private static final String OVERDUE_DEBT = "overdue-debt"; // motivo de rechazo que no es una regla configurable
+    private static final String MISSING_CLIENT = "El clientId es obligatorio";
+
     private final ProductRepository repository;
-    private final WebClient clientWebClient; //llamamos al cliente para verificar su tipo cuando haga falta
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ClientCache clientCache; //consultamos el cliente (cacheado) para verificar su tipo cuando haga falta
+    private final ProductProperties properties;
+    private final KeysetPager pager;
+    private final ObjectMapper objectMapper;
+    private final ProductRuleEngine ruleEngine;
+    private final ProductOutbox outbox; // eventos de cambios de productos (topico products)
+    private final ClientPortfolioViewService portfolioViews;
+    private final NearCaches nearCaches; // GET por id; save y las escrituras leen siempre de mongo
 
+    // los listados leen con product.mongo.listing-read-preference; las validaciones de save usan el primario
     @Override
     public Flux<Product> findAll() {
-        log.info("Obteniendo todos los productos");
-        return repository.findAll();
+        if (sampled()) {
+            log.debug("Obteniendo todos los productos");
+        }
+        return repository.findAllWithReadPreference(properties.getMongo().listingReadPreference());
+    }
+
+    @Override
+    public Mono<CursorPage<Product>> findPage(ProductFilter filter, String after, Integer size, List<String> fields) {
+        return pager.page(Product.class, criteria(filter), after, size, fields);
+    }
+
+    @Override
+    public Flux<Product> stream(ProductFilter filter, List<String> fields) {
+        return pager.stream(Product.class, criteria(filter), fields);
+    }
+
+    // los filtros se resuelven en mongo (indice clientId_subtype_type_status cuando se filtra por cliente)
+    private static Criteria criteria(ProductFilter filter) {
+        Criteria criteria = new Criteria();
+        if (filter.getClientId() != null) {
+            criteria.and("clientId").is(filter.getClientId());
+        }
+        if (filter.getSubtype() != null) {
+            criteria.and("subtype").is(filter.getSubtype());
+        }
+        if (filter.getStatus() != null) {
+            criteria.and("status").is(filter.getStatus());
+        }
+        return criteria;
     }
 
     @Override
     public Mono<Product> findById(String id) {
-        log.info("Buscando producto con ID: {}", id);
-        return repository.findById(id);
+        if (sampled()) {
+            log.debug("Buscando producto con ID: {}", id);
+        }
+        return nearCaches.product(NearCaches.PRODUCT_BY_ID, id, repository::findById);
     }
 
     @Override
     public Mono<Product> save(Product product) {
-        log.info("Intentando guardar producto: {}", product);
-
-        return repository.findByClientId(product.getClientId())
-                .filter(p -> "activo".equalsIgnoreCase(p.getType())) // tipo crédito
-                .filter(p -> "vencido".equalsIgnoreCase(p.getStatus())) // deuda vencida
-                .hasElements()
-                .flatMap(hasOverdue -> {
-                    if (hasOverdue) {
-                        log.warn("El cliente {} tiene deudas vencidas en productos de crédito", product.getClientId());
-                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                "El cliente no puede adquirir productos debido a deudas vencidas."));
+        if (sampled()) {
+            log.debug("Intentando guardar producto: {}", product);
+        }
+        if (isBlank(product.getClientId())) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, MISSING_CLIENT));
+        }
+
+        // si el cliente ya esta en cache, las reglas que no dependen del portafolio se evaluan antes de ir a mongo
+        ClientDto cached = clientCache.getIfPresent(product.getClientId());
+        if (cached != null) {
+            ProductProperties.Rule violated = ruleEngine.checkStatic(product, cached).orElse(null);
+            if (violated != null) {
+                return reject(violated, product);
+            }
+        }
+
+        // una sola consulta a mongo por solicitud, las reglas se validan contra el resumen en memoria
+        return loadPortfolio(product.getClientId())
+                .flatMap(portfolio -> {
+                    if (portfolio.hasOverdueDebt()) {
+                        return rejectOverdue(product);
                     }
 
-                    return getClientById(product.getClientId())
-                            .flatMap(client -> {
-                                String clientType = client.getType().toLowerCase();
-                                ProductSubtype subtype = product.getSubtype();
-                                String clientSubtype = client.getSubtype() != null ? client.getSubtype().name().toLowerCase() : "";
-
-                                log.info("Cliente recibido para validación: {} (tipo: {}, subtipo: {})", client.getId(), clientType, clientSubtype);
-
-                                //Valida que el balance no sea menor a 0
-                                if (product.getBalance() != null && product.getBalance() < 0) {
-                                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                            "El saldo inicial no puede ser negativo"));
-                                }
-
-                                // PYME Cuenta corriente sin comisión, debe tener tarjeta de credito
-                                if ("empresarial".equals(clientType) && "pyme".equals(clientSubtype) &&
-                                        subtype == ProductSubtype.CURRENT_ACCOUNT) {
-                                    return repository.findByClientId(client.getId())
-                                            .filter(p -> p.getSubtype() == ProductSubtype.CREDIT_CARD)
-                                            .hasElements()
-                                            .flatMap(hasCard -> {
-                                                if (!hasCard) {
-                                                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                                            "Cliente PYME debe tener una tarjeta de crédito para abrir cuenta corriente"));
-                                                }
-                                                product.setMaintenanceFee(0.0);
-                                                return repository.save(product);
-                                            });
-                                }
-
-                                // VIP  Cuenta ahorro con saldo promedio mínimo y tarjeta credito
-                                if ("personal".equals(clientType) && "vip".equals(clientSubtype) &&
-                                        subtype == ProductSubtype.SAVINGS) {
-                                    return repository.findByClientId(client.getId())
-                                            .filter(p -> p.getSubtype() == ProductSubtype.CREDIT_CARD)
-                                            .hasElements()
-                                            .flatMap(hasCard -> {
-                                                if (!hasCard) {
-                                                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                                            "Cliente VIP debe tener una tarjeta de crédito para abrir cuenta de ahorro"));
-                                                }
-                                                return repository.save(product);
-                                            });
-                                }
-
-                                // Empresa no puede tener ahorro o plazo fijo
-                                if (clientType.equals("empresarial") &&
-                                        (subtype == ProductSubtype.SAVINGS || subtype == ProductSubtype.FIXED_TERM)) {
-                                    log.warn("Cliente empresarial intentó registrar cuenta de tipo no permitido: {}", subtype);
-                                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                            "Cliente empresarial no puede tener cuentas de ahorro ni de plazo fijo"));
-                                }
-
-                                // cliente personal solo una cuenta de cada tipo pasivo
-                                if (clientType.equals("personal") && product.getType().equalsIgnoreCase("pasivo")) {
-                                    return repository.findByClientId(product.getClientId())
-                                            .filter(p -> p.getSubtype() == subtype)
-                                            .hasElements()
-                                            .flatMap(exists -> {
-                                                if (exists) {
-                                                    log.warn("Cliente personal ya tiene una cuenta de tipo {}", subtype);
-                                                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                                            "Cliente personal ya tiene una cuenta de tipo " + subtype));
-                                                }
-                                                log.info("Guardando nuevo producto para cliente personal: {}", product.getClientId());
-                                                return repository.save(product);
-                                            });
-                                }
-
-                                // Solo un credito personal por cliente
-                                if (subtype == ProductSubtype.PERSONAL_CREDIT) {
-                                    return repository.findByClientId(product.getClientId())
-                                            .filter(p -> p.getSubtype() == ProductSubtype.PERSONAL_CREDIT)
-                                            .hasElements()
-                                            .flatMap(exists -> {
-                                                if (exists) {
-                                                    log.warn("Cliente ya tiene un crédito personal");
-                                                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                                            "Un cliente personal solo puede tener un crédito personal"));
-                                                }
-                                                log.info("Guardando nuevo crédito personal para cliente: {}", product.getClientId());
-                                                return repository.save(product);
-                                            });
-                                }
-
-                                // Crear producto
-                                log.info("Guardando producto sin restricciones adicionales");
-                                return repository.save(product);
-                            });
+                    // si es el mismo cliente ya validado (sin recarga de la cache) no se repiten las reglas estaticas
+                    return clientCache.get(product.getClientId())
+                            .flatMap(client -> validate(product, client, portfolio, client == cached))
+                            .flatMap(valid -> outbox.record(ProductEvent.Type.CREATED, repository.save(valid))
+                                    .flatMap(this::refreshPortfolio));
                 });
     }
 
     @Override
-    public Mono<Product> update(String id, Product product) {
-        log.info("Actualizando producto con ID: {}", id);
-        return repository.findById(id)
-                .flatMap(existing -> {
-                    product.setId(id); // asegura mantener el ID original
-                    return repository.save(product);
+    public Flux<ProductBatchResult> saveAll(Flux<Product> products) {
+        // se procesa por bloques: un resumen de portafolio y una consulta de cliente por cliente del bloque
+        // y una sola escritura masiva por bloque
+        return products.index()
+                .buffer(properties.getBatch().getChunkSize())
+                .concatMap(this::saveChunk);
+    }
+
+    private Flux<ProductBatchResult> saveChunk(List<Tuple2<Long, Product>> chunk) {
+        Map<String, List<Tuple2<Long, Product>>> byClient = new LinkedHashMap<>();
+        for (Tuple2<Long, Product> item : chunk) {
+            byClient.computeIfAbsent(item.getT2().getClientId(), id -> new ArrayList<>()).add(item);
+        }
+        if (sampled()) {
+            log.debug("Guardando bloque de {} productos de {} clientes", chunk.size(), byClient.size());
+        }
+
+        return Flux.fromIterable(byClient.entrySet())
+                .flatMap(group -> validateClientGroup(group.getKey(), group.getValue()),
+                        properties.getBatch().getClientConcurrency())
+                .collectList()
+                .flatMapMany(validated -> {
+                    List<BatchItem> accepted = validated.stream().filter(BatchItem::accepted).toList();
+                    Flux<ProductBatchResult> rejected = Flux.fromIterable(validated)
+                            .filter(item -> !item.accepted())
+                            .map(BatchItem::rejection);
+                    return insertAccepted(accepted)
+                            .concatWith(rejected)
+                            .sort(Comparator.comparingLong(ProductBatchResult::getIndex))
+                            .concatWith(portfolioViews.refresh(byClient.keySet()).then(Mono.empty()));
                 });
     }
 
+    // valida en orden los productos de un cliente contra su portafolio y registra los aceptados,
+    // asi un mismo bloque no puede abrir, por ejemplo, dos cuentas de ahorro del mismo cliente personal
+    private Flux<BatchItem> validateClientGroup(String clientId, List<Tuple2<Long, Product>> items) {
+        if (isBlank(clientId)) {
+            return rejectAll(clientId, items, MISSING_CLIENT); // la cache de clientes no acepta claves nulas
+        }
+        return Mono.zip(loadPortfolio(clientId), clientCache.get(clientId))
+                .flatMapMany(context -> Flux.fromIterable(items)
+                        .concatMap(item -> validateBatchItem(item.getT2(), context.getT2(), context.getT1())
+                                .map(product -> BatchItem.accepted(item.getT1(), product))
+                                .onErrorResume(error -> Mono.just(
+                                        BatchItem.rejected(item.getT1(), clientId, reason(error))))))
+                .switchIfEmpty(Flux.defer(() -> rejectAll(clientId, items, "Cliente no encontrado")))
+                .onErrorResume(error -> rejectAll(clientId, items, reason(error)));
+    }
+
+    private Mono<Product> validateBatchItem(Product product, ClientDto client, ClientPortfolio portfolio) {
+        if (portfolio.hasOverdueDebt()) {
+            return rejectOverdue(product);
+        }
+        return validate(product, client, portfolio, false)
+                .doOnNext(accepted -> portfolio.register(accepted.getSubtype()));
+    }
+
+    private static Flux<BatchItem> rejectAll(String clientId, List<Tuple2<Long, Product>> items, String reason) {
+        return Flux.fromIterable(items).map(item -> BatchItem.rejected(item.getT1(), clientId, reason));
+    }
+
+    // insercion masiva sin orden: un documento fallido no impide guardar el resto del bloque
+    private Flux<ProductBatchResult> insertAccepted(List<BatchItem> accepted) {
+        if (accepted.isEmpty()) {
+            return Flux.empty();
+        }
+        for (BatchItem item : accepted) {
+            item.product().setId(new ObjectId().toHexString()); // id asignado antes para reportarlo aunque falle
+        }
+        return bulkInsert(accepted, outbox.isTransactional());
+    }
+
+    // alta masiva y sus eventos en una transaccion; si mongo rechaza documentos la transaccion se revierte
+    // completa, asi que se reintenta una vez sin los rechazados (retry). sin transaccion el resto ya quedo guardado
+    private Flux<ProductBatchResult> bulkInsert(List<BatchItem> items, boolean retry) {
+        List<Product> documents = items.stream().map(BatchItem::product).toList();
+        return outbox.recordAll(ProductEvent.Type.CREATED, documents,
+                        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)
+                                .insert(documents)
+                                .execute())
+                .thenMany(Flux.fromIterable(items).map(BatchItem::created))
+                .onErrorResume(error -> {
+                    log.error("Fallo la escritura masiva de productos: {}", error.getMessage());
+                    Map<Integer, String> writeErrors = writeErrors(error);
+                    if (writeErrors == null) {
+                        return Flux.fromIterable(items).map(item -> item.failed(error.getMessage()));
+                    }
+                    List<ProductBatchResult> results = new ArrayList<>();
+                    List<BatchItem> remaining = new ArrayList<>();
+                    List<Product> written = new ArrayList<>();
+                    for (int position = 0; position < items.size(); position++) {
+                        String message = writeErrors.get(position);
+                        if (message != null) {
+                            results.add(items.get(position).failed(message));
+                        } else if (!outbox.isTransactional()) {
+                            results.add(items.get(position).created());
+                            written.add(items.get(position).product());
+                        } else {
+                            remaining.add(items.get(position));
+                        }
+                    }
+                    // sin transaccion los insertados ya quedaron guardados: tambien llevan su evento CREATED
+                    Mono<Void> events = outbox.recordWritten(ProductEvent.Type.CREATED, written);
+                    if (remaining.isEmpty()) {
+                        return events.thenMany(Flux.fromIterable(results));
+                    }
+                    Flux<ProductBatchResult> rest = retry
+                            ? bulkInsert(remaining, false)
+                            : Flux.fromIterable(remaining).map(item -> item.failed(error.getMessage()));
+                    return events.thenMany(Flux.fromIterable(results)).concatWith(rest);
+                });
+    }
+
+    // errores por posicion de una escritura masiva, null si el error no indica que documentos fallaron
+    private static Map<Integer, String> writeErrors(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkError) {
+                Map<Integer, String> errors = new HashMap<>();
+                bulkError.getWriteErrors().forEach(e -> errors.put(e.getIndex(), e.getMessage()));
+                return errors;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String clientId) {
+        return clientId == null || clientId.isBlank();
+    }
+
+    private static String reason(Throwable error) {
+        return error instanceof ResponseStatusException status && status.getReason() != null
+                ? status.getReason()
+                : error.getMessage();
+    }
+
+    // producto del bloque ya validado: aceptado (product) o rechazado (rejection)
+    private record BatchItem(long index, Product product, ProductBatchResult rejection) {
+
+        static BatchItem accepted(long index, Product product) {
+            return new BatchItem(index, product, null);
+        }
+
+        static BatchItem rejected(long index, String clientId, String reason) {
+            return new BatchItem(index, null, ProductBatchResult.rejected(index, clientId, reason));
+        }
+
+        boolean accepted() {
+            return product != null;
+        }
+
+        ProductBatchResult created() {
+            return ProductBatchResult.created(index, product.getClientId(), product.getId());
+        }
+
+        ProductBatchResult failed(String message) {
+            return ProductBatchResult.failed(index, product.getClientId(), message);
+        }
+    }
+
+    // carga el resumen del portafolio del cliente (conteo por subtipo y deuda vencida)
+    private Mono<ClientPortfolio> loadPortfolio(String clientId) {
+        return repository.summarizeByClientId(clientId)
+                .collectList()
+                .map(ClientPortfolio::of);
+    }
+
+    // aplica las reglas de negocio (ProductRuleEngine) sobre el portafolio ya cargado, sin volver a consultar mongo
+    // staticChecked: las reglas estaticas ya se evaluaron con checkStatic para este cliente
+    private Mono<Product> validate(Product product, ClientDto client, ClientPortfolio portfolio, boolean staticChecked) {
+        if (sampled()) {
+            log.debug("Cliente recibido para validación: {} (tipo: {}, subtipo: {})",
+                    client.getId(), client.getType(), client.getSubtype());
+        }
+        return (staticChecked
+                ? ruleEngine.checkPortfolio(product, client, portfolio)
+                : ruleEngine.check(product, client, portfolio))
+                .<Mono<Product>>map(rule -> reject(rule, product))
+                .orElseGet(() -> {
+                    ruleEngine.applyEffects(product, client);
+                    product.setPartition(Product.partitionOf(product.getClientId()));
+                    return Mono.just(product);
+                });
+    }
+
+    private Mono<Product> reject(ProductProperties.Rule rule, Product product) {
+        ruleEngine.recordRejection(rule.getId());
+        if (sampled()) {
+            log.debug("Producto rechazado por la regla {} para el cliente {}", rule.getId(), product.getClientId());
+        }
+        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, ruleEngine.message(rule, product)));
+    }
+
+    private Mono<Product> rejectOverdue(Product product) {
+        ruleEngine.recordRejection(OVERDUE_DEBT);
+        if (sampled()) {
+            log.debug("El cliente {} tiene deudas vencidas en productos de crédito", product.getClientId());
+        }
+        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "El cliente no puede adquirir productos debido a deudas vencidas."));
+    }
+
+    // los logs por solicitud van en DEBUG y solo para una muestra (product.logging.debug-sample-rate),
+    // la latencia y los rechazos se siguen en las metricas. la muestra se decide por solicitud
+    // (RequestLogSampling); fuera de una solicitud http se decide en cada log
+    private boolean sampled() {
+        return RequestLogSampling.sampled(log, properties.getLogging().getDebugSampleRate());
+    }
+
     @Override
-    public Mono<Void> delete(String id) {
-        log.info("Eliminando producto con ID: {}", id);
-        return repository.deleteById(id);
+    public Mono<Product> update(String id, Product product) {
+        if (sampled()) {
+            log.debug("Actualizando producto con ID: {}", id);
+        }
+        // reemplaza todos los campos editables: sin la version leida pisaria en silencio cambios concurrentes
+        if (product.getVersion() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED,
+                    "Se requiere la version del producto para reemplazarlo; use PATCH para cambios parciales"));
+        }
+        // una sola operacion; el id original nunca se modifica
+        return modify(id, product.getVersion(), fieldUpdate(product, UPDATABLE_FIELDS), ProductEvent.Type.UPDATED);
     }
 
     @Override
-    public Flux<Product> findByClientId(String id) {
-        log.info("Buscando productos por clientId: {}", id);
-        return repository.findByClientId(id);
+    public Mono<Product> patch(String id, Map<String, Object> changes) {
+        if (sampled()) {
+            log.debug("Actualizando campos {} del producto con ID: {}", changes.keySet(), id);
+        }
+        return Mono.defer(() -> {
+            Set<String> fields = new LinkedHashSet<>(changes.keySet());
+            fields.remove("version");
+            for (String field : fields) {
+                if (!UPDATABLE_FIELDS.contains(field)) {
+                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Campo no editable: " + field));
+                }
+            }
+            // jackson convierte los valores al tipo de cada campo (enums, numeros, listas)
+            Product values;
+            try {
+                values = objectMapper.convertValue(changes, Product.class);
+            } catch (IllegalArgumentException e) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Valores invalidos: " + e.getMessage()));
+            }
+            return modify(id, values.getVersion(), fieldUpdate(values, fields), ProductEvent.Type.UPDATED);
+        });
+    }
+
+    // actualizacion atomica en mongo (findAndModify) que ademas incrementa la version y registra el evento;
+    // si se envia la version esperada y no coincide responde 409 en lugar de pisar cambios concurrentes
+    private Mono<Product> modify(String id, Long expectedVersion, Update update, ProductEvent.Type event) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        update.inc("version", 1);
+        AtomicReference<String> previousClient = new AtomicReference<>();
+        Mono<Product> write = update.modifies("clientId")
+                // puede cambiar el titular: se toma el documento anterior para recalcular tambien la vista del
+                // cliente previo, y luego se lee el resultado
+                ? mongoTemplate.findAndModify(Query.query(criteria), update,
+                                FindAndModifyOptions.options().returnNew(false), Product.class)
+                        .doOnNext(previous -> previousClient.set(previous.getClientId()))
+                        .flatMap(previous -> mongoTemplate.findById(id, Product.class))
+                : mongoTemplate.findAndModify(Query.query(criteria), update,
+                        FindAndModifyOptions.options().returnNew(true), Product.class);
+        return outbox.record(event, write
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null
+                        ? Mono.empty()
+                        : repository.existsById(id).flatMap(exists -> exists
+                                ? Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                        "El producto fue modificado por otra operación, vuelva a consultarlo"))
+                                : Mono.empty()))))
+                // tambien tras un 409: el cliente vuelve a consultar y debe ver la version actual
+                .doFinally(signal -> nearCaches.invalidateProduct(id))
+                .flatMap(product -> refreshPortfolio(product, previousClient.get()));
+    }
+
+    // recalcula la vista client_portfolios del cliente del producto escrito
+    private Mono<Product> refreshPortfolio(Product product) {
+        return refreshPortfolio(product, null);
+    }
+
+    // si el producto cambio de titular, tambien la del cliente anterior (deja de contarlo)
+    private Mono<Product> refreshPortfolio(Product product, String previousClientId) {
+        Set<String> clientIds = new LinkedHashSet<>();
+        clientIds.add(product.getClientId());
+        if (previousClientId != null) {
+            clientIds.add(previousClientId);
+        }
+        return portfolioViews.refresh(clientIds).thenReturn(product);
+    }
+
+    private static Update fieldUpdate(Product values, Collection<String> fields) {
+        BeanWrapper source = PropertyAccessorFactory.forBeanPropertyAccess(values);
+        Update update = new Update();
+        for (String field : fields) {
+            update.set(field, source.getPropertyValue(field));
+        }
+        if (fields.contains("clientId")) {
+            update.set("partition", Product.partitionOf(values.getClientId())); // la particion sigue al cliente
+        }
+        return update;
     }
 
     @Override
-    public Mono<Product> markAsOverdue(String id) {
-        return repository.findById(id)
-                .flatMap(product -> {
-                    product.setStatus("vencido");
-                    return repository.save(product);
-                });
+    public Mono<Void> delete(String id) {
+        if (sampled()) {
+            log.debug("Eliminando producto con ID: {}", id);
+        }
+        // findAndRemove devuelve el producto borrado para publicar su ultimo estado con la clave del cliente
+        return outbox.record(ProductEvent.Type.DELETED,
+                        mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(id)), Product.class))
+                .doFinally(signal -> nearCaches.invalidateProduct(id))
+                .flatMap(this::refreshPortfolio)
+                .then();
     }
 
-    @CircuitBreaker(name = "clientService", fallbackMethod = "fallbackClient")
-    public Mono<ClientDto> getClientById(String clientId) {
-        return clientWebClient.get()
-                .uri("/api/v1/client/" + clientId)
-                .retrieve()
-                .bodyToMono(ClientDto.class);
+    @Override
+    public Flux<Product> findByClientId(String id) {
+        if (sampled()) {
+            log.debug("Buscando productos por clientId: {}", id);
+        }
+        return repository.findByClientIdWithReadPreference(id, properties.getMongo().listingReadPreference());
     }
 
-    public Mono<ClientDto> fallbackClient(String clientId, Throwable error) {
-        log.warn("Fallback activado al llamar a client-service: {}", error.getMessage());
-        return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
-                "client-service no disponible actualmente"));
+    @Override
+    public Mono<Product> markAsOverdue(String id) {
+        // solo cambia el estado: no pisa saldos escritos en paralelo por el consumer de movimientos
+        return modify(id, null, new Update().set("status", "vencido"), ProductEvent.Type.OVERDUE);
     }
 }
@@ -0,0 +1,62 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.service.blocking.BlockingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// la deteccion de llamadas bloqueantes con blockhound esta en NonBlockingThreadsTest
+class BlockingExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BlockingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void rejectsWhenIntegrationIsSaturated() throws InterruptedException {
+        ProductProperties properties = new ProductProperties();
+        properties.getBlocking().setMode(ProductProperties.Blocking.Mode.BOUNDED_ELASTIC);
+        properties.getBlocking().getMaxConcurrency().put("hsm", 1);
+        properties.getBlocking().setQueueCapacity(1);
+        executor = new BlockingExecutor(properties, registry);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.run("hsm", () -> {
+            started.countDown();
+            await(release);
+        }).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.run("hsm", () -> { }).subscribe(); // ocupa el unico lugar de la cola
+
+        StepVerifier.create(executor.run("hsm", () -> { }))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                        ((ResponseStatusException) error).getStatusCode()))
+                .verify(Duration.ofSeconds(5));
+        // otra integracion no se ve afectada
+        StepVerifier.create(executor.call("core-banking", () -> "ok")).expectNext("ok").verifyComplete();
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
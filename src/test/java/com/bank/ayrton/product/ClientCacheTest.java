@@ -0,0 +1,95 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ClientServiceProperties;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.service.client.ClientCache;
+import com.bank.ayrton.product.service.client.ClientServiceClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClientCacheTest {
+
+    @Mock
+    private ClientServiceClient client;
+
+    private ClientServiceProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ClientServiceProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private static ClientDto client(String id) {
+        ClientDto dto = new ClientDto();
+        dto.setId(id); dto.setType("personal");
+        return dto;
+    }
+
+    @Test
+    void get_shouldCoalesceConcurrentLookups() {
+        Sinks.One<ClientDto> remote = Sinks.one();
+        when(client.getClientById("c1")).thenReturn(remote.asMono());
+
+        ClientCache cache = new ClientCache(properties, client, meterRegistry);
+        Flux<ClientDto> lookups = Flux.merge(cache.get("c1"), cache.get("c1"), cache.get("c1"));
+
+        StepVerifier.create(lookups)
+                .then(() -> remote.tryEmitValue(client("c1")))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        verify(client, times(1)).getClientById("c1");
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "clients").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void invalidate_shouldReloadClient() {
+        when(client.getClientById("c2")).thenReturn(Mono.just(client("c2")));
+
+        ClientCache cache = new ClientCache(properties, client, meterRegistry);
+        cache.get("c2").block();
+        cache.invalidate("c2");
+        cache.get("c2").block();
+
+        verify(client, times(2)).getClientById("c2");
+    }
+
+    @Test
+    void get_shouldServeStaleEntryWhenClientServiceIsDown() throws InterruptedException {
+        properties.getCache().setRefreshAfter(Duration.ofMillis(1));
+        when(client.getClientById("c3"))
+                .thenReturn(Mono.just(client("c3")))
+                .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE)));
+
+        ClientCache cache = new ClientCache(properties, client, meterRegistry);
+        cache.get("c3").block();
+        Thread.sleep(10);
+
+        // la recarga falla pero se sigue sirviendo el cliente guardado
+        StepVerifier.create(cache.get("c3"))
+                .expectNextMatches(dto -> dto.getId().equals("c3"))
+                .verifyComplete();
+        StepVerifier.create(cache.get("c3"))
+                .expectNextMatches(dto -> dto.getId().equals("c3"))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,138 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.api.product.ClientPortfolioViewRepository;
+import com.bank.ayrton.product.config.MongoConversionConfig;
+import com.bank.ayrton.product.entity.ClientPortfolioView;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClientPortfolioViewServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveBulkOperations bulkOperations;
+
+    @Mock
+    private ClientPortfolioViewRepository repository;
+
+    private ClientPortfolioViewService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ClientPortfolioViewService(mongoTemplate, repository, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static final Instant SERVER_TIME = Instant.parse("2026-03-02T10:00:01Z");
+
+    private void stubServerTime() {
+        when(mongoTemplate.executeCommand(any(Document.class)))
+                .thenReturn(Mono.just(new Document("localTime", Date.from(SERVER_TIME))));
+        MongoCustomConversions conversions = new MongoConversionConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        lenient().when(mongoTemplate.getConverter()).thenReturn(converter);
+    }
+
+    @Test
+    void refresh_shouldReplaceRecomputedViewsAndRemoveClientsWithoutProducts() {
+        ClientPortfolioView c1 = new ClientPortfolioView();
+        c1.setClientId("c1");
+        c1.setPassiveBalance(Money.valueOf("150"));
+
+        stubServerTime();
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("products"), eq(ClientPortfolioView.class)))
+                .thenReturn(Flux.just(c1));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClientPortfolioView.class))
+                .thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        StepVerifier.create(service.refresh(Arrays.asList("c1", "c2", null, "c1"))).verifyComplete();
+
+        ArgumentCaptor<UpdateDefinition> upsert = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulkOperations).upsert(argThat((Query query) -> "c1".equals(query.getQueryObject().get("clientId"))),
+                upsert.capture());
+        // la vista solo reemplaza a una calculada antes (sourceAt anterior o ausente)
+        Document stage = ((AggregationUpdate) upsert.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT).get(0);
+        List<?> cond = stage.get("$replaceWith", Document.class).getList("$cond", Object.class);
+        assertTrue(((Document) cond.get(0)).containsKey("$lte"));
+        assertEquals("$$ROOT", cond.get(2));
+        Document replacement = ((Document) cond.get(1)).get("$literal", Document.class);
+        assertEquals("c1", replacement.get("_id"));
+        assertEquals(new Decimal128(new BigDecimal("150.00")), replacement.get("passiveBalance"));
+
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations).remove(removed.capture());
+        assertEquals("c2", removed.getValue().getQueryObject().get("clientId"));
+        assertTrue(removed.getValue().getQueryObject().toString().contains("sourceAt"));
+
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq("products"), eq(ClientPortfolioView.class));
+        assertEquals(NOW, c1.getUpdatedAt());
+        assertEquals(SERVER_TIME, c1.getSourceAt());
+    }
+
+    @Test
+    void refresh_shouldNotFailTheWriteWhenTheViewCannotBeUpdated() {
+        stubServerTime();
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("products"), eq(ClientPortfolioView.class)))
+                .thenReturn(Flux.error(new IllegalStateException("mongo caido")));
+
+        StepVerifier.create(service.refresh(List.of("c1"))).verifyComplete();
+
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(ClientPortfolioView.class));
+    }
+
+    @Test
+    void pipeline_shouldMatchOnlyRequestedClients() {
+        List<Document> scoped = ClientPortfolioViewService.pipeline(new Document("$in", List.of("c1")));
+        List<Document> all = ClientPortfolioViewService.pipeline(null);
+
+        assertEquals(new Document("clientId", new Document("$in", List.of("c1"))),
+                scoped.get(0).get("$match", Document.class));
+        assertEquals(scoped.size() - 1, all.size());
+        assertFalse(all.get(0).containsKey("$match"));
+    }
+}
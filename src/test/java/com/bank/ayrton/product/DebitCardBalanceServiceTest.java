@@ -0,0 +1,83 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.dto.AccountBalance;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.service.card.DebitCardBalanceService;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DebitCardBalanceServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private DebitCardBalanceService service;
+
+    @Test
+    void balances_shouldKeepCardOrderAndSkipMissingAccounts() {
+        ObjectId card = new ObjectId();
+        ObjectId main = new ObjectId();
+        ObjectId linked1 = new ObjectId();
+        ObjectId linked2 = new ObjectId();
+        ObjectId missing = new ObjectId();
+
+        // $lookup devuelve las cuentas en cualquier orden
+        Document result = new Document("_id", card)
+                .append("mainAccountId", main.toHexString())
+                .append("linkedAccountIds", List.of(linked2.toHexString(), missing.toHexString(),
+                        main.toHexString(), linked1.toHexString()))
+                .append("accounts", List.of(
+                        new Document("_id", linked1).append("balance", new Decimal128(new BigDecimal("300.00"))),
+                        new Document("_id", main).append("balance", 10.0),
+                        new Document("_id", linked2).append("balance", 50)));
+
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("debit_cards"), eq(Document.class)))
+                .thenReturn(Flux.just(result));
+
+        StepVerifier.create(service.balances(card.toHexString()))
+                .assertNext(balances -> {
+                    assertEquals(card.toHexString(), balances.getCardId());
+                    assertEquals(List.of(main.toHexString(), linked2.toHexString(), linked1.toHexString()),
+                            balances.getAccounts().stream().map(AccountBalance::getProductId).toList());
+                    assertTrue(balances.getAccounts().get(0).isMain());
+                    assertEquals(Money.valueOf("50"), balances.getAccounts().get(1).getBalance());
+                    assertEquals(linked2.toHexString(), balances.firstWithFunds(Money.valueOf("40")).getProductId());
+                    assertNull(balances.firstWithFunds(Money.valueOf("1000")));
+                })
+                .verifyComplete();
+
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq("debit_cards"), eq(Document.class));
+    }
+
+    @Test
+    void pipeline_shouldMatchCardByObjectIdAndLookupProducts() {
+        ObjectId card = new ObjectId();
+
+        List<Document> pipeline = DebitCardBalanceService.pipeline(card.toHexString());
+
+        assertEquals(card, pipeline.get(0).get("$match", Document.class).get("_id"));
+        Document lookup = pipeline.get(2).get("$lookup", Document.class);
+        assertEquals("products", lookup.getString("from"));
+        assertEquals("_id", lookup.getString("foreignField"));
+    }
+}
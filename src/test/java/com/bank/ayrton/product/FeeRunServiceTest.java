@@ -0,0 +1,231 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.FeeRun;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.fee.FeeRunService;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeeRunServiceTest {
+
+    private static final YearMonth PERIOD = YearMonth.of(2026, 9);
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveBulkOperations bulkOperations;
+
+    @Mock
+    private ClientPortfolioViewService portfolioViews;
+
+    private final ProductProperties properties = new ProductProperties();
+    private FeeRunService service;
+
+    @BeforeEach
+    void setUp() {
+        properties.getFeeJob().setZone(ZoneOffset.UTC);
+        Clock clock = Clock.fixed(Instant.parse("2026-10-01T00:30:00Z"), ZoneOffset.UTC);
+        service = new FeeRunService(mongoTemplate, properties, clock, portfolioViews,
+                new NearCaches(mongoTemplate, properties, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    }
+
+    private static Product account(String id, String balance, String maintenanceFee, Integer transactions) {
+        Product product = new Product();
+        product.setId(id);
+        product.setClientId("c-" + id);
+        product.setPartition(700);
+        product.setBalance(Money.valueOf(balance));
+        product.setMaintenanceFee(maintenanceFee == null ? null : Money.valueOf(maintenanceFee));
+        product.setFreeTransactionLimit(3);
+        product.setTransactionFee(Money.valueOf("1.50"));
+        product.setMonthlyTransactions(transactions == null ? null : Map.of("2026-09", transactions));
+        return product;
+    }
+
+    @Test
+    void resumesUnfinishedRangesFromTheirCheckpointAndChargesWithBulkInc() {
+        FeeRun.Range finished = new FeeRun.Range(0, 512);
+        finished.setDone(true);
+        FeeRun.Range halfway = new FeeRun.Range(512, 1024);
+        halfway.setLastPartition(700);
+        halfway.setLastId("65a1b2c3d4e5f60718293a4b");
+        FeeRun run = new FeeRun();
+        run.setId("2026-09");
+        run.setStatus(FeeRun.Status.RUNNING);
+        run.setAttempts(2);
+        run.setRanges(List.of(finished, halfway));
+        FeeRun completed = new FeeRun();
+        completed.setId("2026-09");
+        completed.setStatus(FeeRun.Status.COMPLETED);
+        completed.setRanges(List.of(finished, halfway));
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(FeeRun.class)))
+                .thenReturn(Mono.just(run), Mono.just(completed));
+        List<Product> chunk = List.of(
+                account("p1", "100.00", "10.00", 5),   // 10.00 + 2 x 1.50
+                account("p2", "50.00", null, 2),       // sin mantenimiento y dentro del limite libre
+                account("p3", "5.00", "10.00", null)); // saldo insuficiente
+        // particiones ya asignadas, un bloque con productos y el rango agotado
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenReturn(Flux.empty(), Flux.fromIterable(chunk), Flux.empty());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getMatchedCount()).thenReturn(1);
+        when(bulkOperations.execute()).thenReturn(Mono.just(result));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(FeeRun.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Product.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+        when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.run(PERIOD))
+                .assertNext(report -> {
+                    assertEquals(FeeRun.Status.COMPLETED, report.getStatus());
+                    assertEquals(3, report.getProcessedNow());
+                    assertTrue(report.getAccountsPerSecond() > 0);
+                })
+                .verifyComplete();
+
+        // el rango terminado no se vuelve a leer; el pendiente continua despues del ultimo producto guardado
+        ArgumentCaptor<Query> reads = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(3)).find(reads.capture(), eq(Product.class));
+        Document resumed = reads.getAllValues().get(1).getQueryObject();
+        // solo cuentas abiertas antes del 1 de octubre (UTC en este test)
+        long october = Instant.parse("2026-10-01T00:00:00Z").getEpochSecond();
+        assertEquals(new Document("$lt", new ObjectId(Long.toHexString(october) + "0000000000000000")),
+                resumed.get("id"));
+        assertEquals(List.of(
+                        new Document("partition", 700).append("id", new Document("$gt", "65a1b2c3d4e5f60718293a4b")),
+                        new Document("partition", new Document("$gt", 700).append("$lt", 1024))),
+                resumed.get("$or"));
+
+        ArgumentCaptor<Query> charged = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> debits = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(charged.capture(), debits.capture());
+        assertEquals("p1", charged.getValue().getQueryObject().get("id"));
+        Document debit = debits.getValue().getUpdateObject();
+        assertEquals(new Decimal128(new BigDecimal("-13.00")), ((Document) debit.get("$inc")).get("balance"));
+        assertEquals("2026-09", ((Document) debit.get("$set")).get("lastFeeRun"));
+
+        // el exento y el sin saldo quedan marcados con el mes y sin su contador, sin tocar el saldo
+        ArgumentCaptor<Query> settled = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> settles = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(settled.capture(), settles.capture(), eq(Product.class));
+        assertEquals(new Document("$in", List.of("p2", "p3")), settled.getValue().getQueryObject().get("id"));
+        Document settle = settles.getValue().getUpdateObject();
+        assertEquals("2026-09", ((Document) settle.get("$set")).get("lastFeeRun"));
+        assertTrue(((Document) settle.get("$unset")).containsKey("monthlyTransactions.2026-09"));
+        assertNull(settle.get("$inc"));
+
+        // punto de control del bloque: cursor y totales del rango 1
+        ArgumentCaptor<Update> checkpoints = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), checkpoints.capture(), eq(FeeRun.class));
+        Document checkpoint = checkpoints.getAllValues().get(0).getUpdateObject();
+        assertEquals("p3", ((Document) checkpoint.get("$set")).get("ranges.1.lastId"));
+        Document totals = (Document) checkpoint.get("$inc");
+        assertEquals(3L, totals.get("ranges.1.processed"));
+        assertEquals(1L, totals.get("ranges.1.charged"));
+        assertEquals(1L, totals.get("ranges.1.exempt"));
+        assertEquals(1L, totals.get("ranges.1.insufficientFunds"));
+        assertEquals(1300L, totals.get("ranges.1.feesMinor"));
+        assertEquals(true, ((Document) checkpoints.getAllValues().get(1).getUpdateObject().get("$set")).get("ranges.1.done"));
+    }
+
+    @Test
+    void completedMonthIsNotChargedAgainAndOpenMonthIsRejected() {
+        FeeRun completed = new FeeRun();
+        completed.setId("2026-09");
+        completed.setStatus(FeeRun.Status.COMPLETED);
+        FeeRun.Range range = new FeeRun.Range(0, 1024);
+        range.setCharged(2);
+        range.setFeesMinor(2500);
+        completed.setRanges(List.of(range));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(FeeRun.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+        when(mongoTemplate.findById("2026-09", FeeRun.class)).thenReturn(Mono.just(completed));
+
+        StepVerifier.create(service.run(PERIOD))
+                .assertNext(report -> {
+                    assertEquals(2, report.getCharged());
+                    assertEquals(Money.valueOf("25.00"), report.getFees());
+                })
+                .verifyComplete();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Product.class));
+
+        StepVerifier.create(service.run(YearMonth.of(2026, 10)))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+    }
+
+    @Test
+    void manualStartReturnsBeforeTheRunFinishesAndHoldsTheMonth() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(FeeRun.class)))
+                .thenReturn(Mono.never());
+
+        StepVerifier.create(service.start(PERIOD))
+                .expectNext(PERIOD)
+                .verifyComplete();
+        verify(mongoTemplate, timeout(1000)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(FeeRun.class));
+
+        // el mismo mes no se vuelve a tomar en esta instancia mientras corre (p. ej. la ejecucion programada)
+        StepVerifier.create(service.run(PERIOD))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.CONFLICT,
+                        ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+        StepVerifier.create(service.start(PERIOD))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.CONFLICT,
+                        ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(FeeRun.class));
+
+        StepVerifier.create(service.start(YearMonth.of(2026, 10)))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+    }
+}
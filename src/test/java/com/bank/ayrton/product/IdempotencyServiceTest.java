@@ -0,0 +1,189 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.IdempotencyRecord;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.idempotency.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyService(mongoTemplate, objectMapper, new ProductProperties(),
+                Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+    }
+
+    @Test
+    void concurrentDuplicatesShareOneExecution() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Sinks.One<Product> saved = Sinks.one();
+
+        Product request = product();
+        Mono<Product> first = service.execute("product", "k1", request, Product.class, () -> count(saved.asMono()));
+        Mono<Product> retry = service.execute("product", "k1", product(), Product.class, () -> count(saved.asMono()));
+
+        StepVerifier.create(first.zipWith(retry))
+                .then(() -> saved.tryEmitValue(created(request)))
+                .assertNext(both -> assertSame(both.getT1(), both.getT2()))
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+        verify(mongoTemplate, times(1)).insert(any(IdempotencyRecord.class));
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(IdempotencyRecord.class));
+        assertEquals(IdempotencyRecord.Status.COMPLETED, update.getValue().getUpdateObject().get("$set", Document.class).get("status"));
+        assertEquals(1.0, meterRegistry.get("product.idempotency.requests").tag("result", "coalesced").counter().count());
+    }
+
+    @Test
+    void retryReceivesStoredResponseWithoutRunningAgain() throws Exception {
+        Product request = product();
+        IdempotencyRecord stored = record(request);
+        stored.setResponse(objectMapper.writeValueAsString(created(request)));
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("dup")));
+        when(mongoTemplate.findById("product:k1", IdempotencyRecord.class)).thenReturn(Mono.just(stored));
+
+        StepVerifier.create(service.execute("product", "k1", request, Product.class, () -> count(Mono.empty())))
+                .assertNext(product -> assertEquals("p-1", product.getId()))
+                .verifyComplete();
+
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void sameKeyWithAnotherBodyIsRejected() throws Exception {
+        IdempotencyRecord stored = record(product());
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("dup")));
+        when(mongoTemplate.findById("product:k1", IdempotencyRecord.class)).thenReturn(Mono.just(stored));
+
+        Product other = product();
+        other.setBalance(Money.valueOf("99"));
+        StepVerifier.create(service.execute("product", "k1", other, Product.class, () -> count(Mono.empty())))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                        ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void businessRejectionIsStoredAndTransientErrorReleasesTheKey() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.remove(any(Query.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+        StepVerifier.create(service.execute("product", "k-400", product(), Product.class, () -> Mono.error(
+                        new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cliente personal solo puede tener una cuenta de ahorro"))))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+
+        StepVerifier.create(service.execute("product", "k-503", product(), Product.class, () -> Mono.error(
+                        new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "client-service no disponible actualmente"))))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+    }
+
+    @Test
+    void sameKeyFromAnotherClientDoesNotReplay() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        Product request = product();
+        StepVerifier.create(service.execute(IdempotencyService.scope("product", "c1"), "k1", request, Product.class,
+                        () -> count(Mono.just(created(request)))))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(service.execute(IdempotencyService.scope("product", "c2"), "k1", request, Product.class,
+                        () -> count(Mono.just(created(request)))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(2, executions.get());
+        ArgumentCaptor<IdempotencyRecord> records = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(mongoTemplate, times(2)).insert(records.capture());
+        assertEquals(List.of("product:c1:k1", "product:c2:k1"),
+                records.getAllValues().stream().map(IdempotencyRecord::getId).toList());
+    }
+
+    private <T> Mono<T> count(Mono<T> action) {
+        executions.incrementAndGet();
+        return action;
+    }
+
+    private IdempotencyRecord record(Product request) throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId("product:k1");
+        record.setStatus(IdempotencyRecord.Status.COMPLETED);
+        record.setRequestHash(HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request))));
+        return record;
+    }
+
+    private static Product product() {
+        Product product = new Product();
+        product.setClientId("c1");
+        product.setSubtype(ProductSubtype.SAVINGS);
+        product.setType("pasivo");
+        product.setBalance(Money.valueOf("100"));
+        return product;
+    }
+
+    private static Product created(Product request) {
+        Product product = product();
+        product.setId("p-1");
+        product.setClientId(request.getClientId());
+        return product;
+    }
+}
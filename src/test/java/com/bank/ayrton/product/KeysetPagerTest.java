@@ -0,0 +1,93 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.listing.KeysetPager;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KeysetPagerTest {
+
+    @Mock
+    private ReactiveMongoTemplate template;
+
+    private KeysetPager pager;
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        lenient().when(template.getConverter()).thenReturn(converter);
+        pager = new KeysetPager(template, new ProductProperties());
+    }
+
+    private static Product product(String id) {
+        Product p = new Product(); p.setId(id);
+        return p;
+    }
+
+    @Test
+    void page_shouldReturnNextCursorWhenMoreResultsExist() {
+        when(template.find(any(Query.class), eq(Product.class)))
+                .thenReturn(Flux.just(product("a1"), product("a2"), product("a3")));
+
+        StepVerifier.create(pager.page(Product.class, Criteria.where("clientId").is("c1"), "a0", 2,
+                        List.of("subtype", "balance")))
+                .assertNext(page -> {
+                    assertEquals(2, page.getItems().size());
+                    assertEquals("a2", page.getNextCursor());
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(template).find(captor.capture(), eq(Product.class));
+        Query query = captor.getValue();
+        assertEquals(3, query.getLimit());
+        assertEquals(new Document("id", 1), query.getSortObject());
+        assertEquals(new Document("subtype", 1).append("balance", 1).append("id", 1), query.getFieldsObject());
+    }
+
+    @Test
+    void page_shouldEndWithoutCursorOnLastPage() {
+        when(template.find(any(Query.class), eq(Product.class))).thenReturn(Flux.just(product("b1")));
+
+        StepVerifier.create(pager.page(Product.class, new Criteria(), null, null, null))
+                .assertNext(page -> assertNull(page.getNextCursor()))
+                .verifyComplete();
+    }
+
+    @Test
+    void page_shouldRejectUnknownProjectionField() {
+        StepVerifier.create(pager.page(Product.class, new Criteria(), null, 10, List.of("password")))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+
+        verify(template, never()).find(any(Query.class), eq(Product.class));
+    }
+}
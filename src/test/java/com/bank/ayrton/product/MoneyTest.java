@@ -0,0 +1,72 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.MongoConversionConfig;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void arithmeticOnMinorUnitsRoundsHalfEvenAndFailsOnOverflow() {
+        assertEquals(15, Money.percentOf(1000, 150));     // 1.5% de 10.00 = 0.15
+        assertEquals(2, Money.percentOf(125, 200));       // 0.025 -> 0.02
+        assertEquals(4, Money.percentOf(175, 200));       // 0.035 -> 0.04
+        assertEquals(-2, Money.percentOf(-125, 200));
+        assertEquals(450, Money.transactionFees(23, 20, 150));
+        assertEquals(0, Money.transactionFees(5, 20, 150));
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+
+        // diez depositos de 0.10 suman exactamente 1.00 (con double quedan en 0.9999999999999999)
+        long total = 0;
+        for (int i = 0; i < 10; i++) {
+            total = Money.add(total, Money.valueOf("0.10").minorUnits());
+        }
+        assertEquals(Money.valueOf("1.00"), Money.ofMinor(total));
+    }
+
+    @Test
+    void jsonIsADecimalNumberAndRejectsFractionsOfACent() throws Exception {
+        Product product = objectMapper.readValue("{\"balance\": 1500.25, \"creditLimit\": 300}", Product.class);
+        assertEquals(150025, product.getBalance().minorUnits());
+        assertEquals(Money.valueOf("300.00"), product.getCreditLimit());
+        assertTrue(objectMapper.writeValueAsString(product).contains("\"balance\":1500.25"));
+
+        assertThrows(Exception.class, () -> objectMapper.readValue("{\"balance\": 10.005}", Product.class));
+    }
+
+    @Test
+    void mongoWritesDecimal128AndReadsLegacyNumbers() {
+        MongoCustomConversions conversions = new MongoConversionConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        Product product = new Product();
+        product.setBalance(Money.valueOf("10.50"));
+        Document written = new Document();
+        converter.write(product, written);
+        assertEquals(new Decimal128(new BigDecimal("10.50")), written.get("balance"));
+
+        // documentos anteriores a la migracion: double e int
+        Product legacy = converter.read(Product.class, new Document("balance", 0.1 + 0.2).append("creditLimit", 500));
+        assertEquals(Money.valueOf("0.30"), legacy.getBalance());
+        assertEquals(Money.valueOf("500"), legacy.getCreditLimit());
+        assertEquals(Money.ZERO, Money.fromBson(Decimal128.NEGATIVE_ZERO));
+    }
+}
@@ -0,0 +1,56 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.MongoClientConfig;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.Product;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoAction;
+import org.springframework.data.mongodb.core.MongoActionOperation;
+import org.springframework.data.mongodb.core.WriteConcernResolver;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoClientConfigTest {
+
+    @Test
+    void writeConcernByOperationOverridesCollection() {
+        ProductProperties properties = new ProductProperties();
+        properties.getMongo().setWriteConcerns(Map.of(
+                "products", "MAJORITY",
+                "products.REMOVE", "W1"));
+        WriteConcernResolver resolver = MongoClientConfig.writeConcernResolver(properties);
+
+        assertEquals(WriteConcern.MAJORITY, resolver.resolve(action(MongoActionOperation.UPDATE, "products")));
+        assertEquals(WriteConcern.W1, resolver.resolve(action(MongoActionOperation.REMOVE, "products")));
+        // sin entrada se mantiene el write concern por defecto
+        assertEquals(WriteConcern.ACKNOWLEDGED, resolver.resolve(action(MongoActionOperation.INSERT, "debit_cards")));
+    }
+
+    @Test
+    void invalidWriteConcernFailsAtStartup() {
+        ProductProperties properties = new ProductProperties();
+        properties.getMongo().setWriteConcerns(Map.of("products", "TODOS"));
+
+        assertThrows(IllegalArgumentException.class, () -> MongoClientConfig.writeConcernResolver(properties));
+    }
+
+    @Test
+    void listingReadPreferenceWithMaxStaleness() {
+        ProductProperties.Mongo mongo = new ProductProperties().getMongo();
+        assertEquals(ReadPreference.secondaryPreferred(), mongo.listingReadPreference());
+
+        mongo.setListingMaxStaleness(Duration.ofSeconds(120));
+        assertEquals(ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS), mongo.listingReadPreference());
+    }
+
+    private static MongoAction action(MongoActionOperation operation, String collection) {
+        return new MongoAction(WriteConcern.ACKNOWLEDGED, operation, collection, Product.class, new Document(), new Document());
+    }
+}
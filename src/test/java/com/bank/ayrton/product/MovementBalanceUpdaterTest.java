@@ -0,0 +1,188 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.MovementEvent;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.movement.MovementBalanceUpdater;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovementBalanceUpdaterTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveBulkOperations bulkOperations;
+
+    @Spy
+    private ProductProperties properties = new ProductProperties();
+
+    @Mock
+    private ClientPortfolioViewService portfolioViews;
+
+    @Spy
+    private NearCaches nearCaches = new NearCaches(null, new ProductProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private Clock clock = Clock.fixed(Instant.parse("2026-10-15T12:00:00Z"), ZoneOffset.UTC);
+
+    @InjectMocks
+    private MovementBalanceUpdater updater;
+
+    private static MovementEvent movement(String id, String productId, String type, double amount) {
+        MovementEvent event = new MovementEvent();
+        event.setId(id); event.setProductId(productId);
+        event.setType(type); event.setAmount(Money.fromDouble(amount));
+        return event;
+    }
+
+    @Test
+    void apply_shouldIncrementNetDeltaPerProductSkippingAppliedMovements() {
+        Product p1 = new Product();
+        p1.setId("p1"); p1.setClientId("c1"); p1.setAppliedMovementIds(List.of("m1"));
+
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(Flux.just(p1));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        BulkWriteResult result = matched(1); // solo p1 existe
+        when(bulkOperations.execute()).thenReturn(Mono.just(result));
+        when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+
+        MovementEvent late = movement("m3", "p1", "WITHDRAWAL", 2.0);
+        late.setDate(Instant.parse("2026-10-01T03:00:00Z")); // 30 de setiembre en Lima, consumido en octubre
+        List<MovementEvent> batch = List.of(
+                movement("m1", "p1", "DEPOSIT", 10.0),   // ya aplicado
+                movement("m2", "p1", "DEPOSIT", 5.0),
+                movement("m2", "p1", "DEPOSIT", 5.0),    // repetido en el lote
+                late,
+                movement("m4", "p2", "retiro", 3.0),
+                movement("m5", "p2", "AJUSTE", 1.0));    // tipo desconocido
+
+        StepVerifier.create(updater.apply(batch)).verifyComplete();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(queries.capture(), updates.capture());
+        verify(bulkOperations).execute();
+        verify(portfolioViews).refresh(Set.of("c1")); // vista del cliente recalculada con los nuevos saldos
+
+        Map<Object, Object> deltas = updates.getAllValues().stream()
+                .map(u -> (Document) u.getUpdateObject().get("$inc"))
+                .collect(Collectors.toMap(inc -> inc.get("balance"), inc -> true));
+        assertTrue(deltas.containsKey(new Decimal128(new BigDecimal("3.00"))));   // p1: 5 - 2
+        assertTrue(deltas.containsKey(new Decimal128(new BigDecimal("-3.00"))));  // p2: -3
+        // movimientos de cada mes para la comision por transacciones, segun la fecha del movimiento
+        Document p1Inc = (Document) updates.getAllValues().get(0).getUpdateObject().get("$inc");
+        assertEquals(1, p1Inc.get("monthlyTransactions.2026-10"));
+        assertEquals(1, p1Inc.get("monthlyTransactions.2026-09"));
+    }
+
+    private static BulkWriteResult matched(int count) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getMatchedCount()).thenReturn(count);
+        return result;
+    }
+
+    @Test
+    void apply_shouldRetryRemainingMovementsWhenAnotherConsumerAppliedPartOfTheBatch() {
+        Product before = new Product();
+        before.setId("p1"); before.setClientId("c1"); before.setAppliedMovementIds(List.of());
+        Product after = new Product();
+        after.setId("p1"); after.setClientId("c1"); after.setAppliedMovementIds(List.of("m1"));
+
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(Flux.just(before), Flux.just(after));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        // el primer intento no encuentra el producto porque m1 ya se aplico en otro consumidor
+        BulkWriteResult missed = matched(0);
+        BulkWriteResult applied = matched(1);
+        when(bulkOperations.execute()).thenReturn(Mono.just(missed), Mono.just(applied));
+        when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+
+        StepVerifier.create(updater.apply(List.of(
+                        movement("m1", "p1", "DEPOSIT", 10.0),
+                        movement("m2", "p1", "DEPOSIT", 5.0))))
+                .verifyComplete();
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), updates.capture());
+        Document inc = (Document) updates.getAllValues().get(1).getUpdateObject().get("$inc");
+        assertEquals(new Decimal128(new BigDecimal("5.00")), inc.get("balance")); // solo m2
+        verify(portfolioViews, times(1)).refresh(Set.of("c1"));
+    }
+
+    @Test
+    void apply_shouldNotCountMovementsOfAMonthAlreadyCharged() {
+        Product p1 = new Product();
+        p1.setId("p1"); p1.setClientId("c1"); p1.setAppliedMovementIds(List.of()); p1.setLastFeeRun("2026-09");
+
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(Flux.just(p1));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        BulkWriteResult result = matched(1);
+        when(bulkOperations.execute()).thenReturn(Mono.just(result));
+        when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+
+        MovementEvent late = movement("m1", "p1", "DEPOSIT", 10.0);
+        late.setDate(Instant.parse("2026-09-20T15:00:00Z")); // setiembre ya se cobro
+        StepVerifier.create(updater.apply(List.of(late, movement("m2", "p1", "DEPOSIT", 5.0)))).verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).updateOne(query.capture(), update.capture());
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(new Decimal128(new BigDecimal("15.00")), inc.get("balance")); // el saldo si se aplica
+        assertFalse(inc.containsKey("monthlyTransactions.2026-09"));
+        assertEquals(1, inc.get("monthlyTransactions.2026-10"));
+        // si el cobro cambia lastFeeRun antes de la escritura, no coincide y se relee
+        assertEquals("2026-09", query.getValue().getQueryObject().get("lastFeeRun"));
+    }
+
+    @Test
+    void apply_shouldNotWriteWhenEveryMovementWasAlreadyApplied() {
+        Product p1 = new Product();
+        p1.setId("p1"); p1.setAppliedMovementIds(List.of("m1"));
+
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(Flux.just(p1));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+
+        StepVerifier.create(updater.apply(List.of(movement("m1", "p1", "DEPOSIT", 10.0)))).verifyComplete();
+
+        verify(bulkOperations, never()).execute();
+        verifyNoInteractions(portfolioViews);
+    }
+}
@@ -0,0 +1,91 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.KafkaConfig;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.MovementEvent;
+import com.bank.ayrton.product.kafka.KafkaConsumer;
+import com.bank.ayrton.product.service.movement.MovementBalanceUpdater;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/** Consumer de movimientos contra un broker kafka embebido. */
+@SpringBootTest(classes = MovementConsumerTest.TestConfig.class, properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "spring.cloud.config.enabled=false"
+})
+@EmbeddedKafka(partitions = 1, topics = "movements")
+class MovementConsumerTest {
+
+    @Configuration
+    @ImportAutoConfiguration({KafkaAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @EnableConfigurationProperties(ProductProperties.class)
+    @Import({KafkaConfig.class, KafkaConsumer.class})
+    static class TestConfig {
+    }
+
+    @MockitoBean
+    private MovementBalanceUpdater balanceUpdater;
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void listen_shouldCommitOffsetsOnlyAfterBalancesAreWritten() throws Exception {
+        // la primera escritura falla: el lote no se confirma y se vuelve a entregar
+        when(balanceUpdater.apply(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("mongo no disponible")))
+                .thenReturn(Mono.empty());
+
+        kafkaTemplate.send("movements", "p1", "{\"id\":\"m1\",\"productId\":\"p1\",\"type\":\"DEPOSIT\",\"amount\":10}");
+        kafkaTemplate.send("movements", "p1", "{\"id\":\"m2\",\"productId\":\"p1\",\"type\":\"WITHDRAWAL\",\"amount\":4}");
+        kafkaTemplate.send("movements", "p1", "no es json");
+        kafkaTemplate.flush();
+
+        ArgumentCaptor<List<MovementEvent>> batches = ArgumentCaptor.forClass(List.class);
+        verify(balanceUpdater, timeout(20_000).atLeast(2)).apply(batches.capture());
+        List<String> retried = batches.getAllValues().get(1).stream().map(MovementEvent::getId).toList();
+        assertTrue(retried.contains("m1"), "el lote fallido debe reintentarse");
+
+        try (AdminClient admin = AdminClient.create(
+                Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+            long committed = 0;
+            for (int i = 0; i < 50 && committed < 3; i++) {
+                Map<TopicPartition, OffsetAndMetadata> offsets = admin.listConsumerGroupOffsets("product-group")
+                        .partitionsToOffsetAndMetadata().get();
+                OffsetAndMetadata offset = offsets.get(new TopicPartition("movements", 0));
+                committed = offset == null ? 0 : offset.offset();
+                Thread.sleep(200);
+            }
+            assertEquals(3, committed);
+        }
+    }
+}
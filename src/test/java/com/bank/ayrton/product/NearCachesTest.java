@@ -0,0 +1,109 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NearCachesTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final ProductProperties properties = new ProductProperties();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, Mono<Product>> loader = id -> Mono.fromSupplier(() -> {
+        loads.incrementAndGet();
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    });
+    private NearCaches caches;
+
+    @BeforeEach
+    void setUp() {
+        properties.getNearCache().setEnabled(true);
+        caches = new NearCaches(mongoTemplate, properties, new SimpleMeterRegistry());
+    }
+
+    private void read(String endpoint, String id) {
+        StepVerifier.create(caches.product(endpoint, id, loader))
+                .assertNext(product -> assertEquals(id, product.getId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void cachedReadsUntilInvalidatedAndDisabledEndpointsAlwaysReadMongo() {
+        read(NearCaches.PRODUCT_BY_ID, "p1");
+        read(NearCaches.PRODUCT_BY_ID, "p1");
+        assertEquals(1, loads.get());
+
+        caches.invalidateProduct("p1"); // escritura en esta instancia
+        read(NearCaches.PRODUCT_BY_ID, "p1");
+        assertEquals(2, loads.get());
+
+        // un id inexistente no se guarda
+        StepVerifier.create(caches.product(NearCaches.PRODUCT_BY_ID, "missing", id -> Mono.empty())).verifyComplete();
+
+        properties.getNearCache().getEndpoints().put(NearCaches.PRODUCT_BY_ID, false);
+        read(NearCaches.PRODUCT_BY_ID, "p1");
+        read(NearCaches.PRODUCT_BY_ID, "p1");
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void changesFromOtherInstancesInvalidateThroughTheChangeStream() {
+        Sinks.Many<ChangeStreamEvent<Document>> products = Sinks.many().multicast().onBackpressureBuffer();
+        when(mongoTemplate.changeStream(eq("products"), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(products.asFlux());
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(Document.class)))
+                .thenReturn(Flux.never());
+        caches.onApplicationReady();
+
+        String id = new ObjectId().toHexString();
+        read(NearCaches.PRODUCT_BY_ID, id);
+        read(NearCaches.PRODUCT_BY_ID, "other");
+        products.tryEmitNext(change("update", id));
+        read(NearCaches.PRODUCT_BY_ID, id);
+        read(NearCaches.PRODUCT_BY_ID, "other");
+        assertEquals(3, loads.get()); // solo se recarga el producto modificado
+
+        caches.stop();
+    }
+
+    private static ChangeStreamEvent<Document> change(String operation, String id) {
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(operation,
+                new BsonDocument("_data", new BsonString("00000001")), null, null, null, null,
+                new BsonDocument("_id", new BsonObjectId(new ObjectId(id))), null, null,
+                null, null, null, null, null);
+        return new ChangeStreamEvent<>(raw, Document.class, mock(MongoConverter.class));
+    }
+}
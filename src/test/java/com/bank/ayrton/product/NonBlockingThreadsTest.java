@@ -0,0 +1,213 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.api.product.DebitCardRepository;
+import com.bank.ayrton.product.api.product.ProductRepository;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.controller.DebitCardController;
+import com.bank.ayrton.product.controller.ProductController;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.admission.ClientRateLimiter;
+import com.bank.ayrton.product.service.blocking.BlockingExecutor;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.card.DebitCardBalanceService;
+import com.bank.ayrton.product.service.client.ClientCache;
+import com.bank.ayrton.product.service.feed.ProductChangeFeed;
+import com.bank.ayrton.product.service.idempotency.IdempotencyService;
+import com.bank.ayrton.product.service.listing.KeysetPager;
+import com.bank.ayrton.product.service.logging.RequestLogSampling;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.bank.ayrton.product.service.product.ProductRuleEngine;
+import com.bank.ayrton.product.service.product.ProductServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+// blockhound marca como error cualquier llamada bloqueante en hilos no bloqueantes de reactor
+// (parallel y los event loops de reactor-netty). queda instalado hasta que termina la jvm, por eso estas pruebas
+// corren en su propia ejecucion de surefire (grupo blockhound, ver pom.xml)
+@Tag("blockhound")
+class NonBlockingThreadsTest {
+
+    private static final List<String> blockingCalls = new CopyOnWriteArrayList<>();
+
+    private final ProductProperties properties = new ProductProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final DebitCardRepository debitCardRepository = mock(DebitCardRepository.class);
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final ClientCache clientCache = mock(ClientCache.class);
+    private final ProductOutbox outbox = mock(ProductOutbox.class);
+    private final ClientPortfolioViewService portfolioViews = mock(ClientPortfolioViewService.class);
+    private AnnotationConfigApplicationContext context;
+    private DisposableServer server;
+    private WebTestClient client;
+
+    @BeforeAll
+    static void installBlockHound() {
+        BlockHound.builder()
+                .loadIntegrations()
+                // netty carga una sola vez la libreria nativa de zstd (leyendola del jar) al revisar la compresion
+                .allowBlockingCallsInside("com.github.luben.zstd.util.Native", "load")
+                .blockingMethodCallback(method -> {
+                    blockingCalls.add(method + " en " + Thread.currentThread().getName());
+                    throw new BlockingOperationError(method);
+                })
+                .install();
+    }
+
+    // los controladores y el servicio reales sobre reactor-netty; mongo y client-service responden en el
+    // mismo hilo, asi todo el codigo de la solicitud corre en el event loop
+    @BeforeEach
+    void startServer() {
+        blockingCalls.clear();
+        properties.getLogging().setDebugSampleRate(1.0);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        NearCaches nearCaches = new NearCaches(mongoTemplate, properties, meterRegistry);
+        KeysetPager pager = new KeysetPager(mongoTemplate, properties);
+        IdempotencyService idempotency = new IdempotencyService(mongoTemplate, objectMapper, properties,
+                Clock.systemUTC(), meterRegistry);
+        ProductServiceImpl service = new ProductServiceImpl(productRepository, mongoTemplate, clientCache, properties,
+                pager, objectMapper, new ProductRuleEngine(properties, meterRegistry), outbox, portfolioViews,
+                nearCaches);
+
+        context = new AnnotationConfigApplicationContext();
+        context.register(WebConfig.class);
+        context.registerBean(ProductController.class, () -> new ProductController(service,
+                new ClientRateLimiter(properties, meterRegistry), idempotency,
+                new ProductChangeFeed(mongoTemplate, properties, meterRegistry), properties));
+        context.registerBean(DebitCardController.class, () -> new DebitCardController(debitCardRepository,
+                mock(DebitCardBalanceService.class), pager, idempotency, nearCaches, properties));
+        context.registerBean(RequestLogSampling.class, () -> new RequestLogSampling(properties));
+        context.refresh();
+
+        server = HttpServer.create()
+                .port(0)
+                .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(context).build()))
+                .bindNow();
+        client = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + server.port())
+                .responseTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.disposeNow();
+        context.close();
+    }
+
+    @Test
+    void productEndpointsDoNotBlockTheEventLoop() {
+        Product existing = product("p1", "cli1");
+        when(productRepository.findAllWithReadPreference(any())).thenReturn(Flux.just(existing));
+        when(productRepository.findByClientIdWithReadPreference(eq("cli1"), any())).thenReturn(Flux.just(existing));
+        when(productRepository.findById("p1")).thenReturn(Mono.just(existing));
+        when(productRepository.summarizeByClientId("cli1")).thenReturn(Flux.empty());
+        when(productRepository.save(any(Product.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+        when(outbox.record(any(), any())).thenAnswer(call -> call.getArgument(1));
+        when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+        ClientDto owner = new ClientDto();
+        owner.setId("cli1");
+        owner.setType("personal");
+        owner.setSubtype(ClientSubtype.STANDARD);
+        when(clientCache.get("cli1")).thenReturn(Mono.just(owner));
+
+        client.get().uri("/api/v1/product").exchange().expectStatus().isOk();
+        client.get().uri("/api/v1/product/client/cli1").exchange().expectStatus().isOk();
+        client.get().uri("/api/v1/product/p1").exchange().expectStatus().isOk();
+        Product request = new Product();
+        request.setClientId("cli1");
+        request.setType("activo");
+        request.setSubtype(ProductSubtype.PERSONAL_CREDIT);
+        client.post().uri("/api/v1/product").bodyValue(request).exchange().expectStatus().isCreated();
+
+        assertEquals(List.of(), blockingCalls);
+    }
+
+    @Test
+    void debitCardCreationDoesNotBlockTheEventLoop() {
+        when(debitCardRepository.save(any(DebitCard.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+        DebitCard card = new DebitCard();
+        card.setClientId("cli1");
+        card.setMainAccountId("p1");
+
+        client.post().uri("/api/v1/debit-card").bodyValue(card).exchange().expectStatus().isOk();
+
+        assertEquals(List.of(), blockingCalls);
+    }
+
+    @Test
+    void blockingOnNonBlockingThreadIsDetected() {
+        BlockingExecutor executor = new BlockingExecutor(properties, meterRegistry);
+        try {
+            StepVerifier.create(Mono.fromCallable(NonBlockingThreadsTest::legacyCall).subscribeOn(Schedulers.parallel()))
+                    .expectError(BlockingOperationError.class)
+                    .verify(Duration.ofSeconds(5));
+
+            // el mismo paso a traves del executor no bloquea el hilo que lo pide
+            blockingCalls.clear();
+            StepVerifier.create(Mono.just("c1")
+                            .publishOn(Schedulers.parallel())
+                            .flatMap(id -> executor.call("core-banking", NonBlockingThreadsTest::legacyCall)))
+                    .expectNext("ok")
+                    .verifyComplete();
+            assertEquals(List.of(), blockingCalls);
+            assertEquals(1, meterRegistry.get("product.blocking.calls").tag("integration", "core-banking").timer().count());
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    private static Product product(String id, String clientId) {
+        Product product = new Product();
+        product.setId(id);
+        product.setClientId(clientId);
+        product.setType("pasivo");
+        product.setSubtype(ProductSubtype.SAVINGS);
+        return product;
+    }
+
+    private static String legacyCall() throws InterruptedException {
+        Thread.sleep(5);
+        return "ok";
+    }
+
+    @Configuration
+    @EnableWebFlux
+    static class WebConfig {
+    }
+}
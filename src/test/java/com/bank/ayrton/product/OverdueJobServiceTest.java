@@ -0,0 +1,194 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.OverdueJobRequest;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductOutboxEvent;
+import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.bank.ayrton.product.service.overdue.OverdueJobService;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueJobServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Mock
+    private ClientPortfolioViewService portfolioViews;
+
+    private ProductProperties properties;
+    private NearCaches nearCaches;
+    private OverdueJobService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ProductProperties();
+        properties.getOverdueJob().setClientsPerUpdate(2);
+        // 03:00 en Lima: fuera del horario de atencion, sin pausa entre bloques
+        Clock clock = Clock.fixed(Instant.parse("2026-10-18T08:00:00Z"), ZoneOffset.UTC);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        // outbox real sin transaccion: los eventos se insertan con el mismo mongoTemplate simulado
+        ProductOutbox outbox = new ProductOutbox(mongoTemplate, null, objectMapper, properties, clock);
+        nearCaches = spy(new NearCaches(null, properties, new SimpleMeterRegistry()));
+        service = new OverdueJobService(mongoTemplate, kafkaTemplate, objectMapper, properties, clock, portfolioViews,
+                outbox, nearCaches);
+        lenient().when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void run_dryRunShouldOnlyCount() {
+        OverdueJobRequest request = new OverdueJobRequest();
+        request.setDueTo(LocalDate.of(2026, 10, 17));
+        request.setDryRun(true);
+
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Product.class), eq(Document.class)))
+                .thenReturn(Flux.just(client("c1", 3), client("c2", 2)));
+
+        StepVerifier.create(service.run(request))
+                .assertNext(report -> {
+                    assertTrue(report.isDryRun());
+                    assertEquals(5, report.getMatchedProducts());
+                    assertEquals(2, report.getAffectedClients());
+                    assertEquals(0, report.getModifiedProducts());
+                })
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Product.class));
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static Document client(String clientId, int products) {
+        return new Document("_id", clientId).append("products", products);
+    }
+
+    // producto tal como queda en mongo despues del updateMany
+    private static Product overdue(String id, String clientId) {
+        Product product = new Product();
+        product.setId(id); product.setClientId(clientId);
+        product.setSubtype(ProductSubtype.PERSONAL_CREDIT); product.setStatus("vencido"); product.setVersion(4L);
+        return product;
+    }
+
+    @Test
+    void run_shouldUpdateByClientChunksAndRecordOneOutboxEventPerProduct() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Product.class), eq(Document.class)))
+                .thenReturn(Flux.just(client("c1", 2), client("c2", 2), client("c3", 1)));
+        // p5 (c2) cambio entre la consulta de clientes y el updateMany: ya no cumple el filtro
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Product.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(3, 3L, null)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class)))
+                .thenReturn(Flux.just(overdue("p1", "c1"), overdue("p2", "c1"), overdue("p3", "c2")))
+                .thenReturn(Flux.just(overdue("p4", "c3")));
+        when(mongoTemplate.insertAll(anyList())).thenAnswer(call -> Flux.fromIterable(call.getArgument(0)));
+        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        OverdueJobRequest request = new OverdueJobRequest();
+        request.setDueTo(LocalDate.of(2026, 10, 17));
+
+        StepVerifier.create(service.run(request))
+                .assertNext(report -> {
+                    assertEquals(4, report.getModifiedProducts()); // lo que cambio mongo, no lo leido antes
+                    assertEquals(3, report.getAffectedClients());
+                })
+                .verifyComplete();
+
+        // primero el updateMany del bloque y luego la lectura de lo que ese job cambio, sin los campos internos
+        InOrder order = inOrder(mongoTemplate);
+        order.verify(mongoTemplate).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Product.class));
+        order.verify(mongoTemplate).find(any(Query.class), eq(Product.class));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateMulti(queries.capture(), updates.capture(), eq(Product.class));
+        Document filter = queries.getAllValues().get(0).getQueryObject();
+        assertTrue(filter.toString().contains("vencido"));
+        assertTrue(filter.toString().contains("PERSONAL_CREDIT"));
+        assertTrue(filter.toString().contains("c2")); // bloque de clientes
+        Object jobId = ((Document) updates.getAllValues().get(0).getUpdateObject().get("$set")).get("overdueJobId");
+        assertNotNull(jobId);
+
+        ArgumentCaptor<Query> reads = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(reads.capture(), eq(Product.class));
+        assertEquals(jobId, reads.getAllValues().get(0).getQueryObject().get("overdueJobId"));
+        assertEquals(0, reads.getAllValues().get(0).getFieldsObject().get("appliedMovementIds"));
+
+        // la cache local no sigue sirviendo los productos con el estado anterior
+        verify(nearCaches).invalidateProducts(List.of("p1", "p2", "p3"));
+        verify(nearCaches).invalidateProducts(List.of("p4"));
+
+        // un evento OVERDUE por producto con el estado ya marcado
+        ArgumentCaptor<List<ProductOutboxEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(mongoTemplate, times(2)).insertAll(events.capture());
+        List<ProductOutboxEvent> first = events.getAllValues().get(0);
+        assertEquals(List.of("p1", "p2", "p3"), first.stream().map(ProductOutboxEvent::getProductId).toList());
+        assertTrue(first.stream().allMatch(event -> event.getType() == ProductEvent.Type.OVERDUE
+                && event.getPayload().contains("\"status\":\"vencido\"")
+                && event.getPayload().contains("\"version\":4")));
+
+        verify(kafkaTemplate).send(eq("product-overdue"), eq("c1"), anyString());
+        verify(kafkaTemplate).send(eq("product-overdue"), eq("c2"), anyString());
+        verify(kafkaTemplate).send(eq("product-overdue"), eq("c3"), anyString());
+    }
+
+    @Test
+    void run_shouldRejectRequestsWithoutDueDateOrClientsAndNonCreditSubtypes() {
+        StepVerifier.create(service.run(new OverdueJobRequest()))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+
+        OverdueJobRequest savings = new OverdueJobRequest();
+        savings.setClientIds(List.of("c1"));
+        savings.setSubtypes(List.of(ProductSubtype.SAVINGS));
+        StepVerifier.create(service.run(savings))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+
+        verifyNoInteractions(mongoTemplate, kafkaTemplate);
+    }
+}
@@ -0,0 +1,102 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.MongoConversionConfig;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ProductChange;
+import com.bank.ayrton.product.entity.Money;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.feed.ProductChangeFeed;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Feed de cambios contra un replica set de un nodo (MongoDBContainer inicia mongod con --replSet). */
+@Testcontainers(disabledWithoutDocker = true)
+class ProductChangeFeedReplicaSetTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static ReactiveMongoTemplate template;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(MONGO.getReplicaSetUrl());
+        MongoCustomConversions conversions = new MongoConversionConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        template = new ReactiveMongoTemplate(new SimpleReactiveMongoDatabaseFactory(client, "product-feed-test"), converter);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void streamsChangesAndResumesFromTheLastTokenOnAnotherInstance() {
+        ProductChangeFeed feed = new ProductChangeFeed(template, new ProductProperties(), new SimpleMeterRegistry());
+        Product product = new Product();
+        product.setClientId("feed-c1");
+        product.setStatus("activo");
+
+        String[] lastSeen = new String[1];
+        StepVerifier.create(feed.subscribe("feed-c1", null, null).take(2))
+                .thenAwait(Duration.ofMillis(500)) // el change stream se abre al suscribirse
+                .then(() -> template.insert(product)
+                        .flatMap(saved -> template.updateFirst(Query.query(Criteria.where("id").is(saved.getId())),
+                                new Update().set("status", "vencido"), Product.class))
+                        .block())
+                .assertNext(change -> assertEquals("insert", change.getOperation()))
+                .assertNext(change -> {
+                    assertEquals("update", change.getOperation());
+                    assertEquals(List.of("status"), change.getChangedFields());
+                    assertEquals("vencido", change.getProduct().getStatus());
+                    lastSeen[0] = change.getToken();
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+
+        // cambio mientras el suscriptor estaba desconectado
+        template.updateFirst(Query.query(Criteria.where("clientId").is("feed-c1")),
+                new Update().set("balance", Money.valueOf("25.50")), Product.class).block();
+
+        // otra instancia no tiene el token en su historial: reanuda con un change stream propio
+        ProductChangeFeed other = new ProductChangeFeed(template, new ProductProperties(), new SimpleMeterRegistry());
+        StepVerifier.create(other.subscribe("feed-c1", null, lastSeen[0]).take(1))
+                .assertNext(change -> {
+                    assertEquals(List.of("balance"), change.getChangedFields());
+                    assertEquals(Money.valueOf("25.50"), change.getProduct().getBalance());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+
+        feed.stop();
+        other.stop();
+    }
+}
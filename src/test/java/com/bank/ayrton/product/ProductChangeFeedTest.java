@@ -0,0 +1,171 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.MongoConversionConfig;
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ProductChange;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.feed.ProductChangeFeed;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductChangeFeedTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final Sinks.Many<ChangeStreamEvent<Product>> stream = Sinks.many().multicast().onBackpressureBuffer();
+    private final ProductProperties properties = new ProductProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MappingMongoConverter converter;
+    private ProductChangeFeed feed;
+    private int sequence;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoConversionConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        properties.getFeed().setBufferSize(4);
+        lenient().when(mongoTemplate.changeStream(eq("products"), any(ChangeStreamOptions.class), eq(Product.class)))
+                .thenReturn(stream.asFlux());
+        feed = new ProductChangeFeed(mongoTemplate, properties, meterRegistry);
+    }
+
+    @Test
+    void slowSubscriberIsDisconnectedWithoutHoldingBackTheOthers() {
+        List<ProductChange> received = new CopyOnWriteArrayList<>();
+        Disposable fast = feed.subscribe("c1", null, null).subscribe(received::add);
+
+        StepVerifier.create(feed.subscribe(null, null, null), 0)
+                .expectSubscription()
+                .then(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        stream.tryEmitNext(update(i % 2 == 0 ? "c1" : "c2", "balance"));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(change -> true)
+                .expectErrorSatisfies(error -> assertEquals("overflow", ((ProductChangeFeed.Disconnected) error).getReason()))
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(5, received.size());
+        fast.dispose();
+        // un solo change stream para todos los suscriptores
+        verify(mongoTemplate, times(1)).changeStream(eq("products"), any(ChangeStreamOptions.class), eq(Product.class));
+        assertEquals(1.0, meterRegistry.get("product.feed.disconnected").tag("reason", "overflow").counter().count());
+    }
+
+    @Test
+    void reconnectingSubscriberReceivesMissedChangesFromHistory() {
+        StepVerifier.create(feed.subscribe("c1", null, null).take(1))
+                .then(() -> stream.tryEmitNext(update("c1", "status")))
+                .assertNext(change -> {
+                    assertEquals("update", change.getOperation());
+                    assertEquals(List.of("status"), change.getChangedFields());
+                })
+                .verifyComplete();
+        String lastSeen = token(sequence - 1);
+
+        // mientras estaba desconectado
+        stream.tryEmitNext(update("c2", "balance"));
+        stream.tryEmitNext(update("c1", "balance"));
+
+        StepVerifier.create(feed.subscribe("c1", null, lastSeen).take(1))
+                .assertNext(change -> assertEquals(List.of("balance"), change.getChangedFields()))
+                .verifyComplete();
+        verify(mongoTemplate, times(1)).changeStream(eq("products"), any(ChangeStreamOptions.class), eq(Product.class));
+    }
+
+    @Test
+    void deleteReachesTheClientSubscriberThroughThePreImage() {
+        ObjectId id = new ObjectId();
+        Document before = new Document("_id", id).append("clientId", "c1").append("status", "activo");
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>("delete",
+                new BsonDocument("_data", new BsonString(token(sequence++))), null, null, null, before,
+                new BsonDocument("_id", new BsonObjectId(id)), new BsonTimestamp(1, sequence), null,
+                null, null, null, null, null);
+
+        StepVerifier.create(feed.subscribe("c1", null, null).take(1))
+                .then(() -> stream.tryEmitNext(new ChangeStreamEvent<>(raw, Product.class, converter)))
+                .assertNext(change -> {
+                    assertEquals("delete", change.getOperation());
+                    assertEquals("c1", change.getClientId());
+                    assertEquals(id.toHexString(), change.getProductId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void enablePreImagesCreatesTheCollectionWhenItDoesNotExistYet() {
+        when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(Mono.error(
+                new MongoCommandException(new BsonDocument("code", new BsonInt32(26)), new ServerAddress())));
+        when(mongoTemplate.createCollection(eq("products"), any(CollectionOptions.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(feed.enablePreImages()).verifyComplete();
+
+        ArgumentCaptor<Document> command = ArgumentCaptor.forClass(Document.class);
+        verify(mongoTemplate).executeCommand(command.capture());
+        assertEquals(new Document("enabled", true), command.getValue().get("changeStreamPreAndPostImages"));
+        ArgumentCaptor<CollectionOptions> options = ArgumentCaptor.forClass(CollectionOptions.class);
+        verify(mongoTemplate).createCollection(eq("products"), options.capture());
+        assertTrue(options.getValue().getChangeStreamOptions().orElseThrow().getPreAndPostImages());
+    }
+
+    private ChangeStreamEvent<Product> update(String clientId, String field) {
+        ObjectId id = new ObjectId();
+        BsonDocument token = new BsonDocument("_data", new BsonString(token(sequence++)));
+        Document product = new Document("_id", id).append("clientId", clientId).append("status", "activo");
+        UpdateDescription description = new UpdateDescription(List.of(),
+                new BsonDocument(field, new BsonString("x")).append("appliedMovementIds.0", new BsonString("m1")));
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>("update", token, null, null, product, null,
+                new BsonDocument("_id", new BsonObjectId(id)), new BsonTimestamp(1, sequence), description,
+                null, null, null, null, null);
+        return new ChangeStreamEvent<>(raw, Product.class, converter);
+    }
+
+    private static String token(int sequence) {
+        return String.format("%08x", sequence);
+    }
+}
@@ -0,0 +1,158 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.entity.ProductOutboxEvent;
+import com.bank.ayrton.product.service.outbox.ProductOutboxRelay;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductOutboxRelayTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProductOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new ProductOutboxRelay(mongoTemplate, kafkaTemplate, new ProductProperties(),
+                Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+    }
+
+    private void leaseGranted(boolean granted) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("product_outbox_lock")))
+                .thenReturn(granted ? Mono.just(new Document()) : Mono.error(new DuplicateKeyException("lease")));
+    }
+
+    private static ProductOutboxEvent event(String id, String clientId) {
+        ProductOutboxEvent event = new ProductOutboxEvent();
+        event.setId(id);
+        event.setClientId(clientId);
+        event.setPayload("{\"eventId\":\"" + id + "\"}");
+        event.setCreatedAt(NOW.minusSeconds(30));
+        return event;
+    }
+
+    @Test
+    void relay_shouldPublishInOrderPerClientAndHoldClientAfterFailure() {
+        leaseGranted(true);
+        when(mongoTemplate.find(argThat(ProductOutboxRelayTest::waiting), eq(ProductOutboxEvent.class)))
+                .thenReturn(Flux.empty());
+        when(mongoTemplate.find(argThat((Query query) -> !waiting(query)), eq(ProductOutboxEvent.class)))
+                .thenReturn(Flux.just(event("e1", "c1"), event("e2", "c2"), event("e3", "c1"), event("e4", "c2")));
+        when(kafkaTemplate.send(eq("products"), eq("c1"), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send("products", "c2", "{\"eventId\":\"e2\"}"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker caido")));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProductOutboxEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ProductOutboxEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+
+        StepVerifier.create(relay.relay())
+                .expectNext(2)
+                .verifyComplete();
+
+        InOrder c1 = inOrder(kafkaTemplate);
+        c1.verify(kafkaTemplate).send("products", "c1", "{\"eventId\":\"e1\"}");
+        c1.verify(kafkaTemplate).send("products", "c1", "{\"eventId\":\"e3\"}");
+        // e4 no sale antes que e2: el cliente c2 queda esperando el reintento
+        verify(kafkaTemplate, never()).send("products", "c2", "{\"eventId\":\"e4\"}");
+
+        ArgumentCaptor<Update> retry = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(argThat((Query query) -> "e2".equals(query.getQueryObject().get("id"))),
+                retry.capture(), eq(ProductOutboxEvent.class));
+        Document set = (Document) retry.getValue().getUpdateObject().get("$set");
+        assertEquals(1, set.get("attempts"));
+        assertEquals(NOW.plusSeconds(1), set.get("nextAttemptAt"));
+
+        verify(mongoTemplate).updateMulti(argThat((Query query) -> query.getQueryObject().toString().contains("[e1, e3]")),
+                any(Update.class), eq(ProductOutboxEvent.class));
+        assertEquals(30.0, meterRegistry.get("product.outbox.lag").gauge().value());
+        assertEquals(1.0, meterRegistry.get("product.outbox.failures").counter().count());
+    }
+
+    @Test
+    void relay_shouldLeaveOutClientsWaitingForARetry() {
+        leaseGranted(true);
+        ProductOutboxEvent head = event("e1", "c1");
+        head.setCreatedAt(NOW.minusSeconds(120));
+        head.setNextAttemptAt(NOW.plusSeconds(30));
+        when(mongoTemplate.find(argThat(ProductOutboxRelayTest::waiting), eq(ProductOutboxEvent.class)))
+                .thenReturn(Flux.just(head));
+        when(mongoTemplate.find(argThat((Query query) -> !waiting(query)), eq(ProductOutboxEvent.class)))
+                .thenReturn(Flux.just(event("e9", "c2")));
+        when(kafkaTemplate.send(eq("products"), eq("c2"), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ProductOutboxEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(relay.relay())
+                .expectNext(1)
+                .verifyComplete();
+
+        // el bloque de pendientes excluye a c1, que no puede avanzar hasta que e1 se publique
+        verify(mongoTemplate).find(argThat((Query query) -> !waiting(query)
+                && List.of("c1").equals(List.copyOf((Collection<?>) ((Document) query.getQueryObject().get("clientId")).get("$nin")))),
+                eq(ProductOutboxEvent.class));
+        assertEquals(120.0, meterRegistry.get("product.outbox.lag").gauge().value()); // e1 sigue contando
+
+        // al perder el lease el lag deja de informarse desde esta instancia
+        reset(mongoTemplate);
+        leaseGranted(false);
+        StepVerifier.create(relay.relay()).expectNext(0).verifyComplete();
+        assertEquals(0.0, meterRegistry.get("product.outbox.lag").gauge().value());
+    }
+
+    @Test
+    void relay_shouldSkipWhenAnotherInstanceHoldsTheLease() {
+        leaseGranted(false);
+
+        StepVerifier.create(relay.relay())
+                .expectNext(0)
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(ProductOutboxEvent.class));
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static boolean waiting(Query query) {
+        return query != null && query.getQueryObject().containsKey("nextAttemptAt");
+    }
+}
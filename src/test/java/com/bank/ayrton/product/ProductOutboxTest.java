@@ -0,0 +1,86 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.entity.ProductOutboxEvent;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductOutboxTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private final ProductProperties properties = new ProductProperties();
+    private ProductOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        properties.getOutbox().setTransactional(false);
+        properties.getOutbox().setRetryBackoff(Duration.ofMillis(1));
+        outbox = new ProductOutbox(mongoTemplate, null, new ObjectMapper().findAndRegisterModules(), properties,
+                Clock.fixed(Instant.parse("2026-10-18T10:00:00Z"), ZoneOffset.UTC));
+    }
+
+    private static Product product(String id) {
+        Product product = new Product();
+        product.setId(id);
+        product.setClientId("c1");
+        return product;
+    }
+
+    @Test
+    void savedProductIsReturnedEvenIfItsEventCannotBeRecorded() {
+        when(mongoTemplate.insertAll(anyList())).thenReturn(Flux.error(new DataAccessResourceFailureException("down")));
+        when(mongoTemplate.insert(any(ProductOutboxEvent.class)))
+                .thenReturn(Mono.error(new DataAccessResourceFailureException("down")));
+
+        StepVerifier.create(outbox.record(ProductEvent.Type.CREATED, Mono.just(product("p1"))))
+                .assertNext(saved -> assertEquals("p1", saved.getId()))
+                .verifyComplete();
+
+        // el primer intento y los reintentos, evento por evento
+        verify(mongoTemplate, times(4)).insert(any(ProductOutboxEvent.class));
+    }
+
+    @Test
+    void retryTreatsAnEventAlreadyInsertedAsRecorded() {
+        when(mongoTemplate.insertAll(anyList())).thenReturn(Flux.error(new DataAccessResourceFailureException("timeout")));
+        when(mongoTemplate.insert(any(ProductOutboxEvent.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000")))
+                .thenAnswer(call -> Mono.just(call.getArgument(0)));
+
+        StepVerifier.create(outbox.recordWritten(ProductEvent.Type.CREATED, List.of(product("p1"), product("p2"))))
+                .verifyComplete();
+
+        ArgumentCaptor<ProductOutboxEvent> events = ArgumentCaptor.forClass(ProductOutboxEvent.class);
+        verify(mongoTemplate, times(2)).insert(events.capture());
+        assertEquals(List.of("p1", "p2"), events.getAllValues().stream().map(ProductOutboxEvent::getProductId).toList());
+        assertTrue(events.getAllValues().stream().allMatch(event -> event.getType() == ProductEvent.Type.CREATED));
+    }
+}
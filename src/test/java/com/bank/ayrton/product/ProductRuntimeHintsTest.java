@@ -0,0 +1,29 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductRuntimeHints;
+import com.bank.ayrton.product.dto.ClientDto;
+import com.bank.ayrton.product.dto.DebitCard;
+import com.bank.ayrton.product.entity.Product;
+import com.bank.ayrton.product.service.client.ClientServiceClient;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void registersJacksonAndResilienceHints() {
+        new ProductRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(Product.class, "getBalance").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(DebitCard.class, "setMainAccountId").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ClientDto.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(CircuitBreaker.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ClientServiceClient.class, "fallbackClient").test(hints));
+    }
+}
@@ -1,25 +1,55 @@
 package com.bank.ayrton.product;
 
 import com.bank.ayrton.product.api.product.ProductRepository;
+import com.bank.ayrton.product.config.ProductProperties;
 import com.bank.ayrton.product.dto.ClientDto;
 import com.bank.ayrton.product.dto.ClientSubtype;
+import com.bank.ayrton.product.dto.ProductBatchResult;
+import com.bank.ayrton.product.dto.ProductEvent;
+import com.bank.ayrton.product.dto.ProductSubtypeSummary;
+import com.bank.ayrton.product.entity.Money;
 import com.bank.ayrton.product.entity.Product;
 import com.bank.ayrton.product.entity.ProductSubtype;
+import com.bank.ayrton.product.service.client.ClientCache;
+import com.bank.ayrton.product.service.outbox.ProductOutbox;
+import com.bank.ayrton.product.service.cache.NearCaches;
+import com.bank.ayrton.product.service.portfolio.ClientPortfolioViewService;
+import com.bank.ayrton.product.service.product.ProductRuleEngine;
 import com.bank.ayrton.product.service.product.ProductServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -29,28 +59,57 @@ class ProductServiceImplTest {
     @Mock
     private ProductRepository repository;
 
-    /**  Deep-stubs para encadenar get()→uri()→retrieve()… */
-    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
-    private WebClient clientWebClient;
+    @Mock
+    private ClientCache clientCache;
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveBulkOperations bulkOperations;
+
+    @Spy
+    private ProductProperties properties = new ProductProperties();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ProductRuleEngine ruleEngine = new ProductRuleEngine(new ProductProperties(), meterRegistry);
+
+    @Mock
+    private ProductOutbox outbox;
+
+    @Mock
+    private ClientPortfolioViewService portfolioViews;
+
+    @Spy
+    private NearCaches nearCaches = new NearCaches(null, new ProductProperties(), new SimpleMeterRegistry());
 
     @InjectMocks
     private ProductServiceImpl productService;
 
+    @BeforeEach
+    void outboxPassThrough() {
+        // el outbox solo envuelve la escritura en una transaccion; aqui la deja pasar tal cual
+        lenient().when(outbox.record(any(), any())).thenAnswer(call -> call.getArgument(1));
+        lenient().when(outbox.recordAll(any(), anyList(), any())).thenAnswer(call -> call.getArgument(2));
+        lenient().when(outbox.isTransactional()).thenReturn(true);
+        lenient().when(portfolioViews.refresh(anyCollection())).thenReturn(Mono.empty());
+    }
+
     /* ---------------------------------------------------------
        UTILIDADES
        --------------------------------------------------------- */
 
     /**
-     * Mockea la llamada GET /api/v1/client/{id} devolviendo
-     * un ClientDto concreto.
+     * Mockea la consulta del cliente (cache delante de GET /api/v1/client/{id})
+     * devolviendo un ClientDto concreto.
      */
-    @SuppressWarnings("unchecked")
     private void mockClientService(String clientId, ClientDto dto) {
-        when(clientWebClient.get()
-                .uri("/api/v1/client/" + clientId)
-                .retrieve()
-                .bodyToMono(ClientDto.class))
-                .thenReturn(Mono.just(dto));
+        when(clientCache.get(clientId)).thenReturn(Mono.just(dto));
     }
 
     /* ---------------------------------------------------------
@@ -62,12 +121,13 @@ class ProductServiceImplTest {
         Product p1 = new Product(); p1.setId("1");
         Product p2 = new Product(); p2.setId("2");
 
-        when(repository.findAll()).thenReturn(Flux.just(p1, p2));
+        when(repository.findAllWithReadPreference(any())).thenReturn(Flux.just(p1, p2));
 
         StepVerifier.create(productService.findAll())
                 .expectNext(p1).expectNext(p2).verifyComplete();
 
-        verify(repository).findAll();
+        // los listados pueden leer de secundarios
+        verify(repository).findAllWithReadPreference(ReadPreference.secondaryPreferred());
     }
 
     @Test
@@ -91,10 +151,10 @@ class ProductServiceImplTest {
         Product req = new Product();
         req.setClientId("cli1"); req.setType("pasivo");
 
-        Product overdue = new Product();
-        overdue.setType("activo"); overdue.setStatus("vencido");
+        ProductSubtypeSummary overdue =
+                new ProductSubtypeSummary(ProductSubtype.PERSONAL_CREDIT, 1, true);
 
-        when(repository.findByClientId("cli1")).thenReturn(Flux.just(overdue));
+        when(repository.summarizeByClientId("cli1")).thenReturn(Flux.just(overdue));
 
         StepVerifier.create(productService.save(req))
                 .expectErrorSatisfies(e -> {
@@ -104,23 +164,24 @@ class ProductServiceImplTest {
                 })
                 .verify();
 
-        verify(repository).findByClientId("cli1");
+        verify(repository).summarizeByClientId("cli1");
         verifyNoMoreInteractions(repository);
-        verifyNoInteractions(clientWebClient);
+        assertEquals(1.0, meterRegistry.counter("product.save.rejections", "reason", "overdue-debt").count());
+        verify(clientCache, never()).get(anyString());
     }
 
     @Test
     void save_shouldRejectWhenBalanceIsNegative() {
         Product req = new Product();
         req.setClientId("cli-neg"); req.setType("pasivo");
-        req.setSubtype(ProductSubtype.SAVINGS); req.setBalance(-10.0);
+        req.setSubtype(ProductSubtype.SAVINGS); req.setBalance(Money.valueOf("-10"));
 
         ClientDto cli = new ClientDto();
         cli.setId("cli-neg"); cli.setType("personal");
         cli.setSubtype(ClientSubtype.STANDARD);
 
         mockClientService("cli-neg", cli);
-        when(repository.findByClientId("cli-neg")).thenReturn(Flux.empty());
+        when(repository.summarizeByClientId("cli-neg")).thenReturn(Flux.empty());
 
         StepVerifier.create(productService.save(req))
                 .expectErrorSatisfies(e ->
@@ -129,6 +190,49 @@ class ProductServiceImplTest {
                 .verify();
     }
 
+    @Test
+    void save_shouldRejectStaticRuleBeforeQueryingMongoWhenClientIsCached() {
+        Product req = new Product();
+        req.setClientId("cli-emp"); req.setType("pasivo");
+        req.setSubtype(ProductSubtype.FIXED_TERM);
+
+        ClientDto cli = new ClientDto();
+        cli.setId("cli-emp"); cli.setType("Empresarial");
+        cli.setSubtype(ClientSubtype.STANDARD);
+
+        when(clientCache.getIfPresent("cli-emp")).thenReturn(cli);
+
+        StepVerifier.create(productService.save(req))
+                .expectErrorSatisfies(e -> assertTrue(((ResponseStatusException) e)
+                        .getReason().contains("empresarial")))
+                .verify();
+
+        verifyNoInteractions(repository);
+        verify(clientCache, never()).get(anyString());
+    }
+
+    @Test
+    void ruleEngine_shouldRecompileWhenRulesAreRebound() {
+        ProductProperties config = new ProductProperties();
+        ProductRuleEngine engine = new ProductRuleEngine(config, new SimpleMeterRegistry());
+
+        Product req = new Product();
+        req.setType("activo"); req.setSubtype(ProductSubtype.CREDIT_CARD);
+        ClientDto cli = new ClientDto();
+        cli.setType("personal"); cli.setSubtype(ClientSubtype.STANDARD);
+
+        assertTrue(engine.checkStatic(req, cli).isEmpty());
+
+        ProductProperties.Rule forbidden = new ProductProperties.Rule();
+        forbidden.setId("no-credit-card");
+        forbidden.setProductSubtypes(List.of(ProductSubtype.CREDIT_CARD));
+        forbidden.setCondition(ProductProperties.Rule.Condition.FORBIDDEN);
+        forbidden.setMessage("No se emiten tarjetas");
+        config.setRules(List.of(forbidden)); // lo que hace el rebinding al refrescar la configuracion
+
+        assertEquals("no-credit-card", engine.checkStatic(req, cli).map(ProductProperties.Rule::getId).orElse(null));
+    }
+
     @Test
     void save_shouldRejectPYMEWithoutCreditCard() {
         Product req = new Product();
@@ -141,16 +245,17 @@ class ProductServiceImplTest {
 
         mockClientService("emp-pyme", pyme);
 
-        // 1ª llamada: busca deudas (none), 2ª: busca tarjeta (none)
-        when(repository.findByClientId("emp-pyme"))
-                .thenReturn(Flux.empty())
-                .thenReturn(Flux.empty());
+        // una sola consulta: sin deudas ni tarjeta
+        when(repository.summarizeByClientId("emp-pyme")).thenReturn(Flux.empty());
 
         StepVerifier.create(productService.save(req))
                 .expectErrorSatisfies(e ->
                         assertTrue(((ResponseStatusException) e)
                                 .getReason().contains("tarjeta")))
                 .verify();
+
+        assertEquals(1.0, meterRegistry.counter("product.save.rejections",
+                "reason", "pyme-current-account-requires-card").count());
     }
 
     @Test
@@ -165,9 +270,7 @@ class ProductServiceImplTest {
 
         mockClientService("vip-1", vip);
 
-        when(repository.findByClientId("vip-1"))
-                .thenReturn(Flux.empty())   // deudas
-                .thenReturn(Flux.empty());  // busca TC
+        when(repository.summarizeByClientId("vip-1")).thenReturn(Flux.empty()); // sin deudas ni TC
 
         StepVerifier.create(productService.save(req))
                 .expectErrorSatisfies(e ->
@@ -186,7 +289,7 @@ class ProductServiceImplTest {
         emp.setId("emp-bad"); emp.setType("empresarial");
 
         mockClientService("emp-bad", emp);
-        when(repository.findByClientId("emp-bad")).thenReturn(Flux.empty());
+        when(repository.summarizeByClientId("emp-bad")).thenReturn(Flux.empty());
 
         StepVerifier.create(productService.save(req))
                 .expectErrorSatisfies(e ->
@@ -201,9 +304,8 @@ class ProductServiceImplTest {
         req.setClientId("per-dup"); req.setType("pasivo");
         req.setSubtype(ProductSubtype.SAVINGS);
 
-        Product existing = new Product();
-        existing.setClientId("per-dup");
-        existing.setSubtype(ProductSubtype.SAVINGS);
+        ProductSubtypeSummary existing =
+                new ProductSubtypeSummary(ProductSubtype.SAVINGS, 1, false);
 
         ClientDto per = new ClientDto();
         per.setId("per-dup"); per.setType("personal");
@@ -211,9 +313,8 @@ class ProductServiceImplTest {
 
         mockClientService("per-dup", per);
 
-        when(repository.findByClientId("per-dup"))
-                .thenReturn(Flux.empty())          // deudas
-                .thenReturn(Flux.just(existing));  // existe SAVINGS
+        when(repository.summarizeByClientId("per-dup"))
+                .thenReturn(Flux.just(existing));  // sin deudas, existe SAVINGS
 
         StepVerifier.create(productService.save(req))
                 .expectErrorSatisfies(e ->
@@ -235,9 +336,8 @@ class ProductServiceImplTest {
 
         mockClientService("cli-credit", client);
 
-        when(repository.findByClientId("cli-credit"))
-                .thenReturn(Flux.empty()) // sin deudas
-                .thenReturn(Flux.empty()); // sin crédito personal
+        when(repository.summarizeByClientId("cli-credit"))
+                .thenReturn(Flux.empty()); // sin deudas ni crédito personal
 
         when(repository.save(any(Product.class)))
                 .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
@@ -248,30 +348,321 @@ class ProductServiceImplTest {
     }
 
     @Test
-    void update_shouldUpdateProduct() {
-        Product existing = new Product();
-        existing.setId("123");
-        existing.setBalance(100.0);
+    void save_shouldEvaluateStaticRulesOnceWhenClientIsCached() {
+        Product req = new Product();
+        req.setClientId("cli-cached"); req.setType("pasivo");
+        req.setSubtype(ProductSubtype.SAVINGS); req.setBalance(Money.valueOf("100"));
 
-        Product updated = new Product();
-        updated.setBalance(500.0);
+        ClientDto client = new ClientDto();
+        client.setId("cli-cached"); client.setType("personal");
+        client.setSubtype(ClientSubtype.STANDARD);
+
+        when(clientCache.getIfPresent("cli-cached")).thenReturn(client);
+        mockClientService("cli-cached", client);
+        when(repository.summarizeByClientId("cli-cached")).thenReturn(Flux.empty());
+        when(repository.save(any(Product.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        StepVerifier.create(productService.save(req)).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, meterRegistry.timer("product.rule.evaluation", "rule", "non-negative-balance").count());
+        assertEquals(1, meterRegistry.timer("product.rule.evaluation", "rule", "personal-one-passive-per-subtype").count());
+    }
+
+    @Test
+    void save_shouldQueryPortfolioOnceForPYMEWithCreditCard() {
+        Product req = new Product();
+        req.setClientId("emp-card"); req.setType("pasivo");
+        req.setSubtype(ProductSubtype.CURRENT_ACCOUNT);
+        req.setMaintenanceFee(Money.valueOf("15"));
+
+        ClientDto pyme = new ClientDto();
+        pyme.setId("emp-card"); pyme.setType("empresarial");
+        pyme.setSubtype(ClientSubtype.PYME);
+
+        mockClientService("emp-card", pyme);
 
-        when(repository.findById("123")).thenReturn(Mono.just(existing));
+        when(repository.summarizeByClientId("emp-card"))
+                .thenReturn(Flux.just(new ProductSubtypeSummary(ProductSubtype.CREDIT_CARD, 1, false)));
         when(repository.save(any(Product.class)))
                 .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
+        StepVerifier.create(productService.save(req))
+                .expectNextMatches(p -> p.getMaintenanceFee().equals(Money.ZERO))
+                .verifyComplete();
+
+        verify(repository, times(1)).summarizeByClientId("emp-card");
+        verify(repository, never()).findByClientId(anyString());
+    }
+
+    /* ---------------------------------------------------------
+       CARGA MASIVA saveAll(...)
+       --------------------------------------------------------- */
+
+    @Test
+    void saveAll_shouldApplyRulesAgainstInBatchState() {
+        Product first = new Product();
+        first.setClientId("per-batch"); first.setType("pasivo");
+        first.setSubtype(ProductSubtype.SAVINGS);
+
+        Product second = new Product();
+        second.setClientId("per-batch"); second.setType("pasivo");
+        second.setSubtype(ProductSubtype.SAVINGS);
+
+        Product company = new Product();
+        company.setClientId("emp-batch"); company.setType("pasivo");
+        company.setSubtype(ProductSubtype.FIXED_TERM);
+
+        ClientDto per = new ClientDto();
+        per.setId("per-batch"); per.setType("personal");
+        ClientDto emp = new ClientDto();
+        emp.setId("emp-batch"); emp.setType("empresarial");
+
+        mockClientService("per-batch", per);
+        mockClientService("emp-batch", emp);
+        when(repository.summarizeByClientId(anyString())).thenReturn(Flux.empty());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        StepVerifier.create(productService.saveAll(Flux.just(first, second, company)))
+                .expectNextMatches(r -> r.getIndex() == 0 && r.getStatus() == ProductBatchResult.Status.CREATED
+                        && r.getProductId() != null)
+                .expectNextMatches(r -> r.getIndex() == 1 && r.getStatus() == ProductBatchResult.Status.REJECTED
+                        && r.getMessage().contains("ya tiene"))
+                .expectNextMatches(r -> r.getIndex() == 2 && r.getStatus() == ProductBatchResult.Status.REJECTED
+                        && r.getMessage().contains("empresarial"))
+                .verifyComplete();
+
+        // una consulta de portafolio por cliente y una sola escritura con el producto aceptado
+        verify(repository, times(1)).summarizeByClientId("per-batch");
+        verify(bulkOperations).insert(argThat(list -> list.size() == 1));
+        verify(repository, never()).save(any(Product.class));
+    }
+
+    @Test
+    void saveAll_withoutTransactionShouldRecordEventsForTheDocumentsThatWereInserted() {
+        Product first = new Product();
+        first.setClientId("emp-partial"); first.setType("pasivo");
+        first.setSubtype(ProductSubtype.CURRENT_ACCOUNT);
+        Product second = new Product();
+        second.setClientId("emp-partial"); second.setType("pasivo");
+        second.setSubtype(ProductSubtype.CURRENT_ACCOUNT);
+
+        ClientDto emp = new ClientDto();
+        emp.setId("emp-partial"); emp.setType("empresarial");
+
+        mockClientService("emp-partial", emp);
+        when(repository.summarizeByClientId("emp-partial")).thenReturn(Flux.empty());
+        when(outbox.isTransactional()).thenReturn(false);
+        when(outbox.recordWritten(eq(ProductEvent.Type.CREATED), anyList())).thenReturn(Mono.empty());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        // el segundo documento falla, el primero quedo guardado
+        when(bulkOperations.execute()).thenReturn(Mono.error(new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of())));
+
+        StepVerifier.create(productService.saveAll(Flux.just(first, second)))
+                .expectNextMatches(r -> r.getIndex() == 0 && r.getStatus() == ProductBatchResult.Status.CREATED)
+                .expectNextMatches(r -> r.getIndex() == 1 && r.getStatus() == ProductBatchResult.Status.FAILED)
+                .verifyComplete();
+
+        verify(outbox).recordWritten(eq(ProductEvent.Type.CREATED), argThat(products -> products.size() == 1));
+    }
+
+    @Test
+    void saveAll_shouldRejectRowsWithoutClientIdAndKeepTheRest() {
+        Product missing = new Product();
+        missing.setType("pasivo"); missing.setSubtype(ProductSubtype.SAVINGS);
+
+        Product valid = new Product();
+        valid.setClientId("per-ok"); valid.setType("pasivo");
+        valid.setSubtype(ProductSubtype.SAVINGS);
+
+        ClientDto per = new ClientDto();
+        per.setId("per-ok"); per.setType("personal");
+
+        mockClientService("per-ok", per);
+        when(repository.summarizeByClientId("per-ok")).thenReturn(Flux.empty());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        StepVerifier.create(productService.saveAll(Flux.just(missing, valid)))
+                .expectNextMatches(r -> r.getIndex() == 0 && r.getStatus() == ProductBatchResult.Status.REJECTED
+                        && r.getMessage().contains("clientId"))
+                .expectNextMatches(r -> r.getIndex() == 1 && r.getStatus() == ProductBatchResult.Status.CREATED)
+                .verifyComplete();
+
+        verify(clientCache, never()).get(null);
+    }
+
+    @Test
+    void save_shouldRejectMissingClientIdWithBadRequest() {
+        Product req = new Product();
+        req.setType("pasivo"); req.setSubtype(ProductSubtype.SAVINGS);
+
+        StepVerifier.create(productService.save(req))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+
+        verifyNoInteractions(clientCache, repository);
+    }
+
+    /* ---------------------------------------------------------
+       ACTUALIZACIONES ATOMICAS update / patch / markAsOverdue
+       --------------------------------------------------------- */
+
+    private Update captureUpdate() {
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), captor.capture(),
+                any(FindAndModifyOptions.class), eq(Product.class));
+        return captor.getValue();
+    }
+
+    @Test
+    void update_shouldUpdateProduct() {
+        Product updated = new Product();
+        updated.setClientId("c-1"); updated.setCreditLimit(Money.valueOf("800"));
+        updated.setBalance(Money.valueOf("500")); updated.setVersion(2L);
+
+        Product stored = new Product();
+        stored.setId("123"); stored.setClientId("c-1"); stored.setCreditLimit(Money.valueOf("800"));
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Product.class)))
+                .thenReturn(Mono.just(stored));
+        when(mongoTemplate.findById("123", Product.class)).thenReturn(Mono.just(stored));
+
         StepVerifier.create(productService.update("123", updated))
-                .expectNextMatches(p -> p.getId().equals("123") && p.getBalance().equals(500.0))
+                .expectNextMatches(p -> p.getId().equals("123") && p.getCreditLimit().equals(Money.valueOf("800")))
                 .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).findAndModify(query.capture(), captor.capture(),
+                any(FindAndModifyOptions.class), eq(Product.class));
+        assertEquals(2L, query.getValue().getQueryObject().get("version"));
+        Document update = captor.getValue().getUpdateObject();
+        assertEquals(Money.valueOf("800"), ((Document) update.get("$set")).get("creditLimit"));
+        // el saldo lo mueven los movimientos: un PUT no lo reemplaza
+        assertFalse(((Document) update.get("$set")).containsKey("balance"));
+        assertFalse(((Document) update.get("$set")).containsKey("id"));
+        assertEquals(1, ((Document) update.get("$inc")).get("version"));
+        verify(repository, never()).save(any(Product.class));
+        verify(outbox).record(eq(ProductEvent.Type.UPDATED), any());
     }
 
     @Test
-    void delete_shouldDeleteProduct() {
-        when(repository.deleteById("del-1")).thenReturn(Mono.empty());
+    void update_withoutVersionShouldBeRejected() {
+        Product updated = new Product();
+        updated.setClientId("c-1");
+
+        StepVerifier.create(productService.update("123", updated))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.PRECONDITION_REQUIRED,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+
+        StepVerifier.create(productService.patch("123", Map.of("balance", 0)))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void patch_changingClientShouldRefreshThePreviousAndTheNewOwner() {
+        Product previous = new Product();
+        previous.setId("p-1"); previous.setClientId("c-old");
+        Product current = new Product();
+        current.setId("p-1"); current.setClientId("c-new");
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Product.class)))
+                .thenReturn(Mono.just(previous));
+        when(mongoTemplate.findById("p-1", Product.class)).thenReturn(Mono.just(current));
+
+        StepVerifier.create(productService.patch("p-1", Map.of("clientId", "c-new")))
+                .expectNextMatches(p -> p.getClientId().equals("c-new"))
+                .verifyComplete();
+
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), any(Update.class), options.capture(), eq(Product.class));
+        assertFalse(options.getValue().isReturnNew()); // el documento anterior trae el titular previo
+        verify(portfolioViews).refresh(Set.of("c-new", "c-old"));
+    }
+
+    @Test
+    void update_shouldRejectStaleVersion() {
+        Product updated = new Product();
+        updated.setVersion(3L);
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Product.class)))
+                .thenReturn(Mono.empty());
+        when(repository.existsById("123")).thenReturn(Mono.just(true));
+
+        StepVerifier.create(productService.update("123", updated))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.CONFLICT,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+    }
+
+    @Test
+    void patch_shouldSetOnlyChangedFields() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Product.class)))
+                .thenReturn(Mono.just(new Product()));
+
+        StepVerifier.create(productService.patch("p-1", Map.of("creditLimit", 1500, "subtype", "CREDIT_CARD")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Document set = (Document) captureUpdate().getUpdateObject().get("$set");
+        assertEquals(2, set.size());
+        assertEquals(Money.valueOf("1500"), set.get("creditLimit"));
+        assertEquals(ProductSubtype.CREDIT_CARD, set.get("subtype"));
+    }
+
+    @Test
+    void patch_shouldRejectNonEditableField() {
+        StepVerifier.create(productService.patch("p-1", Map.of("appliedMovementIds", List.of("m1"))))
+                .expectErrorSatisfies(e -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((ResponseStatusException) e).getStatusCode()))
+                .verify();
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void markAsOverdue_shouldOnlySetStatus() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Product.class)))
+                .thenReturn(Mono.just(new Product()));
+
+        StepVerifier.create(productService.markAsOverdue("p-2"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Document update = captureUpdate().getUpdateObject();
+        assertEquals(new Document("status", "vencido"), update.get("$set"));
+        verify(repository, never()).findById(anyString());
+    }
+
+    @Test
+    void delete_shouldDeleteProductAndRecordEvent() {
+        Product deleted = new Product();
+        deleted.setId("del-1"); deleted.setClientId("cli-del");
+
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(Product.class))).thenReturn(Mono.just(deleted));
 
         StepVerifier.create(productService.delete("del-1"))
                 .verifyComplete();
 
-        verify(repository).deleteById("del-1");
+        verify(outbox).record(eq(ProductEvent.Type.DELETED), any());
+        verify(mongoTemplate).findAndRemove(argThat((Query query) ->
+                "del-1".equals(query.getQueryObject().get("id"))), eq(Product.class));
     }
 }
@@ -0,0 +1,50 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.actuator.QueryPlanReport;
+import com.bank.ayrton.product.config.MongoIndexConfig;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Falla si alguna consulta de los repositorios hace COLLSCAN con los indices de arranque. */
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanReportTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static ReactiveMongoTemplate template;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(MONGO.getConnectionString());
+        template = new ReactiveMongoTemplate(client, "product-test");
+        new MongoIndexConfig(template).ensureIndexes().block();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    void explainAll_shouldNotReportCollectionScans() {
+        StepVerifier.create(new QueryPlanReport(template).explainAll().collectList())
+                .assertNext(plans -> {
+                    assertFalse(plans.isEmpty());
+                    plans.forEach(plan -> assertFalse(plan.isCollectionScan(),
+                            () -> plan.getQuery() + " hace COLLSCAN: " + plan.getStages()));
+                })
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,56 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.service.logging.RequestLogSampling;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLogSamplingTest {
+
+    private final ProductProperties properties = new ProductProperties();
+
+    @BeforeEach
+    void enablePropagation() {
+        Hooks.enableAutomaticContextPropagation(); // spring.reactor.context-propagation=auto
+    }
+
+    @AfterEach
+    void disablePropagation() {
+        Hooks.disableAutomaticContextPropagation();
+    }
+
+    // la misma decision en toda la solicitud, tambien despues de cambiar de hilo
+    private List<Boolean> decisions() {
+        List<Boolean> seen = new ArrayList<>();
+        new RequestLogSampling(properties).filter(
+                        MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/product")),
+                        exchange -> Mono.fromRunnable(() -> seen.add(RequestLogSampling.current()))
+                                .publishOn(Schedulers.parallel())
+                                .doOnSuccess(done -> seen.add(RequestLogSampling.current()))
+                                .then())
+                .block();
+        return seen;
+    }
+
+    @Test
+    void decisionIsTakenOncePerRequestAndSeenByEveryOperator() {
+        properties.getLogging().setDebugSampleRate(1.0);
+        assertEquals(List.of(true, true), decisions());
+
+        properties.getLogging().setDebugSampleRate(0.0);
+        assertEquals(List.of(false, false), decisions());
+
+        assertNull(RequestLogSampling.current()); // fuera de una solicitud no hay decision
+    }
+}
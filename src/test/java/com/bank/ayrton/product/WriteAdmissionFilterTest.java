@@ -0,0 +1,142 @@
+package com.bank.ayrton.product;
+
+import com.bank.ayrton.product.config.ProductProperties;
+import com.bank.ayrton.product.service.admission.AdaptiveConcurrencyLimit;
+import com.bank.ayrton.product.service.admission.ClientRateLimiter;
+import com.bank.ayrton.product.service.admission.TooManyRequestsException;
+import com.bank.ayrton.product.service.admission.WriteAdmissionFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAdmissionFilterTest {
+
+    private ProductProperties properties;
+    private SimpleMeterRegistry registry;
+    private AdaptiveConcurrencyLimit limit;
+    private WriteAdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ProductProperties();
+        properties.getAdmission().setInitialLimit(2);
+        properties.getAdmission().setMinLimit(1);
+        registry = new SimpleMeterRegistry();
+        limit = new AdaptiveConcurrencyLimit(properties, registry);
+        filter = new WriteAdmissionFilter(properties, limit, registry);
+    }
+
+    @Test
+    void shedsWritesAboveTheLimitWithRetryAfter() {
+        Sinks.Empty<Void> slow = Sinks.empty();
+        WebFilterChain pending = exchange -> slow.asMono();
+
+        filter.filter(post(), pending).subscribe();
+        filter.filter(post(), pending).subscribe();
+        MockServerWebExchange shed = post();
+        StepVerifier.create(filter.filter(shed, pending)).verifyComplete();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, shed.getResponse().getStatusCode());
+        assertEquals("1", shed.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, registry.get("product.admission.rejected").tag("reason", "concurrency").counter().count());
+
+        // las lecturas no pasan por el limite
+        MockServerWebExchange read = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/product/p1"));
+        StepVerifier.create(filter.filter(read, exchange -> Mono.empty())).verifyComplete();
+        assertNull(read.getResponse().getStatusCode());
+
+        slow.tryEmitEmpty();
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void longRunningAdminAndBatchRoutesDoNotCountAgainstTheLimit() {
+        Sinks.Empty<Void> slow = Sinks.empty();
+        WebFilterChain pending = exchange -> slow.asMono();
+        List<MockServerHttpRequest> longRunning = List.of(
+                MockServerHttpRequest.post("/api/v1/product/batch").build(),
+                MockServerHttpRequest.post("/api/v1/product/overdue-jobs").build(),
+                MockServerHttpRequest.post("/api/v1/product/fee-runs").build(),
+                MockServerHttpRequest.post("/api/v1/product/portfolios/rebuild").build());
+        for (MockServerHttpRequest request : longRunning) {
+            filter.filter(MockServerWebExchange.from(request), pending).subscribe();
+        }
+        assertEquals(0, limit.getInFlight());
+
+        // el CRUD de productos si pasa por el limite
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.put("/api/v1/product/p1")), pending).subscribe();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.put("/api/v1/product/p1/mark-overdue")),
+                pending).subscribe();
+        assertEquals(2, limit.getInFlight());
+        slow.tryEmitEmpty();
+    }
+
+    @Test
+    void overloadLowersTheLimitAndFastWritesRaiseIt() {
+        properties.getAdmission().setInitialLimit(10);
+        registry = new SimpleMeterRegistry();
+        limit = new AdaptiveConcurrencyLimit(properties, registry);
+        filter = new WriteAdmissionFilter(properties, limit, registry);
+
+        WebFilterChain unavailable = exchange -> Mono.error(
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "client-service no disponible actualmente"));
+        StepVerifier.create(filter.filter(post(), unavailable)).expectError(ResponseStatusException.class).verify();
+        assertEquals(9, limit.getLimit());
+
+        // un segundo 503 dentro de la misma ventana no vuelve a bajar el limite
+        StepVerifier.create(filter.filter(post(), unavailable)).expectError(ResponseStatusException.class).verify();
+        assertEquals(9, limit.getLimit());
+
+        // solo crece cuando el limite esta en uso
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < 12; i++) {
+            limit.release(now, now, false);
+            assertTrue(limit.tryAcquire());
+        }
+        limit.release(now, now, false);
+        assertEquals(10, limit.getLimit());
+        assertEquals(10.0, registry.get("product.admission.limit").gauge().value());
+    }
+
+    @Test
+    void clientBucketAllowsBurstThenAsksToRetry() {
+        properties.getAdmission().setClientBurst(2);
+        properties.getAdmission().setClientPermitsPerSecond(0.5);
+        ClientRateLimiter limiter = new ClientRateLimiter(properties, registry);
+
+        StepVerifier.create(limiter.acquire("c1")).verifyComplete();
+        StepVerifier.create(limiter.acquire("c1")).verifyComplete();
+        StepVerifier.create(limiter.acquire("c1"))
+                .expectErrorSatisfies(error -> {
+                    TooManyRequestsException tooMany = (TooManyRequestsException) error;
+                    assertEquals(HttpStatus.TOO_MANY_REQUESTS, tooMany.getStatusCode());
+                    assertTrue(tooMany.getRetryAfter().compareTo(Duration.ofSeconds(2)) <= 0);
+                    assertEquals("2", tooMany.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+                })
+                .verify();
+        // cada cliente tiene su propio bucket
+        StepVerifier.create(limiter.acquire("c2")).verifyComplete();
+        assertEquals(1.0, registry.get("product.admission.rejected").tag("reason", "client-rate").counter().count());
+    }
+
+    private static MockServerWebExchange post() {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/api/v1/product"));
+    }
+}